@@ -0,0 +1,27 @@
+package capehorn.cadmium.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks matching the regular expression of the first argument (all by default)
+ * with the GC profiler, which reports the allocation rate and the bytes allocated per operation.
+ * <pre>
+ *     mvn -P benchmark test-compile exec:exec -Dbenchmark=Mat4x4
+ * </pre>
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        var options = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : ".*")
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
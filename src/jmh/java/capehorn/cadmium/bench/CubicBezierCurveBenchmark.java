@@ -0,0 +1,58 @@
+package capehorn.cadmium.bench;
+
+import capehorn.cadmium.core.Vec3;
+import capehorn.cadmium.core.VecBuffer;
+import capehorn.cadmium.geom.BezierFlattener;
+import capehorn.cadmium.geom.CubicBezierCurve;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class CubicBezierCurveBenchmark {
+
+    @Param({"0.1", "0.001"})
+    private double tolerance;
+
+    private final CubicBezierCurve curve = new CubicBezierCurve(
+            Vec3.of(0, 0, 0),
+            Vec3.of(100, 0, 0),
+            Vec3.of(100, 100, 0),
+            Vec3.of(0, 0, 100));
+
+    private final VecBuffer points = new VecBuffer(new int[]{3});
+
+    private BezierFlattener flattener;
+
+    @Setup
+    public void setup() {
+        flattener = BezierFlattener.ofTolerance(tolerance);
+    }
+
+    @Benchmark
+    public List<Vec3> approximate() {
+        return curve.approximate(tolerance);
+    }
+
+    @Benchmark
+    public int flatten() {
+        points.setPosition(0);
+        return flattener.flatten(curve, true, points);
+    }
+}
@@ -0,0 +1,58 @@
+package capehorn.cadmium.bench;
+
+import capehorn.cadmium.core.Vec3;
+import capehorn.cadmium.format.Obj;
+import capehorn.cadmium.geom.Triangle;
+import capehorn.cadmium.geom.mesh.TriangleMesh;
+import capehorn.cadmium.io.GeomToObjFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class GeomToObjFormatBenchmark {
+
+    @Param({"10000"})
+    private int numOfTriangles;
+
+    private TriangleMesh mesh;
+
+    @Setup
+    public void setup() {
+        mesh = new TriangleMesh();
+        for (int i = 0; i < numOfTriangles; i++) {
+            mesh.addTriangles(new Triangle(Vec3.of(i, 0, 0.5), Vec3.of(i + 1, 0, 0.25), Vec3.of(i + 1, 1, 0.125)));
+        }
+    }
+
+    @Benchmark
+    public void writeTriangleMesh() throws IOException {
+        new GeomToObjFormat(Writer.nullWriter()).writeTriangleMesh(mesh);
+    }
+
+    @Benchmark
+    public void writeTriangleMeshChannel() throws IOException {
+        try (var toObj = new GeomToObjFormat(Channels.newChannel(OutputStream.nullOutputStream()), Obj.Precision.fixed(6))) {
+            toObj.writeTriangleMesh(mesh);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package capehorn.cadmium.bench;
+
+import capehorn.cadmium.core.Mat3x4;
+import capehorn.cadmium.core.Mat4x4;
+import capehorn.cadmium.core.Vec3;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class Mat4x4Benchmark {
+
+    private static final int NUM_OF_POSITIONS = 1024;
+
+    private Mat4x4 m;
+    private Mat4x4 n;
+    private Mat3x4 affineM;
+    private Mat3x4 affineN;
+    private Vec3 p;
+    private double[] positions;
+    private double[] transformed;
+
+    @Setup
+    public void setup() {
+        m = Mat4x4.rotation(Vec3.of(1, 2, 3), 0.7).translate(4, 5, 6);
+        n = Mat4x4.scaling(2, 3, 4).mul(Mat4x4.rotation(Vec3.of(0, 0, 1), 1.1));
+        affineM = m.toAffine();
+        affineN = n.toAffine();
+        p = Vec3.of(0.25, -1.5, 8);
+        positions = new double[3 * NUM_OF_POSITIONS];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = i * 0.001;
+        }
+        transformed = new double[positions.length];
+    }
+
+    @Benchmark
+    public Mat4x4 mul() {
+        return m.mul(n);
+    }
+
+    @Benchmark
+    public Mat4x4 inverse() {
+        return m.inverse();
+    }
+
+    @Benchmark
+    public Mat3x4 mulAffine() {
+        return affineM.mul(affineN);
+    }
+
+    @Benchmark
+    public Mat3x4 inverseAffine() {
+        return affineM.inverse();
+    }
+
+    @Benchmark
+    public Vec3 mulPosition() {
+        return m.mulPosition(p);
+    }
+
+    @Benchmark
+    public double[] transformPositions() {
+        m.transformPositions(positions, 0, transformed, NUM_OF_POSITIONS);
+        return transformed;
+    }
+}
@@ -0,0 +1,59 @@
+package capehorn.cadmium.bench;
+
+import capehorn.cadmium.core.Vec3;
+import capehorn.cadmium.geom.Triangle;
+import capehorn.cadmium.geom.mesh.TriangleMesh;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class TriangleMeshBenchmark {
+
+    @Param({"100000"})
+    private int numOfTriangles;
+
+    @Param({"false", "true"})
+    private boolean indexed;
+
+    private TriangleMesh mesh;
+
+    @Setup
+    public void setup() {
+        mesh = indexed ? TriangleMesh.indexed() : new TriangleMesh();
+        int columns = 1000;
+        for (int i = 0; i < numOfTriangles / 2; i++) {
+            int x = i % columns;
+            int y = i / columns;
+            mesh.addTriangles(
+                    new Triangle(Vec3.of(x, y, 0), Vec3.of(x + 1, y, 0), Vec3.of(x + 1, y + 1, 0)),
+                    new Triangle(Vec3.of(x + 1, y + 1, 0), Vec3.of(x, y + 1, 0), Vec3.of(x, y, 0)));
+        }
+    }
+
+    @Benchmark
+    public void forEachTriangle(Blackhole bh) {
+        mesh.forEachTriangle(bh::consume);
+    }
+
+    @Benchmark
+    public void forEachTriangleVisitor(Blackhole bh) {
+        mesh.forEachTriangle((idx, p1x, p1y, p1z, p2x, p2y, p2z, p3x, p3y, p3z, nx, ny, nz) -> bh.consume(p1x + p2y + p3z + nz));
+    }
+}
@@ -0,0 +1,42 @@
+package capehorn.cadmium.bench;
+
+import capehorn.cadmium.core.Vec3;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class Vec3Benchmark {
+
+    private Vec3 a = Vec3.of(1.5, -2.25, 3.125);
+    private Vec3 b = Vec3.of(-0.5, 4, 2);
+    private Vec3 c = Vec3.of(7, 0.25, -1);
+
+    @Benchmark
+    public double arithmeticChain() {
+        return a.add(b).mulScalar(0.5).sub(c).cross(b).normalize().dot(c);
+    }
+
+    @Benchmark
+    public Vec3 lerp() {
+        return a.lerp(b, 0.3);
+    }
+
+    @Benchmark
+    public double perpendicularDistance() {
+        return c.perpendicularDistanceFrom(a, b);
+    }
+}
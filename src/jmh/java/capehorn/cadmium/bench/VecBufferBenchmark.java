@@ -0,0 +1,100 @@
+package capehorn.cadmium.bench;
+
+import capehorn.cadmium.core.VecBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class VecBufferBenchmark {
+
+    private static final int[] LAYOUT = {3, 3, 3, 3};
+
+    @Param({"1000", "100000"})
+    private int numOfItems;
+
+    private double[] item;
+    private VecBuffer filled;
+
+    @Setup
+    public void setup() {
+        item = new double[12];
+        filled = new VecBuffer(LAYOUT, numOfItems);
+        for (int i = 0; i < numOfItems; i++) {
+            item[0] = i;
+            filled.put(item);
+        }
+    }
+
+    @Benchmark
+    public VecBuffer putPreallocated() {
+        var b = new VecBuffer(LAYOUT, numOfItems);
+        for (int i = 0; i < numOfItems; i++) {
+            b.put(item);
+        }
+        return b;
+    }
+
+    @Benchmark
+    public VecBuffer putGrowing() {
+        var b = new VecBuffer(LAYOUT);
+        for (int i = 0; i < numOfItems; i++) {
+            b.put(item);
+        }
+        return b;
+    }
+
+    @Benchmark
+    public double getRelative() {
+        double sum = 0;
+        filled.setPosition(0);
+        for (int i = 0; i < numOfItems; i++) {
+            sum += filled.get()[0];
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double getByIndex() {
+        double sum = 0;
+        for (int i = 0; i < numOfItems; i++) {
+            sum += filled.get(i)[0];
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double getIntoArray() {
+        double sum = 0;
+        double[] dst = new double[12];
+        for (int i = 0; i < numOfItems; i++) {
+            filled.get(i, dst);
+            sum += dst[0];
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double cursor() {
+        double sum = 0;
+        for (var c = filled.cursor(); c.hasItem(); c.advance()) {
+            sum += c.getDouble(0);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,109 @@
+package capehorn.cadmium.core;
+
+import capehorn.cadmium.CadmiumRuntimeException;
+
+import java.util.Arrays;
+
+/**
+ * On-heap storage in fixed size chunks. Growing allocates new chunks only, the existing values are not copied,
+ * so there is no copy spike and no moment where the old and the new array are both alive.
+ * {@link #toHeap(long)} turns the content into one contiguous array when the buffer is complete.
+ */
+final class ChunkedVecStorage implements VecStorage {
+
+    static final int DEFAULT_CHUNK_LENGTH = 1 << 16;
+    private static final int MAX_LENGTH = Integer.MAX_VALUE - 8;
+
+    private final int shift;
+    private final int mask;
+    private double[][] chunks;
+    private long length;
+
+    /**
+     * @param chunkLength number of doubles in a chunk, a power of two
+     */
+    ChunkedVecStorage(int chunkLength, long length) {
+        if (chunkLength <= 0 || Integer.bitCount(chunkLength) != 1) {
+            throw new IllegalArgumentException("Chunk length must be a power of two: " + chunkLength);
+        }
+        this.shift = Integer.numberOfTrailingZeros(chunkLength);
+        this.mask = chunkLength - 1;
+        this.chunks = new double[0][];
+        resize(length);
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public double get(long idx) {
+        return chunks[(int) (idx >>> shift)][(int) idx & mask];
+    }
+
+    @Override
+    public void set(long idx, double v) {
+        chunks[(int) (idx >>> shift)][(int) idx & mask] = v;
+    }
+
+    @Override
+    public void get(long idx, double[] dst, int dstOffset, int length) {
+        while (length > 0) {
+            int i = (int) idx & mask;
+            int n = Math.min(length, mask + 1 - i);
+            System.arraycopy(chunks[(int) (idx >>> shift)], i, dst, dstOffset, n);
+            idx += n;
+            dstOffset += n;
+            length -= n;
+        }
+    }
+
+    @Override
+    public void put(long idx, double[] src, int srcOffset, int length) {
+        while (length > 0) {
+            int i = (int) idx & mask;
+            int n = Math.min(length, mask + 1 - i);
+            System.arraycopy(src, srcOffset, chunks[(int) (idx >>> shift)], i, n);
+            idx += n;
+            srcOffset += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * Appends or drops whole chunks, the array of the chunk references is the only thing copied
+     */
+    @Override
+    public void resize(long newLength) {
+        long numOfChunks = (newLength + mask) >>> shift;
+        if (numOfChunks > MAX_LENGTH) {
+            throw new CadmiumRuntimeException("Chunked storage can't hold " + newLength + " doubles");
+        }
+        int oldNumOfChunks = chunks.length;
+        chunks = Arrays.copyOf(chunks, (int) numOfChunks);
+        for (int c = oldNumOfChunks; c < numOfChunks; c++) {
+            chunks[c] = new double[mask + 1];
+        }
+        this.length = newLength;
+    }
+
+    /**
+     * @return storage of one array holding the first length values. Chunks are released as they are copied,
+     * this storage must not be used afterward.
+     */
+    HeapVecStorage toHeap(long length) {
+        if (length > MAX_LENGTH) {
+            throw new CadmiumRuntimeException(
+                    "Heap storage can't hold " + length + " doubles, use off-heap storage instead");
+        }
+        double[] data = new double[(int) length];
+        for (int c = 0, offset = 0; offset < length; c++, offset += mask + 1) {
+            System.arraycopy(chunks[c], 0, data, offset, (int) Math.min(mask + 1, length - offset));
+            chunks[c] = null;
+        }
+        chunks = new double[0][];
+        this.length = 0;
+        return new HeapVecStorage(data);
+    }
+}
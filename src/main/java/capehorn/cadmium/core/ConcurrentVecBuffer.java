@@ -0,0 +1,175 @@
+package capehorn.cadmium.core;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Append-only buffer of items written by many threads at once.
+ * <p>
+ * A producer reserves a range of item indices by one atomic increment, then writes its items without any
+ * synchronization, so producers contend only while they reserve. The items are kept in buckets of doubling size,
+ * bucket b holds 2^(b + 10) items. Buckets are allocated on their first write and never moved, so growing copies
+ * nothing and does not disturb the writers of other ranges.
+ * <pre>
+ *     int from = buffer.reserve(n);
+ *     buffer.put(from, items, 0, n);
+ * </pre>
+ * Items written by a thread are visible to another thread after a happens-before edge between them, e.g. after
+ * the producers are joined. The items are usually collected then into a {@link VecBuffer}, see {@link #copyTo(VecBuffer)}.
+ */
+public final class ConcurrentVecBuffer {
+    private static final int FIRST_BUCKET_SHIFT = 10;
+    private static final int FIRST_BUCKET_ITEMS = 1 << FIRST_BUCKET_SHIFT;
+    private static final int MAX_LENGTH = Integer.MAX_VALUE - 8;
+
+    private final int[] itemLayout;
+    private final int itemSize;
+    /**
+     * Max. number of items, so that every bucket fits in an array
+     */
+    private final int maxItems;
+    private final AtomicReferenceArray<double[]> buckets = new AtomicReferenceArray<>(32 - FIRST_BUCKET_SHIFT);
+    /**
+     * Number of reserved items
+     */
+    private final AtomicLong size = new AtomicLong();
+
+    public ConcurrentVecBuffer(int... itemLayout) {
+        this.itemLayout = itemLayout.clone();
+        this.itemSize = Arrays.stream(itemLayout).sum();
+        if (itemSize <= 0) {
+            throw new IllegalArgumentException("Item size must be positive: " + Arrays.toString(itemLayout));
+        }
+        this.maxItems = MAX_LENGTH / itemSize - FIRST_BUCKET_ITEMS;
+    }
+
+    /**
+     * @return number of doubles in one item
+     */
+    public int getItemSize() {
+        return itemSize;
+    }
+
+    /**
+     * @return number of reserved items, written or not
+     */
+    public int size() {
+        return (int) Math.min(size.get(), maxItems);
+    }
+
+    /**
+     * Reserves the next numOfItems items for the calling thread, the only synchronized step of appending
+     *
+     * @return index of the first reserved item
+     * @throws IllegalStateException if the buffer can't hold the items, the buffer can't be appended afterward
+     */
+    public int reserve(int numOfItems) {
+        if (numOfItems < 0) {
+            throw new IllegalArgumentException("Number of items must not be negative: " + numOfItems);
+        }
+        long from = size.getAndAdd(numOfItems);
+        if (from + numOfItems > maxItems) {
+            throw new IllegalStateException("Buffer can't hold more than " + maxItems + " items");
+        }
+        return (int) from;
+    }
+
+    /**
+     * Reserves and writes whole items
+     *
+     * @return index of the first item
+     */
+    public int append(double... src) {
+        if (src.length % itemSize != 0) {
+            throw new IllegalArgumentException("Length of src must be multiple of " + itemSize);
+        }
+        int numOfItems = src.length / itemSize;
+        int from = reserve(numOfItems);
+        put(from, src, 0, numOfItems);
+        return from;
+    }
+
+    /**
+     * Writes items of a reserved range, ranges of different threads must not overlap
+     */
+    public void put(int fromItem, double[] src, int srcOffset, int numOfItems) {
+        checkRange(fromItem, numOfItems);
+        while (numOfItems > 0) {
+            long j = (long) fromItem + FIRST_BUCKET_ITEMS;
+            int b = bucketIdx(j);
+            int inBucket = (int) (j - bucketItems(b));
+            int n = Math.min(numOfItems, bucketItems(b) - inBucket);
+            System.arraycopy(src, srcOffset, bucket(b), inBucket * itemSize, n * itemSize);
+            fromItem += n;
+            srcOffset += n * itemSize;
+            numOfItems -= n;
+        }
+    }
+
+    public void get(int itemIdx, double[] dst) {
+        if (dst.length != itemSize) {
+            throw new IllegalArgumentException("Length of dst must be " + itemSize);
+        }
+        checkRange(itemIdx, 1);
+        long j = (long) itemIdx + FIRST_BUCKET_ITEMS;
+        int b = bucketIdx(j);
+        System.arraycopy(bucket(b), (int) (j - bucketItems(b)) * itemSize, dst, 0, itemSize);
+    }
+
+    /**
+     * Puts all reserved items into the buffer at its position in index order, items reserved but not written are zeros.
+     * It must not run concurrently with producers.
+     */
+    public void copyTo(VecBuffer dst) {
+        if (dst.getItemSize() != itemSize) {
+            throw new IllegalArgumentException("Items of dst must have " + itemSize + " components instead of " + dst.getItemSize());
+        }
+        int remaining = size();
+        for (int b = 0; remaining > 0; b++) {
+            int n = Math.min(remaining, bucketItems(b));
+            dst.put(bucket(b), 0, n * itemSize);
+            remaining -= n;
+        }
+    }
+
+    /**
+     * @return heap buffer of all reserved items, see {@link #copyTo(VecBuffer)}
+     */
+    public VecBuffer toVecBuffer() {
+        var dst = new VecBuffer(itemLayout, size());
+        copyTo(dst);
+        return dst;
+    }
+
+    private void checkRange(int fromItem, int numOfItems) {
+        if (fromItem < 0 || numOfItems < 0 || size() < (long) fromItem + numOfItems) {
+            throw new IndexOutOfBoundsException("Items [" + fromItem + ", " + ((long) fromItem + numOfItems)
+                    + ") are not reserved, size is " + size());
+        }
+    }
+
+    /**
+     * @param j item index shifted by the size of the first bucket
+     */
+    private static int bucketIdx(long j) {
+        return 63 - Long.numberOfLeadingZeros(j) - FIRST_BUCKET_SHIFT;
+    }
+
+    /**
+     * @return number of items in the bucket, also the shifted index of its first item
+     */
+    private static int bucketItems(int b) {
+        return FIRST_BUCKET_ITEMS << b;
+    }
+
+    private double[] bucket(int b) {
+        double[] bucket = buckets.get(b);
+        if (bucket == null) {
+            // threads racing for a new bucket agree on the first one set
+            buckets.compareAndSet(b, null, new double[bucketItems(b) * itemSize]);
+            bucket = buckets.get(b);
+        }
+        return bucket;
+    }
+}
@@ -0,0 +1,61 @@
+package capehorn.cadmium.core;
+
+import capehorn.cadmium.CadmiumRuntimeException;
+
+import java.util.Arrays;
+
+/**
+ * Single precision storage, values are rounded to float when they are stored
+ */
+final class FloatHeapVecStorage implements VecStorage {
+
+    private static final int MAX_LENGTH = Integer.MAX_VALUE - 8;
+
+    private float[] data;
+
+    FloatHeapVecStorage(long length) {
+        this.data = new float[checkLength(length)];
+    }
+
+    private static int checkLength(long length) {
+        if (length > MAX_LENGTH) {
+            throw new CadmiumRuntimeException("Heap storage can't hold " + length + " floats");
+        }
+        return (int) length;
+    }
+
+    @Override
+    public long length() {
+        return data.length;
+    }
+
+    @Override
+    public double get(long idx) {
+        return data[(int) idx];
+    }
+
+    @Override
+    public float getFloat(long idx) {
+        return data[(int) idx];
+    }
+
+    @Override
+    public void set(long idx, double v) {
+        data[(int) idx] = (float) v;
+    }
+
+    @Override
+    public void get(long idx, float[] dst, int dstOffset, int length) {
+        System.arraycopy(data, (int) idx, dst, dstOffset, length);
+    }
+
+    @Override
+    public boolean isSinglePrecision() {
+        return true;
+    }
+
+    @Override
+    public void resize(long newLength) {
+        data = Arrays.copyOf(data, checkLength(newLength));
+    }
+}
@@ -0,0 +1,41 @@
+package capehorn.cadmium.core;
+
+/**
+ * Decides the new capacity of a {@link VecBuffer} that is too small for the items put into it
+ */
+@FunctionalInterface
+public interface GrowthPolicy {
+
+    /**
+     * Doubles the capacity, the default. The number of reallocations is logarithmic in the final size.
+     */
+    GrowthPolicy DOUBLING = (capacity, minCapacity) -> (int) Math.max(Math.min(2L * capacity, Integer.MAX_VALUE - 8), minCapacity);
+
+    /**
+     * @param capacity current number of items the buffer can hold
+     * @param minCapacity number of items the buffer has to hold at least
+     * @return new number of items, at least minCapacity
+     */
+    int newCapacity(int capacity, int minCapacity);
+
+    /**
+     * @param factor ratio of the new and the current capacity, greater than 1
+     */
+    static GrowthPolicy factor(double factor) {
+        if (!(factor > 1)) {
+            throw new IllegalArgumentException("Growth factor must be greater than 1: " + factor);
+        }
+        return (capacity, minCapacity) -> (int) Math.max(Math.min(capacity * factor, Integer.MAX_VALUE - 8), minCapacity);
+    }
+
+    /**
+     * Grows by a constant number of items, e.g. by one chunk of a {@link VecStorage#CHUNKED chunked} storage.
+     * Memory overhead is bounded, but heap arrays are copied more often than with {@link #DOUBLING}.
+     */
+    static GrowthPolicy increment(int numOfItems) {
+        if (numOfItems <= 0) {
+            throw new IllegalArgumentException("Growth increment must be positive: " + numOfItems);
+        }
+        return (capacity, minCapacity) -> Math.max(capacity + numOfItems, minCapacity);
+    }
+}
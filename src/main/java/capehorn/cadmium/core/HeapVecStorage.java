@@ -0,0 +1,61 @@
+package capehorn.cadmium.core;
+
+import capehorn.cadmium.CadmiumRuntimeException;
+
+import java.util.Arrays;
+
+final class HeapVecStorage implements VecStorage {
+
+    /**
+     * Some VMs reserve header words in arrays
+     */
+    private static final int MAX_LENGTH = Integer.MAX_VALUE - 8;
+
+    private double[] data;
+
+    HeapVecStorage(long length) {
+        this.data = new double[checkLength(length)];
+    }
+
+    HeapVecStorage(double[] data) {
+        this.data = data;
+    }
+
+    private static int checkLength(long length) {
+        if (length > MAX_LENGTH) {
+            throw new CadmiumRuntimeException(
+                    "Heap storage can't hold " + length + " doubles, use off-heap storage instead");
+        }
+        return (int) length;
+    }
+
+    @Override
+    public long length() {
+        return data.length;
+    }
+
+    @Override
+    public double get(long idx) {
+        return data[(int) idx];
+    }
+
+    @Override
+    public void set(long idx, double v) {
+        data[(int) idx] = v;
+    }
+
+    @Override
+    public void get(long idx, double[] dst, int dstOffset, int length) {
+        System.arraycopy(data, (int) idx, dst, dstOffset, length);
+    }
+
+    @Override
+    public void put(long idx, double[] src, int srcOffset, int length) {
+        System.arraycopy(src, srcOffset, data, (int) idx, length);
+    }
+
+    @Override
+    public void resize(long newLength) {
+        data = Arrays.copyOf(data, checkLength(newLength));
+    }
+}
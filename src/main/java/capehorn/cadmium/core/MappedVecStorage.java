@@ -0,0 +1,169 @@
+package capehorn.cadmium.core;
+
+import capehorn.cadmium.CadmiumRuntimeException;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Storage mapped to a file, growing only extends the mapping and does not copy the content.
+ * <pre>
+ *     | magic (int) | version (int) | limit (long) | layout length (int) | layout (int...) | padding | doubles... |
+ * </pre>
+ * The data starts at a multiple of 64 bytes. All values are little-endian.
+ */
+final class MappedVecStorage extends SegmentVecStorage {
+
+    private static final int MAGIC = 0x42566443; // "CdVB"
+    private static final int VERSION = 1;
+    private static final int LIMIT_OFFSET = 8;
+    private static final int LAYOUT_OFFSET = 16;
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    private final FileChannel channel;
+    private final int[] itemLayout;
+    private final long dataOffset;
+    /**
+     * Header and data together
+     */
+    private MemorySegment mapped;
+
+    private MappedVecStorage(FileChannel channel, int[] itemLayout, long length) {
+        this.channel = channel;
+        this.itemLayout = itemLayout;
+        this.dataOffset = dataOffset(itemLayout);
+        map(length);
+    }
+
+    static MappedVecStorage create(Path file, int[] itemLayout, long length) {
+        var channel = openChannel(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            var storage = new MappedVecStorage(channel, itemLayout, length);
+            storage.mapped.set(INT, 0, MAGIC);
+            storage.mapped.set(INT, 4, VERSION);
+            storage.mapped.set(INT, LAYOUT_OFFSET, itemLayout.length);
+            for (int i = 0; i < itemLayout.length; i++) {
+                storage.mapped.set(INT, LAYOUT_OFFSET + 4 + 4L * i, itemLayout[i]);
+            }
+            storage.sync(0);
+            return storage;
+        } catch (RuntimeException e) {
+            throw closeOnFailure(channel, e);
+        }
+    }
+
+    static MappedVecStorage open(Path file) {
+        var channel = openChannel(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer head = ByteBuffer.allocate(LAYOUT_OFFSET + 4).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(head, 0);
+            if (head.getInt(0) != MAGIC || head.getInt(4) != VERSION) {
+                throw new CadmiumRuntimeException("Not a vector buffer file: " + file);
+            }
+            int layoutLength = head.getInt(LAYOUT_OFFSET);
+            if (layoutLength <= 0 || channel.size() < LAYOUT_OFFSET + 4 + 4L * layoutLength) {
+                throw new CadmiumRuntimeException("Corrupt item layout of " + layoutLength + " attributes in " + file);
+            }
+            ByteBuffer layout = ByteBuffer.allocate(4 * layoutLength).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(layout, LAYOUT_OFFSET + 4);
+            int[] itemLayout = new int[layoutLength];
+            for (int i = 0; i < itemLayout.length; i++) {
+                itemLayout[i] = layout.getInt(4 * i);
+                if (itemLayout[i] <= 0) {
+                    throw new CadmiumRuntimeException("Corrupt item layout in " + file + ": " + itemLayout[i]);
+                }
+            }
+            long length = (channel.size() - dataOffset(itemLayout)) / Double.BYTES;
+            if (length < 0) {
+                throw new CadmiumRuntimeException("Vector buffer file is truncated: " + file);
+            }
+            return new MappedVecStorage(channel, itemLayout, length);
+        } catch (IOException e) {
+            throw closeOnFailure(channel, new CadmiumRuntimeException(e));
+        } catch (RuntimeException e) {
+            throw closeOnFailure(channel, e);
+        }
+    }
+
+    private static FileChannel openChannel(Path file, StandardOpenOption... options) {
+        try {
+            return FileChannel.open(file, options);
+        } catch (IOException e) {
+            throw new CadmiumRuntimeException(e);
+        }
+    }
+
+    /**
+     * Closes the channel of a storage that could not be created, a failure to close is added to the original one
+     */
+    private static RuntimeException closeOnFailure(FileChannel channel, RuntimeException e) {
+        try {
+            channel.close();
+        } catch (IOException closeFailure) {
+            e.addSuppressed(closeFailure);
+        }
+        return e;
+    }
+
+    private static long dataOffset(int[] itemLayout) {
+        long headerSize = LAYOUT_OFFSET + 4 + 4L * itemLayout.length;
+        return (headerSize + 63) & ~63L;
+    }
+
+    int[] itemLayout() {
+        return itemLayout.clone();
+    }
+
+    int limit() {
+        return (int) mapped.get(LONG, LIMIT_OFFSET);
+    }
+
+    @Override
+    public void resize(long newLength) {
+        var oldArena = arena;
+        map(newLength);
+        oldArena.close();
+        try {
+            if (channel.size() > mapped.byteSize()) {
+                channel.truncate(mapped.byteSize());
+            }
+        } catch (IOException e) {
+            throw new CadmiumRuntimeException(e);
+        }
+    }
+
+    private void map(long length) {
+        try {
+            this.arena = Arena.ofShared();
+            this.mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, dataOffset + length * Double.BYTES, arena);
+            this.segment = mapped.asSlice(dataOffset);
+        } catch (IOException e) {
+            throw new CadmiumRuntimeException(e);
+        }
+    }
+
+    @Override
+    public void sync(int limit) {
+        mapped.set(LONG, LIMIT_OFFSET, limit);
+        mapped.force();
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new CadmiumRuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package capehorn.cadmium.core;
+
+/**
+ * Affine transform: the first 3 rows of a 4x4 matrix, the last row is implicitly (0, 0, 0, 1).
+ * <p>
+ * The elements are fields, so composition and inversion allocate only the result. The inverse needs the 3x3
+ * linear part only, and {@link #inverseOrthogonal()} skips even that for rotations combined with scaling.
+ * Use {@link Mat4x4#isAffine()} and {@link Mat4x4#toAffine()} to switch from the general matrix.
+ */
+public record Mat3x4(
+        double m00, double m01, double m02, double m03,
+        double m10, double m11, double m12, double m13,
+        double m20, double m21, double m22, double m23) {
+
+    public static final Mat3x4 IDENTITY = new Mat3x4(
+            1, 0, 0, 0,
+            0, 1, 0, 0,
+            0, 0, 1, 0);
+
+    public static Mat3x4 translation(double x, double y, double z) {
+        return new Mat3x4(
+                1, 0, 0, x,
+                0, 1, 0, y,
+                0, 0, 1, z);
+    }
+
+    public static Mat3x4 scaling(double x, double y, double z) {
+        return new Mat3x4(
+                x, 0, 0, 0,
+                0, y, 0, 0,
+                0, 0, z, 0);
+    }
+
+    /**
+     * Same as {@link Mat4x4#rotation(Vec3, double)}
+     */
+    public static Mat3x4 rotation(Vec3 vec, double rad) {
+        Vec3 v = vec.normalize();
+        double s = Math.sin(rad);
+        double c = Math.cos(rad);
+        double m = 1 - c;
+        double mx = m * v.x();
+        double my = m * v.y();
+        double mz = m * v.z();
+        return new Mat3x4(
+                mx * v.x() + c, mx * v.y() + v.z() * s, mz * v.x() - v.y() * s, 0,
+                mx * v.y() - v.z() * s, my * v.y() + c, my * v.z() + v.x() * s, 0,
+                mz * v.x() + v.y() * s, my * v.z() - v.x() * s, mz * v.z() + c, 0);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the last row of the matrix is not (0, 0, 0, 1)
+     */
+    public static Mat3x4 of(Mat4x4 m) {
+        if (!m.isAffine()) {
+            throw new IllegalArgumentException("Matrix is not affine: " + m);
+        }
+        double[] vs = m.vs();
+        return new Mat3x4(
+                vs[0], vs[1], vs[2], vs[3],
+                vs[4], vs[5], vs[6], vs[7],
+                vs[8], vs[9], vs[10], vs[11]);
+    }
+
+    public Mat4x4 toMat4x4() {
+        return new Mat4x4(
+                m00, m01, m02, m03,
+                m10, m11, m12, m13,
+                m20, m21, m22, m23,
+                0, 0, 0, 1);
+    }
+
+    /**
+     * @return row major elements of the 3 rows
+     */
+    public double[] toArray() {
+        return new double[]{
+                m00, m01, m02, m03,
+                m10, m11, m12, m13,
+                m20, m21, m22, m23};
+    }
+
+    public Vec3 getTranslation() {
+        return Vec3.of(m03, m13, m23);
+    }
+
+    /**
+     * @return this * m, the transform applying m first and then this
+     */
+    public Mat3x4 mul(Mat3x4 m) {
+        return new Mat3x4(
+                m00 * m.m00 + m01 * m.m10 + m02 * m.m20,
+                m00 * m.m01 + m01 * m.m11 + m02 * m.m21,
+                m00 * m.m02 + m01 * m.m12 + m02 * m.m22,
+                m00 * m.m03 + m01 * m.m13 + m02 * m.m23 + m03,
+
+                m10 * m.m00 + m11 * m.m10 + m12 * m.m20,
+                m10 * m.m01 + m11 * m.m11 + m12 * m.m21,
+                m10 * m.m02 + m11 * m.m12 + m12 * m.m22,
+                m10 * m.m03 + m11 * m.m13 + m12 * m.m23 + m13,
+
+                m20 * m.m00 + m21 * m.m10 + m22 * m.m20,
+                m20 * m.m01 + m21 * m.m11 + m22 * m.m21,
+                m20 * m.m02 + m21 * m.m12 + m22 * m.m22,
+                m20 * m.m03 + m21 * m.m13 + m22 * m.m23 + m23);
+    }
+
+    /**
+     * @return transform translating after this one
+     */
+    public Mat3x4 translate(double x, double y, double z) {
+        return new Mat3x4(
+                m00, m01, m02, m03 + x,
+                m10, m11, m12, m13 + y,
+                m20, m21, m22, m23 + z);
+    }
+
+    /**
+     * @return determinant of the linear part, the same as of the 4x4 matrix
+     */
+    public double determinant() {
+        return m00 * (m11 * m22 - m12 * m21)
+                - m01 * (m10 * m22 - m12 * m20)
+                + m02 * (m10 * m21 - m11 * m20);
+    }
+
+    /**
+     * Inverts the linear part by its adjugate, the translation is the inverted linear part applied to
+     * the negated translation. A singular matrix gives infinite or NaN elements, like {@link Mat4x4#inverse()}.
+     */
+    public Mat3x4 inverse() {
+        double c00 = m11 * m22 - m12 * m21;
+        double c01 = m02 * m21 - m01 * m22;
+        double c02 = m01 * m12 - m02 * m11;
+        double c10 = m12 * m20 - m10 * m22;
+        double c11 = m00 * m22 - m02 * m20;
+        double c12 = m02 * m10 - m00 * m12;
+        double c20 = m10 * m21 - m11 * m20;
+        double c21 = m01 * m20 - m00 * m21;
+        double c22 = m00 * m11 - m01 * m10;
+        double r = 1 / (m00 * c00 + m01 * c10 + m02 * c20);
+        return inverse(
+                c00 * r, c01 * r, c02 * r,
+                c10 * r, c11 * r, c12 * r,
+                c20 * r, c21 * r, c22 * r);
+    }
+
+    /**
+     * Inverse of a transform whose linear part has orthogonal columns, e.g. a rotation combined with scaling
+     * along the axes: the transposed linear part with every row divided by the squared length of the column.
+     * The result is not the inverse for other transforms.
+     */
+    public Mat3x4 inverseOrthogonal() {
+        double r0 = 1 / (m00 * m00 + m10 * m10 + m20 * m20);
+        double r1 = 1 / (m01 * m01 + m11 * m11 + m21 * m21);
+        double r2 = 1 / (m02 * m02 + m12 * m12 + m22 * m22);
+        return inverse(
+                m00 * r0, m10 * r0, m20 * r0,
+                m01 * r1, m11 * r1, m21 * r1,
+                m02 * r2, m12 * r2, m22 * r2);
+    }
+
+    /**
+     * @return transform of the inverted linear part and the matching translation
+     */
+    private Mat3x4 inverse(double i00, double i01, double i02,
+                           double i10, double i11, double i12,
+                           double i20, double i21, double i22) {
+        return new Mat3x4(
+                i00, i01, i02, -(i00 * m03 + i01 * m13 + i02 * m23),
+                i10, i11, i12, -(i10 * m03 + i11 * m13 + i12 * m23),
+                i20, i21, i22, -(i20 * m03 + i21 * m13 + i22 * m23));
+    }
+
+    public Vec3 mulPosition(Vec3 v) {
+        return Vec3.of(
+                m00 * v.x() + m01 * v.y() + m02 * v.z() + m03,
+                m10 * v.x() + m11 * v.y() + m12 * v.z() + m13,
+                m20 * v.x() + m21 * v.y() + m22 * v.z() + m23);
+    }
+
+    /**
+     * @return the vector transformed by the linear part only
+     */
+    public Vec3 mulDirection(Vec3 v) {
+        return Vec3.of(
+                m00 * v.x() + m01 * v.y() + m02 * v.z(),
+                m10 * v.x() + m11 * v.y() + m12 * v.z(),
+                m20 * v.x() + m21 * v.y() + m22 * v.z());
+    }
+
+    /**
+     * Same as {@link Mat4x4#transformPositions(double[], int, double[], int, int)}
+     */
+    public void transformPositions(double[] src, int srcOffset, double[] dst, int dstOffset, int count) {
+        TransformKernels.transformPositions(toArray(), src, srcOffset, 3, dst, dstOffset, 3, count);
+    }
+}
@@ -162,7 +162,27 @@ public record Mat4x4(double... vs) {
         );
     }
 
+    /**
+     * @return true if the last row is (0, 0, 0, 1), so the matrix is an affine transform
+     */
+    public boolean isAffine() {
+        return vs[X30] == 0 && vs[X31] == 0 && vs[X32] == 0 && vs[X33] == 1;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the matrix is not affine, see {@link #isAffine()}
+     */
+    public Mat3x4 toAffine() {
+        return Mat3x4.of(this);
+    }
+
+    /**
+     * Affine matrices are inverted through {@link Mat3x4#inverse()}, others by the full cofactor expansion
+     */
     public Mat4x4 inverse() {
+        if (isAffine()) {
+            return toAffine().inverse().toMat4x4();
+        }
         double d = this.determinant();
         return new Mat4x4(
                 (vs[X12] * vs[X23] * vs[X31] - vs[X13] * vs[X22] * vs[X31] + vs[X13] * vs[X21] * vs[X32] - vs[X11] * vs[X23] * vs[X32] - vs[X12] * vs[X21] * vs[X33] + vs[X11] * vs[X22] * vs[X33]) / d,
@@ -184,6 +204,71 @@ public record Mat4x4(double... vs) {
         );
     }
 
+    /**
+     * Matrix transforming normals: the cofactor matrix of the linear part, that is its inverse transpose
+     * multiplied by the determinant. The sign of the determinant keeps the normals consistent with the winding
+     * of transformed triangles under mirroring, and the matrix is divided by |det|^(2/3) so that it is a pure
+     * rotation (or mirrored rotation) for rotations combined with uniform scaling.
+     * Transformed normals have to be normalized unless {@link #isConformal()}.
+     *
+     * @return linear transform of normals, without translation
+     */
+    public Mat3x4 normalMatrix() {
+        double c00 = vs[X11] * vs[X22] - vs[X12] * vs[X21];
+        double c01 = vs[X12] * vs[X20] - vs[X10] * vs[X22];
+        double c02 = vs[X10] * vs[X21] - vs[X11] * vs[X20];
+        double c10 = vs[X02] * vs[X21] - vs[X01] * vs[X22];
+        double c11 = vs[X00] * vs[X22] - vs[X02] * vs[X20];
+        double c12 = vs[X01] * vs[X20] - vs[X00] * vs[X21];
+        double c20 = vs[X01] * vs[X12] - vs[X02] * vs[X11];
+        double c21 = vs[X02] * vs[X10] - vs[X00] * vs[X12];
+        double c22 = vs[X00] * vs[X11] - vs[X01] * vs[X10];
+        double det = vs[X00] * c00 + vs[X01] * c01 + vs[X02] * c02;
+        double cbrt = Math.cbrt(Math.abs(det));
+        double r = cbrt == 0 || Double.isInfinite(cbrt) ? 1 : 1 / (cbrt * cbrt);
+        return new Mat3x4(
+                c00 * r, c01 * r, c02 * r, 0,
+                c10 * r, c11 * r, c12 * r, 0,
+                c20 * r, c21 * r, c22 * r, 0);
+    }
+
+    /**
+     * @return true if the linear part is a rotation, possibly mirrored, combined with uniform scaling,
+     * so it keeps angles and normals transformed by {@link #normalMatrix()} keep their length
+     */
+    public boolean isConformal() {
+        double l0 = vs[X00] * vs[X00] + vs[X10] * vs[X10] + vs[X20] * vs[X20];
+        double l1 = vs[X01] * vs[X01] + vs[X11] * vs[X11] + vs[X21] * vs[X21];
+        double l2 = vs[X02] * vs[X02] + vs[X12] * vs[X12] + vs[X22] * vs[X22];
+        double d01 = vs[X00] * vs[X01] + vs[X10] * vs[X11] + vs[X20] * vs[X21];
+        double d02 = vs[X00] * vs[X02] + vs[X10] * vs[X12] + vs[X20] * vs[X22];
+        double d12 = vs[X01] * vs[X02] + vs[X11] * vs[X12] + vs[X21] * vs[X22];
+        double eps = CONFORMAL_TOLERANCE * l0;
+        return l0 > 0 && Math.abs(l1 - l0) <= eps && Math.abs(l2 - l0) <= eps
+                && Math.abs(d01) <= eps && Math.abs(d02) <= eps && Math.abs(d12) <= eps;
+    }
+
+    /**
+     * Same direction as the normal transformed by {@link #normalMatrix()}, but the cofactors are applied directly:
+     * the scaling of the normal matrix is dropped by the normalization anyway.
+     *
+     * @return the transformed normal, normalized
+     */
+    public Vec3 mulNormal(Vec3 n) {
+        double x = n.x(), y = n.y(), z = n.z();
+        return Vec3.of(
+                (vs[X11] * vs[X22] - vs[X12] * vs[X21]) * x
+                        + (vs[X12] * vs[X20] - vs[X10] * vs[X22]) * y
+                        + (vs[X10] * vs[X21] - vs[X11] * vs[X20]) * z,
+                (vs[X02] * vs[X21] - vs[X01] * vs[X22]) * x
+                        + (vs[X00] * vs[X22] - vs[X02] * vs[X20]) * y
+                        + (vs[X01] * vs[X20] - vs[X00] * vs[X21]) * z,
+                (vs[X01] * vs[X12] - vs[X02] * vs[X11]) * x
+                        + (vs[X02] * vs[X10] - vs[X00] * vs[X12]) * y
+                        + (vs[X00] * vs[X11] - vs[X01] * vs[X10]) * z
+        ).normalize();
+    }
+
     public Vec3 mulPosition(Vec3 v) {
         return Vec3.of(
                 vs[X00] * v.x() + vs[X01] * v.y() + vs[X02] * v.z() + vs[X03],
@@ -192,6 +277,99 @@ public record Mat4x4(double... vs) {
         );
     }
 
+    /**
+     * Transforms positions stored as consecutive (x, y, z) triplets. The result is written at the same offset of dst,
+     * which can be the same array as src.
+     *
+     * @param offset index of the first x coordinate
+     * @param count number of positions
+     */
+    public void transformPositions(double[] src, int offset, double[] dst, int count) {
+        transformPositions(src, offset, dst, offset, count);
+    }
+
+    public void transformPositions(double[] src, int srcOffset, double[] dst, int dstOffset, int count) {
+        TransformKernels.transformPositions(vs, src, srcOffset, 3, dst, dstOffset, 3, count);
+    }
+
+    /**
+     * Transforms positions of all items of the buffer in place
+     *
+     * @param positionOffsets component offsets of the positions inside an item, e.g. 0, 3, 6 for the points of a triangle
+     */
+    public void transformPositions(VecBuffer buffer, int... positionOffsets) {
+        transformPositions(buffer, 0, buffer.getLimit(), positionOffsets);
+    }
+
+    /**
+     * Transforms positions of the items [fromItem, toItem) of the buffer in place.
+     * Items are copied block by block into a scratch array which the kernels run on.
+     */
+    public void transformPositions(VecBuffer buffer, int fromItem, int toItem, int[] positionOffsets) {
+        int itemSize = buffer.getItemSize();
+        checkOffsets(itemSize, positionOffsets);
+        int blockItems = Math.max(1, TRANSFORM_BLOCK / itemSize);
+        double[] block = new double[Math.min(blockItems, toItem - fromItem) * itemSize];
+        for (int i = fromItem; i < toItem; i += blockItems) {
+            int n = Math.min(blockItems, toItem - i);
+            buffer.getItems(i, n, block);
+            for (int offset : positionOffsets) {
+                TransformKernels.transformPositions(vs, block, offset, itemSize, block, offset, itemSize, n);
+            }
+            buffer.setItems(i, n, block);
+        }
+    }
+
+    /**
+     * Transforms positions and normals of the items [fromItem, toItem) of the buffer in place, in one pass over
+     * the items. The normal matrix is computed once, normals are renormalized only if the matrix is not conformal.
+     *
+     * @param positionOffsets component offsets of the positions inside an item
+     * @param normalOffsets component offsets of the normals inside an item
+     */
+    public void transformPositionsAndNormals(VecBuffer buffer, int fromItem, int toItem,
+                                             int[] positionOffsets, int[] normalOffsets) {
+        int itemSize = buffer.getItemSize();
+        checkOffsets(itemSize, positionOffsets);
+        checkOffsets(itemSize, normalOffsets);
+        double[] normalMatrix = normalMatrix().toArray();
+        boolean normalize = !isConformal();
+        int blockItems = Math.max(1, TRANSFORM_BLOCK / itemSize);
+        double[] block = new double[Math.min(blockItems, toItem - fromItem) * itemSize];
+        for (int i = fromItem; i < toItem; i += blockItems) {
+            int n = Math.min(blockItems, toItem - i);
+            buffer.getItems(i, n, block);
+            for (int offset : positionOffsets) {
+                TransformKernels.transformPositions(vs, block, offset, itemSize, block, offset, itemSize, n);
+            }
+            for (int offset : normalOffsets) {
+                TransformKernels.transformPositions(normalMatrix, block, offset, itemSize, block, offset, itemSize, n);
+                if (normalize) {
+                    TransformKernels.normalize(block, offset, itemSize, n);
+                }
+            }
+            buffer.setItems(i, n, block);
+        }
+    }
+
+    private static void checkOffsets(int itemSize, int[] offsets) {
+        for (int offset : offsets) {
+            if (offset < 0 || itemSize < offset + 3) {
+                throw new IllegalArgumentException("Position offset " + offset + " is out of the item size " + itemSize);
+            }
+        }
+    }
+
+    /**
+     * Relative tolerance of {@link #isConformal()} for the squared lengths and dot products of the columns
+     */
+    private static final double CONFORMAL_TOLERANCE = 1e-12;
+
+    /**
+     * Number of doubles transformed in one block of a buffer, small enough to stay in the L1 cache
+     */
+    private static final int TRANSFORM_BLOCK = 1024;
+
     private static final int X00 = 0;
     private static final int X01 = 1;
     private static final int X02 = 2;
@@ -0,0 +1,25 @@
+package capehorn.cadmium.core;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+
+/**
+ * Native memory, released by {@link #close()} and not by the garbage collector
+ */
+final class OffHeapVecStorage extends SegmentVecStorage {
+
+    OffHeapVecStorage(long length) {
+        this.arena = Arena.ofShared();
+        this.segment = arena.allocate(length * Double.BYTES, Double.BYTES);
+    }
+
+    @Override
+    public void resize(long newLength) {
+        Arena newArena = Arena.ofShared();
+        MemorySegment newSegment = newArena.allocate(newLength * Double.BYTES, Double.BYTES);
+        MemorySegment.copy(segment, 0, newSegment, 0, Math.min(segment.byteSize(), newSegment.byteSize()));
+        arena.close();
+        this.arena = newArena;
+        this.segment = newSegment;
+    }
+}
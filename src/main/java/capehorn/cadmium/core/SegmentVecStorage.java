@@ -0,0 +1,58 @@
+package capehorn.cadmium.core;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+
+/**
+ * Storage in a memory segment, doubles are little-endian independently of the platform,
+ * so mapped files can be moved between machines.
+ */
+abstract class SegmentVecStorage implements VecStorage {
+
+    static final ValueLayout.OfDouble LAYOUT = ValueLayout.JAVA_DOUBLE.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * Arena owning the current segment, it is closed whenever the segment is replaced
+     */
+    protected Arena arena;
+    /**
+     * Segment of the doubles only
+     */
+    protected MemorySegment segment;
+
+    @Override
+    public long length() {
+        return segment.byteSize() / Double.BYTES;
+    }
+
+    @Override
+    public double get(long idx) {
+        return segment.getAtIndex(LAYOUT, idx);
+    }
+
+    @Override
+    public void set(long idx, double v) {
+        segment.setAtIndex(LAYOUT, idx, v);
+    }
+
+    @Override
+    public void get(long idx, double[] dst, int dstOffset, int length) {
+        MemorySegment.copy(segment, LAYOUT, idx * Double.BYTES, dst, dstOffset, length);
+    }
+
+    @Override
+    public void put(long idx, double[] src, int srcOffset, int length) {
+        MemorySegment.copy(src, srcOffset, segment, LAYOUT, idx * Double.BYTES, length);
+    }
+
+    @Override
+    public void close() {
+        if (arena != null) {
+            arena.close();
+            arena = null;
+            segment = null;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package capehorn.cadmium.core;
+
+/**
+ * Batch transformation of positions stored as (x, y, z) triplets with a stride.
+ * <p>
+ * The Vector API implementation is used when the {@code jdk.incubator.vector} module is present
+ * (e.g. {@code --add-modules jdk.incubator.vector}), otherwise the scalar loop.
+ * Setting the system property {@code cadmium.vector.disabled} forces the scalar loop.
+ */
+final class TransformKernels {
+
+    static final boolean VECTORIZED = isVectorApiAvailable();
+
+    private TransformKernels() {
+    }
+
+    private static boolean isVectorApiAvailable() {
+        if (Boolean.getBoolean("cadmium.vector.disabled")
+                || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return false;
+        }
+        try {
+            return VectorTransformKernels.isSupported();
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param m row major 4x4 matrix, only the first 3 rows are used
+     * @param count number of positions
+     */
+    static void transformPositions(double[] m,
+                                   double[] src, int srcOffset, int srcStride,
+                                   double[] dst, int dstOffset, int dstStride,
+                                   int count) {
+        int done = 0;
+        if (VECTORIZED) {
+            done = VectorTransformKernels.transformPositions(m, src, srcOffset, srcStride, dst, dstOffset, dstStride, count);
+        }
+        transformPositionsScalar(m, src, srcOffset + done * srcStride, srcStride, dst, dstOffset + done * dstStride, dstStride, count - done);
+    }
+
+    static void transformPositionsScalar(double[] m,
+                                         double[] src, int srcOffset, int srcStride,
+                                         double[] dst, int dstOffset, int dstStride,
+                                         int count) {
+        double m00 = m[0], m01 = m[1], m02 = m[2], m03 = m[3];
+        double m10 = m[4], m11 = m[5], m12 = m[6], m13 = m[7];
+        double m20 = m[8], m21 = m[9], m22 = m[10], m23 = m[11];
+        int s = srcOffset;
+        int d = dstOffset;
+        for (int i = 0; i < count; i++, s += srcStride, d += dstStride) {
+            double x = src[s];
+            double y = src[s + 1];
+            double z = src[s + 2];
+            dst[d] = m00 * x + m01 * y + m02 * z + m03;
+            dst[d + 1] = m10 * x + m11 * y + m12 * z + m13;
+            dst[d + 2] = m20 * x + m21 * y + m22 * z + m23;
+        }
+    }
+
+    /**
+     * Scales vectors stored as (x, y, z) triplets with a stride to unit length
+     */
+    static void normalize(double[] vs, int offset, int stride, int count) {
+        for (int i = 0, o = offset; i < count; i++, o += stride) {
+            double x = vs[o], y = vs[o + 1], z = vs[o + 2];
+            double r = 1 / Math.sqrt(x * x + y * y + z * z);
+            vs[o] = x * r;
+            vs[o + 1] = y * r;
+            vs[o + 2] = z * r;
+        }
+    }
+}
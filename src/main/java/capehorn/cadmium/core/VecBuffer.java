@@ -1,18 +1,46 @@
 package capehorn.cadmium.core;
 
+import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
 import java.util.function.BiFunction;
+import java.util.function.DoubleUnaryOperator;
 import java.util.function.Function;
 
 /**
  *      0 <= position <= limit <= capacity
+ * <p>
+ * The doubles are held by a {@link VecStorage}, on the heap by default. Buffers with off-heap or file mapped
+ * storage must be closed to release their memory.
+ * <p>
+ * The components of the items are stored in one of two {@link Layout layouts}:
+ * <ul>
+ *     <li>{@link Layout#INTERLEAVED}: the components of an item are next to each other, the default</li>
+ *     <li>{@link Layout#PLANAR}: one plane per component holding that component of every item, so a single
+ *     component of consecutive items is contiguous, e.g. for kernels working on x coordinates only</li>
+ * </ul>
+ * Items are read and written the same way in both layouts, as interleaved arrays of components.
  */
-public class VecBuffer {
+public class VecBuffer implements AutoCloseable {
+
+    private static final int MOVE_BLOCK = 1 << 12;
 
     private final int[] itemLayout;
     private final int itemSize;
+    private final Attribute[] attributes;
 
-    private double[] storage;
+    private VecStorage storage;
+    private GrowthPolicy growthPolicy = GrowthPolicy.DOUBLING;
+    private Layout layout;
+    /**
+     * Distance in the storage between the same component of consecutive items
+     */
+    private int itemStride;
+    /**
+     * Distance in the storage between consecutive components of an item
+     */
+    private int componentStride;
     /**
      * Current position
      */
@@ -28,20 +56,98 @@ public class VecBuffer {
     }
 
     public VecBuffer(int[] itemLayout, int numOfItems) {
-        this.itemLayout = itemLayout;
+        this(itemLayout, numOfItems, VecStorage.HEAP);
+    }
+
+    public VecBuffer(int[] itemLayout, int numOfItems, VecStorage.Factory storageFactory) {
+        this(unnamed(itemLayout), Layout.INTERLEAVED, numOfItems, storageFactory);
+    }
+
+    /**
+     * @param attributes named parts of an item in the order of their components
+     */
+    public VecBuffer(Attribute[] attributes, Layout layout, int numOfItems, VecStorage.Factory storageFactory) {
+        this.attributes = attributes.clone();
+        this.itemLayout = Arrays.stream(this.attributes).mapToInt(Attribute::size).toArray();
         this.itemSize = Arrays.stream(this.itemLayout).sum();
-        this.storage = new double[numOfItems * this.itemSize];
+        this.storage = storageFactory.allocate((long) numOfItems * this.itemSize);
         this.capacity = numOfItems;
         this.position = 0;
+        setStrides(layout);
     }
 
     private VecBuffer(int[] itemLayout, double[] src) {
+        this(itemLayout, new HeapVecStorage(src), src.length / Arrays.stream(itemLayout).sum());
+    }
+
+    /**
+     * Wraps an already filled storage, position and limit are set to the given number of items
+     */
+    private VecBuffer(int[] itemLayout, VecStorage storage, int limit) {
+        this.attributes = unnamed(itemLayout);
         this.itemLayout = itemLayout;
         this.itemSize = Arrays.stream(this.itemLayout).sum();
-        this.storage = src;
-        this.capacity = src.length / itemSize;
-        this.position = this.capacity;
-        this.limit = this.capacity;
+        this.storage = storage;
+        this.capacity = (int) (storage.length() / itemSize);
+        this.position = limit;
+        this.limit = limit;
+        setStrides(Layout.INTERLEAVED);
+    }
+
+    /**
+     * Attributes of an anonymous layout are named by their index
+     */
+    private static Attribute[] unnamed(int[] itemLayout) {
+        var attributes = new Attribute[itemLayout.length];
+        for (int i = 0; i < itemLayout.length; i++) {
+            attributes[i] = new Attribute(String.valueOf(i), itemLayout[i]);
+        }
+        return attributes;
+    }
+
+    /**
+     * @return heap buffer in {@link Layout#PLANAR planar} layout
+     */
+    public static VecBuffer planar(int numOfItems, Attribute... attributes) {
+        return new VecBuffer(attributes, Layout.PLANAR, numOfItems, VecStorage.HEAP);
+    }
+
+    /**
+     * @return buffer in native memory, not limited by the size of java arrays
+     */
+    public static VecBuffer offHeap(int[] itemLayout, int numOfItems) {
+        return new VecBuffer(itemLayout, numOfItems, VecStorage.OFF_HEAP);
+    }
+
+    /**
+     * Creates a buffer mapped to the given file, existing content of the file is discarded.
+     * The file can be reopened by {@link #openMapped(Path)} after this buffer is closed or {@link #force() forced}.
+     */
+    public static VecBuffer mapped(Path file, int[] itemLayout, int numOfItems) {
+        var storage = MappedVecStorage.create(file, itemLayout, (long) numOfItems * Arrays.stream(itemLayout).sum());
+        return new VecBuffer(itemLayout, storage, 0);
+    }
+
+    /**
+     * Maps a file written by a {@link #mapped(Path, int[], int) mapped} buffer, without reading or parsing its content.
+     * Position and limit are set to the limit the buffer was saved with.
+     */
+    public static VecBuffer openMapped(Path file) {
+        var storage = MappedVecStorage.open(file);
+        return new VecBuffer(storage.itemLayout(), storage, storage.limit());
+    }
+
+    /**
+     * Wraps a storage without copying it, all of its items are in the buffer (position and limit are at the end).
+     * Read-only storages throw {@link UnsupportedOperationException} on write.
+     */
+    public static VecBuffer wrap(VecStorage storage, int... itemLayout) {
+        int itemSize = Arrays.stream(itemLayout).sum();
+        long numOfItems = storage.length() / itemSize;
+        if (numOfItems > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many items for a buffer: " + numOfItems);
+        }
+        return new VecBuffer(itemLayout, storage, (int) numOfItems);
     }
 
     public static VecBuffer of(Vec3... elements) {
@@ -84,11 +190,187 @@ public class VecBuffer {
         return capacity;
     }
 
+    public GrowthPolicy getGrowthPolicy() {
+        return growthPolicy;
+    }
+
+    /**
+     * @param growthPolicy new capacity when the items put don't fit, {@link GrowthPolicy#DOUBLING} by default
+     */
+    public void setGrowthPolicy(GrowthPolicy growthPolicy) {
+        this.growthPolicy = Objects.requireNonNull(growthPolicy, "growthPolicy");
+    }
+
+    /**
+     * Moves the items up to the limit of a {@link VecStorage#CHUNKED chunked} storage into one heap array of exactly
+     * their size, the capacity becomes the limit. The chunks are released while they are copied, so the memory
+     * needed meanwhile is about twice the size of the items. Buffers of other storages are not changed.
+     * Cursors and views of the attributes stay valid.
+     */
+    public void compact() {
+        if (!(storage instanceof ChunkedVecStorage chunked)) {
+            return;
+        }
+        if (layout == Layout.PLANAR) {
+            for (int c = 1; c < itemSize; c++) {
+                move((long) c * capacity, (long) c * limit, limit);
+            }
+        }
+        storage = chunked.toHeap((long) limit * itemSize);
+        capacity = limit;
+        setStrides(layout);
+    }
+
+    /**
+     * @return number of doubles in one item
+     */
+    public int getItemSize() {
+        return itemSize;
+    }
+
+    public List<Attribute> getAttributes() {
+        return List.of(attributes);
+    }
+
+    /**
+     * @return index of the first component of the attribute within an item
+     * @throws IllegalArgumentException if there is no attribute with the name
+     */
+    public int getAttributeOffset(String name) {
+        int offset = 0;
+        for (int i = 0, end = attributeIdx(name); i < end; i++) {
+            offset += itemLayout[i];
+        }
+        return offset;
+    }
+
+    private int attributeIdx(String name) {
+        for (int i = 0; i < attributes.length; i++) {
+            if (attributes[i].name().equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("No attribute named " + name + " in " + Arrays.toString(attributes));
+    }
+
+    public Layout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Rearranges the items up to the limit in place, the storage is neither reallocated nor copied.
+     * Items between the limit and the capacity are not kept, and cursors must be {@link Cursor#moveTo moved}
+     * before they are used again. Views of the attributes follow the new layout.
+     *
+     * @throws UnsupportedOperationException for file mapped buffers, they are always interleaved
+     */
+    public void setLayout(Layout layout) {
+        if (layout == this.layout) {
+            return;
+        }
+        if (storage instanceof MappedVecStorage) {
+            throw new UnsupportedOperationException("Mapped buffers are stored interleaved");
+        }
+        if (layout == Layout.PLANAR) {
+            transpose(limit, itemSize);
+            for (int c = itemSize - 1; c > 0; c--) {
+                move((long) c * limit, (long) c * capacity, limit);
+            }
+        } else {
+            for (int c = 1; c < itemSize; c++) {
+                move((long) c * capacity, (long) c * limit, limit);
+            }
+            transpose(itemSize, limit);
+        }
+        setStrides(layout);
+    }
+
+    private void setStrides(Layout layout) {
+        this.layout = layout;
+        this.itemStride = layout == Layout.PLANAR ? 1 : itemSize;
+        this.componentStride = layout == Layout.PLANAR ? capacity : 1;
+    }
+
+    private long index(int itemIdx, int component) {
+        return (long) itemIdx * itemStride + (long) component * componentStride;
+    }
+
+    /**
+     * Transposes the rows x cols matrix at the beginning of the storage by following the cycles of the permutation,
+     * only one bit per element is allocated to mark the moved elements
+     */
+    private void transpose(int rows, int cols) {
+        if (rows < 2 || cols < 2) {
+            return;
+        }
+        long length = (long) rows * cols;
+        long[] moved = new long[(int) ((length + 63) >>> 6)];
+        for (long start = 1; start < length - 1; start++) {
+            if ((moved[(int) (start >>> 6)] & (1L << start)) != 0) {
+                continue;
+            }
+            long idx = start;
+            double v = storage.get(start);
+            do {
+                // element (idx / cols, idx % cols) goes to (idx % cols, idx / cols)
+                long next = (idx % cols) * rows + idx / cols;
+                double displaced = storage.get(next);
+                storage.set(next, v);
+                v = displaced;
+                moved[(int) (next >>> 6)] |= 1L << next;
+                idx = next;
+            } while (idx != start);
+        }
+    }
+
+    /**
+     * Copies a range of the storage to a possibly overlapping range
+     */
+    private void move(long from, long to, long length) {
+        if (from == to || length == 0) {
+            return;
+        }
+        double[] block = new double[(int) Math.min(length, MOVE_BLOCK)];
+        for (long done = 0; done < length; ) {
+            int n = (int) Math.min(length - done, block.length);
+            // moving up starts at the end, so the source is read before it is overwritten
+            long offset = to > from ? length - done - n : done;
+            storage.get(from + offset, block, 0, n);
+            storage.put(to + offset, block, 0, n);
+            done += n;
+        }
+    }
+
+    /**
+     * Zero-copy view of one attribute of every item up to the current limit, as a buffer of items of the attribute's size.
+     * Components are read and written directly in this buffer, also after it grows or its layout changes,
+     * but the view can't grow.
+     */
+    public VecBuffer attributeView(String name) {
+        int offset = getAttributeOffset(name);
+        int size = itemLayout[attributeIdx(name)];
+        return VecBuffer.wrap(new AttributeView(offset, size, limit), size);
+    }
+
+    /**
+     * Writes back the content of a file mapped buffer, no-op for buffers in memory
+     */
+    public void force() {
+        storage.sync(limit);
+    }
+
+    @Override
+    public void close() {
+        storage.sync(limit);
+        storage.close();
+    }
+
     public double[] get() {
         if (limit <= position) {
             throw new IllegalStateException("Can't read item beyond the limit ");
         }
-        double[] item = Arrays.copyOfRange(storage, position * itemSize, (position + 1) * itemSize);
+        double[] item = new double[itemSize];
+        readItems(position, 1, item, 0);
         position += 1;
         return item;
     }
@@ -97,8 +379,9 @@ public class VecBuffer {
         if (limit <= itemIdx) {
             throw new IllegalStateException("Can't read item beyond the limit ");
         }
-        int from = itemIdx * itemSize;
-        return Arrays.copyOfRange(storage, from, from + itemSize);
+        double[] item = new double[itemSize];
+        readItems(itemIdx, 1, item, 0);
+        return item;
     }
 
     public void get(int itemIdx, double[] dst) {
@@ -108,40 +391,347 @@ public class VecBuffer {
         if (limit <= itemIdx) {
             throw new IllegalStateException("Can't read item beyond the limit ");
         }
-        System.arraycopy(storage, itemIdx * itemSize, dst,0, itemSize);
+        readItems(itemIdx, 1, dst, 0);
+    }
+
+    /**
+     * Reads the item in single precision, without conversion if the storage holds floats
+     */
+    public void get(int itemIdx, float[] dst) {
+        if (dst.length != itemSize) {
+            throw new IllegalArgumentException("Length of dst must be " + itemSize);
+        }
+        if (limit <= itemIdx) {
+            throw new IllegalStateException("Can't read item beyond the limit ");
+        }
+        readItems(itemIdx, 1, dst);
+    }
+
+    /**
+     * @return all items up to the limit in single precision, interleaved in both layouts
+     */
+    public float[] toFloatArray() {
+        long length = (long) limit * itemSize;
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Too many values for an array: " + length);
+        }
+        float[] dst = new float[(int) length];
+        readItems(0, limit, dst);
+        return dst;
+    }
+
+    /**
+     * @return true if the values are stored in single precision
+     */
+    public boolean isSinglePrecision() {
+        return storage.isSinglePrecision();
+    }
+
+    /**
+     * Copies numOfItems items starting at fromItem into the beginning of dst, the position is not changed
+     */
+    public void getItems(int fromItem, int numOfItems, double[] dst) {
+        if (fromItem < 0 || limit < fromItem + numOfItems) {
+            throw new IllegalStateException("Can't read item beyond the limit ");
+        }
+        readItems(fromItem, numOfItems, dst, 0);
+    }
+
+    /**
+     * Overwrites numOfItems existing items starting at fromItem with the beginning of src, the position is not changed
+     */
+    public void setItems(int fromItem, int numOfItems, double[] src) {
+        if (fromItem < 0 || limit < fromItem + numOfItems) {
+            throw new IllegalStateException("Can't write item beyond the limit ");
+        }
+        writeItems(fromItem, numOfItems, src, 0);
+    }
+
+    /**
+     * Copies one component of numOfItems items starting at fromItem into dst, the position is not changed.
+     * It is a bulk copy of a range of the storage in {@link Layout#PLANAR planar} layout.
+     */
+    public void getComponents(int component, int fromItem, int numOfItems, double[] dst, int dstOffset) {
+        Objects.checkIndex(component, itemSize);
+        if (fromItem < 0 || limit < fromItem + numOfItems) {
+            throw new IllegalStateException("Can't read item beyond the limit ");
+        }
+        if (layout == Layout.PLANAR) {
+            storage.get(index(fromItem, component), dst, dstOffset, numOfItems);
+            return;
+        }
+        long idx = index(fromItem, component);
+        for (int i = 0; i < numOfItems; i++, idx += itemStride) {
+            dst[dstOffset + i] = storage.get(idx);
+        }
+    }
+
+    /**
+     * Overwrites one component of numOfItems existing items starting at fromItem, the position is not changed
+     */
+    public void setComponents(int component, int fromItem, int numOfItems, double[] src, int srcOffset) {
+        Objects.checkIndex(component, itemSize);
+        if (fromItem < 0 || limit < fromItem + numOfItems) {
+            throw new IllegalStateException("Can't write item beyond the limit ");
+        }
+        if (layout == Layout.PLANAR) {
+            storage.put(index(fromItem, component), src, srcOffset, numOfItems);
+            return;
+        }
+        long idx = index(fromItem, component);
+        for (int i = 0; i < numOfItems; i++, idx += itemStride) {
+            storage.set(idx, src[srcOffset + i]);
+        }
     }
 
     public void put(double... src) {
-        int srcLength = src.length;
+        put(src, 0, src.length);
+    }
+
+    /**
+     * Puts whole items from a range of the array at the position, the buffer grows if needed
+     */
+    public void put(double[] src, int srcOffset, int srcLength) {
         if (1 < itemSize && srcLength % itemSize != 0) {
             throw new IllegalArgumentException("Length of src must be multiple of " + itemSize);
         }
         int numOfItems = srcLength / itemSize;
         if ((capacity - position) < numOfItems) {
-            grow();
+            grow(position + numOfItems);
         }
-        System.arraycopy(src, 0, this.storage, position * itemSize, srcLength);
+        writeItems(position, numOfItems, src, srcOffset);
         position += numOfItems;
         limit = Math.max(limit, position);
     }
 
     public void recompute(int itemIdx, Function<double[], double[]> fn) {
-        System.arraycopy(fn.apply(get(itemIdx)), 0, storage, itemIdx * itemSize, itemSize);
+        writeItems(itemIdx, 1, fn.apply(get(itemIdx)), 0);
     }
 
     public void recompute(BiFunction<Integer, double[], double[]> fn) {
         for (int i = 0; i < limit; i++) {
-            System.arraycopy(fn.apply(i, get(i)), 0, storage, i * itemSize, itemSize);
+            writeItems(i, 1, fn.apply(i, get(i)), 0);
+        }
+    }
+
+    /**
+     * Updates every component of every item up to the limit without copying the items
+     */
+    public void recomputeInPlace(DoubleUnaryOperator op) {
+        // the items up to the limit are contiguous in every plane
+        int numOfRanges = layout == Layout.PLANAR ? itemSize : 1;
+        long length = layout == Layout.PLANAR ? limit : (long) limit * itemSize;
+        for (int r = 0; r < numOfRanges; r++) {
+            for (long i = (long) r * componentStride, end = i + length; i < end; i++) {
+                storage.set(i, op.applyAsDouble(storage.get(i)));
+            }
+        }
+    }
+
+    /**
+     * Updates the items up to the limit through a cursor, the items are neither copied nor reallocated
+     */
+    public void recomputeInPlace(ItemOperator op) {
+        var cursor = new Cursor();
+        while (cursor.hasItem()) {
+            op.apply(cursor.index(), cursor);
+            cursor.advance();
+        }
+    }
+
+    private void readItems(int fromItem, int numOfItems, double[] dst, int dstOffset) {
+        if (layout == Layout.INTERLEAVED) {
+            storage.get((long) fromItem * itemSize, dst, dstOffset, numOfItems * itemSize);
+            return;
+        }
+        for (int i = 0, d = dstOffset; i < numOfItems; i++) {
+            for (int c = 0; c < itemSize; c++) {
+                dst[d++] = storage.get(index(fromItem + i, c));
+            }
+        }
+    }
+
+    private void readItems(int fromItem, int numOfItems, float[] dst) {
+        if (layout == Layout.INTERLEAVED) {
+            storage.get((long) fromItem * itemSize, dst, 0, numOfItems * itemSize);
+            return;
+        }
+        for (int i = 0, d = 0; i < numOfItems; i++) {
+            for (int c = 0; c < itemSize; c++) {
+                dst[d++] = storage.getFloat(index(fromItem + i, c));
+            }
+        }
+    }
+
+    private void writeItems(int fromItem, int numOfItems, double[] src, int srcOffset) {
+        if (layout == Layout.INTERLEAVED) {
+            storage.put((long) fromItem * itemSize, src, srcOffset, numOfItems * itemSize);
+            return;
+        }
+        for (int i = 0, s = srcOffset; i < numOfItems; i++) {
+            for (int c = 0; c < itemSize; c++) {
+                storage.set(index(fromItem + i, c), src[s++]);
+            }
+        }
+    }
+
+    /**
+     * @return a cursor on the first item, it does not change the position of the buffer
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    @FunctionalInterface
+    public interface ItemOperator {
+        void apply(int itemIdx, Cursor item);
+    }
+
+    /**
+     * Arrangement of the components of the items in the storage
+     */
+    public enum Layout {
+        /**
+         * Array of structures: component c of item i is at i * itemSize + c
+         */
+        INTERLEAVED,
+        /**
+         * Structure of arrays: component c of item i is at c * capacity + i. Growing moves the planes
+         * to the new capacity, also in chunked storage.
+         */
+        PLANAR
+    }
+
+    /**
+     * Named part of an item, e.g. a position of 3 components
+     */
+    public record Attribute(String name, int size) {
+        public Attribute {
+            Objects.requireNonNull(name, "name");
+            if (size <= 0) {
+                throw new IllegalArgumentException("Size of attribute " + name + " must be positive: " + size);
+            }
+        }
+    }
+
+    /**
+     * Flyweight view of one item of the buffer. Components are read and written directly in the storage.
+     * <pre>
+     *     for (var c = buffer.cursor(); c.hasItem(); c.advance()) {
+     *         c.set(0, c.getDouble(0) * 2);
+     *     }
+     * </pre>
+     * A cursor has its own item index, so several cursors can read the same buffer at once.
+     */
+    public final class Cursor {
+        private int itemIdx;
+        private long offset;
+
+        private Cursor() {
+        }
+
+        public int index() {
+            return itemIdx;
+        }
+
+        public boolean hasItem() {
+            return itemIdx < limit;
+        }
+
+        /**
+         * Steps to the next item
+         * @return true if there is an item at the new index
+         */
+        public boolean advance() {
+            itemIdx += 1;
+            offset += itemStride;
+            return itemIdx < limit;
+        }
+
+        public Cursor moveTo(int itemIdx) {
+            if (itemIdx < 0 || limit < itemIdx) {
+                throw new IndexOutOfBoundsException("Item index out of [0, limit]: " + itemIdx);
+            }
+            this.itemIdx = itemIdx;
+            this.offset = (long) itemIdx * itemStride;
+            return this;
+        }
+
+        public double getDouble(int component) {
+            return storage.get(offset + (long) Objects.checkIndex(component, itemSize) * componentStride);
+        }
+
+        public float getFloat(int component) {
+            return storage.getFloat(offset + (long) Objects.checkIndex(component, itemSize) * componentStride);
+        }
+
+        public void set(int component, double v) {
+            storage.set(offset + (long) Objects.checkIndex(component, itemSize) * componentStride, v);
         }
     }
 
-    private void grow() {
-        // right now just double the size, later can be driven by different strategies
-        int newCapacity = capacity * 2;
-        double[] newStorage = new double[newCapacity * itemSize];
-        System.arraycopy(storage, 0, newStorage, 0, capacity * itemSize);
-        this.storage = newStorage;
+    /**
+     * Storage of the components of one attribute, indexed as if the attribute was the only one in the items
+     */
+    private final class AttributeView implements VecStorage {
+        private final int offset;
+        private final int size;
+        private final int numOfItems;
+
+        AttributeView(int offset, int size, int numOfItems) {
+            this.offset = offset;
+            this.size = size;
+            this.numOfItems = numOfItems;
+        }
+
+        @Override
+        public long length() {
+            return (long) numOfItems * size;
+        }
+
+        @Override
+        public double get(long idx) {
+            return storage.get(index(idx));
+        }
+
+        @Override
+        public float getFloat(long idx) {
+            return storage.getFloat(index(idx));
+        }
+
+        @Override
+        public void set(long idx, double v) {
+            storage.set(index(idx), v);
+        }
+
+        @Override
+        public boolean isSinglePrecision() {
+            return storage.isSinglePrecision();
+        }
+
+        private long index(long idx) {
+            return VecBuffer.this.index((int) (idx / size), offset + (int) (idx % size));
+        }
+
+        @Override
+        public void resize(long newLength) {
+            throw new UnsupportedOperationException("Attribute view can't grow");
+        }
+    }
+
+    private void grow(int minCapacity) {
+        int newCapacity = growthPolicy.newCapacity(capacity, minCapacity);
+        if (newCapacity < minCapacity) {
+            throw new IllegalStateException("Growth policy gave capacity " + newCapacity + " instead of at least " + minCapacity);
+        }
+        storage.resize((long) newCapacity * itemSize);
+        if (layout == Layout.PLANAR) {
+            // planes are spread to the new capacity from the last one, so none is overwritten before it is moved
+            for (int c = itemSize - 1; c > 0; c--) {
+                move((long) c * capacity, (long) c * newCapacity, limit);
+            }
+        }
         this.capacity = newCapacity;
+        setStrides(layout);
     }
-    
 }
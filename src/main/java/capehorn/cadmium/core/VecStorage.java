@@ -0,0 +1,98 @@
+package capehorn.cadmium.core;
+
+/**
+ * Flat storage of the doubles of a {@link VecBuffer}, indexed by long so it is not limited to 2^31 elements.
+ * <p>
+ * Implementations:
+ * <ul>
+ *     <li>{@link #HEAP} - on-heap double[], the default</li>
+ *     <li>{@link #OFF_HEAP} - native memory through the FFM API</li>
+ *     <li>{@link #HEAP_FLOAT} - on-heap float[], values are rounded to single precision</li>
+ *     <li>{@link #CHUNKED} - on-heap chunks of double[], growing does not copy the existing values</li>
+ *     <li>memory-mapped file, see {@link VecBuffer#mapped(java.nio.file.Path, int[], int)}</li>
+ * </ul>
+ */
+public interface VecStorage extends AutoCloseable {
+
+    Factory HEAP = HeapVecStorage::new;
+
+    Factory OFF_HEAP = OffHeapVecStorage::new;
+
+    /**
+     * On-heap float[], half the memory of {@link #HEAP} for data where single precision is enough
+     */
+    Factory HEAP_FLOAT = FloatHeapVecStorage::new;
+
+    /**
+     * On-heap chunks of 2^16 doubles for buffers built incrementally, see {@link VecBuffer#compact()}
+     */
+    Factory CHUNKED = chunked(ChunkedVecStorage.DEFAULT_CHUNK_LENGTH);
+
+    /**
+     * @param chunkLength number of doubles in a chunk, a power of two
+     */
+    static Factory chunked(int chunkLength) {
+        return length -> new ChunkedVecStorage(chunkLength, length);
+    }
+
+    /**
+     * @return number of doubles this storage can hold
+     */
+    long length();
+
+    double get(long idx);
+
+    void set(long idx, double v);
+
+    default float getFloat(long idx) {
+        return (float) get(idx);
+    }
+
+    /**
+     * @return true if the stored values are rounded to float
+     */
+    default boolean isSinglePrecision() {
+        return false;
+    }
+
+    default void get(long idx, double[] dst, int dstOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            dst[dstOffset + i] = get(idx + i);
+        }
+    }
+
+    default void get(long idx, float[] dst, int dstOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            dst[dstOffset + i] = getFloat(idx + i);
+        }
+    }
+
+    default void put(long idx, double[] src, int srcOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            set(idx + i, src[srcOffset + i]);
+        }
+    }
+
+    /**
+     * Changes the length keeping the content up to the smaller of the old and new length
+     */
+    void resize(long newLength);
+
+    /**
+     * Persists the content together with the number of used items, if the storage is persistent at all
+     */
+    default void sync(int limit) {
+    }
+
+    /**
+     * Releases the memory held outside the heap, the storage must not be used afterward
+     */
+    @Override
+    default void close() {
+    }
+
+    @FunctionalInterface
+    interface Factory {
+        VecStorage allocate(long length);
+    }
+}
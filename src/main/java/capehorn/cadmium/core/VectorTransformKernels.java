@@ -0,0 +1,83 @@
+package capehorn.cadmium.core;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API kernels, this class must be loaded only if the incubator module is present.
+ * Positions are gathered from and scattered to the strided layout, one lane per position.
+ * The operations are done in the order of the scalar loop without fusing them, so a position gets
+ * the same coordinates in a lane, in the scalar remainder and from {@link Mat4x4#mulPosition(Vec3)}.
+ */
+final class VectorTransformKernels {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    /**
+     * Gather and scatter maps of the strides up to the size of a triangle of soup with its normal
+     */
+    private static final int[][] INDEX_MAPS = new int[13][];
+
+    static {
+        for (int stride = 0; stride < INDEX_MAPS.length; stride++) {
+            INDEX_MAPS[stride] = createIndexMap(stride);
+        }
+    }
+
+    private VectorTransformKernels() {
+    }
+
+    static boolean isSupported() {
+        return SPECIES.length() > 1;
+    }
+
+    /**
+     * @return number of positions transformed, the remainder is left for the scalar loop
+     */
+    static int transformPositions(double[] m,
+                                  double[] src, int srcOffset, int srcStride,
+                                  double[] dst, int dstOffset, int dstStride,
+                                  int count) {
+        int lanes = SPECIES.length();
+        int bound = count - count % lanes;
+        if (bound == 0) {
+            return 0;
+        }
+        int[] srcMap = indexMap(srcStride);
+        int[] dstMap = indexMap(dstStride);
+        var m00 = DoubleVector.broadcast(SPECIES, m[0]);
+        var m01 = DoubleVector.broadcast(SPECIES, m[1]);
+        var m02 = DoubleVector.broadcast(SPECIES, m[2]);
+        var m03 = DoubleVector.broadcast(SPECIES, m[3]);
+        var m10 = DoubleVector.broadcast(SPECIES, m[4]);
+        var m11 = DoubleVector.broadcast(SPECIES, m[5]);
+        var m12 = DoubleVector.broadcast(SPECIES, m[6]);
+        var m13 = DoubleVector.broadcast(SPECIES, m[7]);
+        var m20 = DoubleVector.broadcast(SPECIES, m[8]);
+        var m21 = DoubleVector.broadcast(SPECIES, m[9]);
+        var m22 = DoubleVector.broadcast(SPECIES, m[10]);
+        var m23 = DoubleVector.broadcast(SPECIES, m[11]);
+        for (int i = 0; i < bound; i += lanes) {
+            int s = srcOffset + i * srcStride;
+            int d = dstOffset + i * dstStride;
+            var x = DoubleVector.fromArray(SPECIES, src, s, srcMap, 0);
+            var y = DoubleVector.fromArray(SPECIES, src, s + 1, srcMap, 0);
+            var z = DoubleVector.fromArray(SPECIES, src, s + 2, srcMap, 0);
+            m00.mul(x).add(m01.mul(y)).add(m02.mul(z)).add(m03).intoArray(dst, d, dstMap, 0);
+            m10.mul(x).add(m11.mul(y)).add(m12.mul(z)).add(m13).intoArray(dst, d + 1, dstMap, 0);
+            m20.mul(x).add(m21.mul(y)).add(m22.mul(z)).add(m23).intoArray(dst, d + 2, dstMap, 0);
+        }
+        return bound;
+    }
+
+    private static int[] indexMap(int stride) {
+        return stride < INDEX_MAPS.length ? INDEX_MAPS[stride] : createIndexMap(stride);
+    }
+
+    private static int[] createIndexMap(int stride) {
+        int[] map = new int[SPECIES.length()];
+        for (int i = 0; i < map.length; i++) {
+            map[i] = i * stride;
+        }
+        return map;
+    }
+}
@@ -7,6 +7,9 @@ import java.io.Closeable;
 import java.io.Flushable;
 import java.io.IOException;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Locale;
 import java.util.Objects;
 
 public class Obj {
@@ -15,47 +18,167 @@ public class Obj {
         return new ObjFormatWriter(writer);
     }
 
+    public ObjFormatWriter writer(WritableByteChannel channel, Precision precision) {
+        return new ObjFormatWriter(channel, precision);
+    }
+
+    public ObjFormatReader reader() {
+        return new ObjFormatReader();
+    }
+
+    /**
+     * Output format of the coordinates
+     *
+     * @param fractionDigits number of digits after the decimal point, or -1 for the shortest representation
+     *                       that reads back as the same double (as {@link Double#toString(double)})
+     */
+    public record Precision(int fractionDigits) {
+        private static final long[] POW10 = {
+                1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L,
+                10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L, 10_000_000_000_000L, 100_000_000_000_000L
+        };
+
+        public static final Precision SHORTEST = new Precision(-1);
+
+        public Precision {
+            if (fractionDigits < -1 || POW10.length <= fractionDigits) {
+                throw new IllegalArgumentException("Number of fraction digits must be in [0, " + (POW10.length - 1)
+                        + "] or -1 for the shortest representation: " + fractionDigits);
+            }
+        }
+
+        public static Precision fixed(int fractionDigits) {
+            return new Precision(fractionDigits);
+        }
+
+        /**
+         * Appends the value without creating intermediate strings.
+         * Fixed precision rounds half up like {@code %f}, but locale independently.
+         */
+        void append(StringBuilder sb, double v) {
+            if (fractionDigits < 0) {
+                sb.append(v);
+                return;
+            }
+            long scale = POW10[fractionDigits];
+            double abs = Math.abs(v);
+            if (!(abs * scale < 0x1p53)) {
+                // too large to be scaled exactly, or NaN / infinite
+                sb.append(String.format(Locale.ROOT, "%." + fractionDigits + "f", v));
+                return;
+            }
+            long scaled = Math.round(abs * scale);
+            if (Double.doubleToRawLongBits(v) < 0) {
+                sb.append('-');
+            }
+            sb.append(scaled / scale);
+            if (fractionDigits > 0) {
+                sb.append('.');
+                long fraction = scaled % scale;
+                for (long p = scale / 10; p > fraction && p > 1; p /= 10) {
+                    sb.append('0');
+                }
+                sb.append(fraction);
+            }
+        }
+    }
+
+    /**
+     * Writes obj. format line by line. Every line is built in a reusable buffer, so writing does not allocate.
+     * <p>
+     * A writer over a {@link Writer} passes each line to it immediately.
+     * A writer over a channel collects the lines in a byte buffer and writes them in large blocks,
+     * it must be flushed or closed at the end.
+     */
     public static class ObjFormatWriter implements Closeable, Flushable {
+        private static final int CHANNEL_BUFFER_SIZE = 1 << 16;
+
         private final Writer writer;
+        private final WritableByteChannel channel;
+        private final ByteBuffer bytes;
+        private final Precision precision;
+        private final StringBuilder line = new StringBuilder(128);
+        private char[] chars = new char[128];
         private int vertexCounter;
 
         public ObjFormatWriter(Writer writer) {
             this.writer = writer;
+            this.channel = null;
+            this.bytes = null;
+            this.precision = Precision.fixed(6);
+        }
+
+        public ObjFormatWriter(WritableByteChannel channel, Precision precision) {
+            this.writer = null;
+            this.channel = Objects.requireNonNull(channel);
+            this.bytes = ByteBuffer.allocate(CHANNEL_BUFFER_SIZE);
+            this.precision = Objects.requireNonNull(precision);
         }
 
         @Override
         public void flush() throws IOException {
-            writer.flush();
+            if (channel != null) {
+                drain();
+            } else {
+                writer.flush();
+            }
         }
 
         @Override
         public void close() throws IOException {
-            writer.close();
+            if (channel != null) {
+                drain();
+                channel.close();
+            } else {
+                writer.close();
+            }
+        }
+
+        /**
+         * @return number of vertices written so far, which is the index of the last vertex
+         */
+        public int getNumOfVertices() {
+            return vertexCounter;
         }
 
         public int writeVertex(double x, double y, double z) {
-            write(String.format("v %f %f %f\n", x, y, z));
+            line.append('v');
+            appendCoordinates(x, y, z);
+            endLine();
             return ++vertexCounter;
         }
 
         public int writeVertex(Vec3 v) {
-            write(String.format("v %f %f %f\n", v.x(), v.y(), v.z()));
-            return ++vertexCounter;
+            return writeVertex(v.x(), v.y(), v.z());
         }
 
         public int writeVertex(double x, double y, double z, double w) {
-            write(String.format("v %f %f %f %f\n", x, y, z, w));
+            line.append('v');
+            appendCoordinates(x, y, z);
+            line.append(' ');
+            precision.append(line, w);
+            endLine();
             return ++vertexCounter;
         }
 
         public void writeVertexNormal(double x, double y, double z) {
-            write(String.format("vn %f %f %f\n", x, y, z));
+            line.append("vn");
+            appendCoordinates(x, y, z);
+            endLine();
         }
 
         public void writeFace(int... faceIndices) {
             writeFaceAccordingly(faceIndices, null, null);
         }
 
+        /**
+         * Writes a triangle face without creating an index array
+         */
+        public void writeFace(int v1, int v2, int v3) {
+            line.append('f').append(' ').append(v1).append(' ').append(v2).append(' ').append(v3);
+            endLine();
+        }
+
         public void writeFaceWithTexture(int[] faceIndices, int[] textureIndices) {
             // TODO verify input (equal length)
             writeFace(faceIndices, textureIndices, null);
@@ -72,41 +195,85 @@ public class Obj {
         }
 
         public void writeLine(int[] vertexIndices) {
-            StringBuilder sb = new StringBuilder("l");
+            line.append('l');
             for (int idx: vertexIndices) {
-                sb.append(" ").append(idx);
+                line.append(' ').append(idx);
             }
-            sb.append("\n");
-            write(sb.toString());
+            endLine();
         }
 
         private void writeFaceAccordingly(int[] fs, int[] ts, int[] ns) {
-            StringBuilder sb = new StringBuilder("f");
+            line.append('f');
             for (int i = 0; i < fs.length; i++) {
-                sb.append(" ").append(fs[i]);
+                line.append(' ').append(fs[i]);
                 if (ts == null && ns == null) {
                     continue;
                 }
                 if (ts != null && ns != null) {
-                    sb.append("/").append(ts[i]).append("/").append(ns[i]);
+                    line.append('/').append(ts[i]).append('/').append(ns[i]);
                     continue;
                 }
                 if (ts != null) {
-                    sb.append("/").append(ts[i]);
+                    line.append('/').append(ts[i]);
                     continue;
                 }
-                sb.append("//").append(ns[i]);
+                line.append("//").append(ns[i]);
             }
-            sb.append("\n");
-            write(sb.toString());
+            endLine();
         }
 
-        private void write(String str) {
+        private void appendCoordinates(double x, double y, double z) {
+            line.append(' ');
+            precision.append(line, x);
+            line.append(' ');
+            precision.append(line, y);
+            line.append(' ');
+            precision.append(line, z);
+        }
+
+        private void endLine() {
+            line.append('\n');
             try {
-                writer.write(str);
+                if (channel != null) {
+                    writeToChannel();
+                } else {
+                    writeToWriter();
+                }
             } catch (IOException e) {
-                throw new CadmiumRuntimeException("Failed to write into obj. format: " + str);
+                throw new CadmiumRuntimeException("Failed to write into obj. format: " + line);
+            } finally {
+                line.setLength(0);
+            }
+        }
+
+        private void writeToWriter() throws IOException {
+            int length = line.length();
+            if (chars.length < length) {
+                chars = new char[Math.max(length, 2 * chars.length)];
+            }
+            line.getChars(0, length, chars, 0);
+            writer.write(chars, 0, length);
+        }
+
+        /**
+         * The obj. format written here is pure ASCII, so chars are bytes
+         */
+        private void writeToChannel() throws IOException {
+            int length = line.length();
+            for (int i = 0; i < length; i++) {
+                if (!bytes.hasRemaining()) {
+                    drain();
+                }
+                bytes.put((byte) line.charAt(i));
+            }
+        }
+
+        private void drain() throws IOException {
+            bytes.flip();
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
             }
+            bytes.clear();
         }
     }
 
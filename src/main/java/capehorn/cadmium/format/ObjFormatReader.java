@@ -0,0 +1,515 @@
+package capehorn.cadmium.format;
+
+import capehorn.cadmium.CadmiumRuntimeException;
+import capehorn.cadmium.core.VecBuffer;
+import capehorn.cadmium.core.VecStorage;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Reads the geometry of obj. format: vertices ({@code v}), vertex normals ({@code vn}),
+ * faces ({@code f} with any of the {@code v}, {@code v/t}, {@code v/t/n} and {@code v//n} forms) and polylines ({@code l}).
+ * Faces with more than 3 vertices are triangulated as a fan, polylines are split into segments.
+ * Everything else (texture coordinates, groups, materials, ...) is skipped.
+ * <p>
+ * The file is memory mapped and split into line aligned chunks which are parsed in parallel on the common fork-join pool.
+ * Numbers are parsed straight from the mapped bytes, without creating strings. The chunks are merged into
+ * buffers sized exactly for the content, relative (negative) indices are resolved while merging.
+ */
+public class ObjFormatReader {
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+    private static final int[] VERTEX_LAYOUT = {3};
+    /**
+     * Powers of ten which are exact doubles
+     */
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final VecStorage.Factory storageFactory;
+    private final long minChunkSize;
+
+    public ObjFormatReader() {
+        this(VecStorage.HEAP);
+    }
+
+    /**
+     * @param storageFactory storage of the vertex and normal buffers
+     */
+    public ObjFormatReader(VecStorage.Factory storageFactory) {
+        this(storageFactory, MIN_CHUNK_SIZE);
+    }
+
+    ObjFormatReader(VecStorage.Factory storageFactory, long minChunkSize) {
+        this.storageFactory = storageFactory;
+        this.minChunkSize = minChunkSize;
+    }
+
+    /**
+     * Geometry of an obj. file, all indices are zero based.
+     *
+     * @param positions vertices in the order of the file
+     * @param normals vertex normals in the order of the file
+     * @param triangles vertex indices, 3 per triangle
+     * @param triangleNormals normal indices of the triangle corners, -1 where the face does not refer to a normal
+     * @param segments vertex indices, 2 per segment
+     */
+    public record Content(VecBuffer positions, VecBuffer normals, int[] triangles, int[] triangleNormals, int[] segments) {
+
+        public int getNumOfTriangles() {
+            return triangles.length / 3;
+        }
+
+        public int getNumOfSegments() {
+            return segments.length / 2;
+        }
+    }
+
+    public Content read(Path file) throws IOException {
+        try (var arena = Arena.ofShared();
+             var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            var data = size == 0 ? MemorySegment.NULL : channel.map(FileChannel.MapMode.READ_ONLY, 0, size, arena);
+            long[] bounds = chunkBounds(data, size);
+            var chunks = IntStream.range(0, bounds.length - 1)
+                    .parallel()
+                    .mapToObj(i -> new Chunk(data, bounds[i], bounds[i + 1]).parse())
+                    .toArray(Chunk[]::new);
+            return merge(chunks);
+        }
+    }
+
+    /**
+     * @return start of every chunk and the end of the last one, every chunk starts at the beginning of a line
+     */
+    private long[] chunkBounds(MemorySegment data, long size) {
+        int parallelism = 4 * Runtime.getRuntime().availableProcessors();
+        int numOfChunks = (int) Math.max(1, Math.min(parallelism, size / minChunkSize));
+        long[] bounds = new long[numOfChunks + 1];
+        int n = 1;
+        for (int i = 1; i < numOfChunks; i++) {
+            long b = Math.max(bounds[n - 1], i * (size / numOfChunks));
+            while (b < size && data.get(ValueLayout.JAVA_BYTE, b) != '\n') {
+                b++;
+            }
+            if (size <= b + 1) {
+                break;
+            }
+            bounds[n++] = b + 1;
+        }
+        bounds[n++] = size;
+        return Arrays.copyOf(bounds, n);
+    }
+
+    private Content merge(Chunk[] chunks) {
+        int numOfVertices = 0;
+        int numOfNormals = 0;
+        int numOfCorners = 0;
+        int numOfSegmentEnds = 0;
+        int[] verticesBefore = new int[chunks.length];
+        int[] normalsBefore = new int[chunks.length];
+        int[] cornersBefore = new int[chunks.length];
+        int[] segmentEndsBefore = new int[chunks.length];
+        for (int i = 0; i < chunks.length; i++) {
+            var chunk = chunks[i];
+            verticesBefore[i] = numOfVertices;
+            normalsBefore[i] = numOfNormals;
+            cornersBefore[i] = numOfCorners;
+            segmentEndsBefore[i] = numOfSegmentEnds;
+            numOfVertices += chunk.positions.size / 3;
+            numOfNormals += chunk.normals.size / 3;
+            numOfCorners += chunk.faceVertices.size;
+            numOfSegmentEnds += chunk.segmentVertices.size;
+        }
+        var positions = new VecBuffer(VERTEX_LAYOUT, Math.max(1, numOfVertices), storageFactory);
+        positions.setLimit(numOfVertices);
+        positions.setPosition(numOfVertices);
+        var normals = new VecBuffer(VERTEX_LAYOUT, Math.max(1, numOfNormals), storageFactory);
+        normals.setLimit(numOfNormals);
+        normals.setPosition(numOfNormals);
+        int[] triangles = new int[numOfCorners];
+        int[] triangleNormals = new int[numOfCorners];
+        int[] segments = new int[numOfSegmentEnds];
+        int totalVertices = numOfVertices;
+        int totalNormals = numOfNormals;
+        IntStream.range(0, chunks.length).parallel().forEach(i -> {
+            var chunk = chunks[i];
+            positions.setItems(verticesBefore[i], chunk.positions.size / 3, chunk.positions.values);
+            normals.setItems(normalsBefore[i], chunk.normals.size / 3, chunk.normals.values);
+            resolve(chunk.faceVertices, chunk.relativeFaceVertices, verticesBefore[i], totalVertices, "vertex",
+                    triangles, cornersBefore[i]);
+            resolve(chunk.faceNormals, chunk.relativeFaceNormals, normalsBefore[i], totalNormals, "normal",
+                    triangleNormals, cornersBefore[i]);
+            resolve(chunk.segmentVertices, chunk.relativeSegmentVertices, verticesBefore[i], totalVertices, "vertex",
+                    segments, segmentEndsBefore[i]);
+        });
+        return new Content(positions, normals, triangles, triangleNormals, segments);
+    }
+
+    /**
+     * Copies the indices of a chunk to dst, shifting the relative ones by the number of elements of the previous chunks
+     */
+    private static void resolve(IntArray indices, IntArray relative, int before, int total, String kind,
+                                int[] dst, int dstOffset) {
+        int[] values = indices.values;
+        for (int i = 0; i < relative.size; i++) {
+            int idx = values[relative.values[i]] += before;
+            if (idx < 0) {
+                throw new CadmiumRuntimeException("Relative " + kind + " index refers before the first " + kind);
+            }
+        }
+        for (int i = 0; i < indices.size; i++) {
+            if (total <= values[i]) {
+                throw new CadmiumRuntimeException("Invalid " + kind + " index " + (values[i] + 1)
+                        + ", number of " + kind + "s: " + total);
+            }
+        }
+        System.arraycopy(values, 0, dst, dstOffset, indices.size);
+    }
+
+    /**
+     * Parses the lines in [from, to) of the mapped file. Indices are stored zero based. A relative index is stored
+     * relative to the start of the chunk, its place is collected to be shifted when the chunks are merged.
+     */
+    private static final class Chunk {
+        private static final int NONE = -1;
+
+        private final MemorySegment data;
+        private final long end;
+        private long pos;
+
+        private final DoubleArray positions = new DoubleArray();
+        private final DoubleArray normals = new DoubleArray();
+        private final IntArray faceVertices = new IntArray();
+        private final IntArray faceNormals = new IntArray();
+        private final IntArray relativeFaceVertices = new IntArray();
+        private final IntArray relativeFaceNormals = new IntArray();
+        private final IntArray segmentVertices = new IntArray();
+        private final IntArray relativeSegmentVertices = new IntArray();
+
+        Chunk(MemorySegment data, long from, long to) {
+            this.data = data;
+            this.pos = from;
+            this.end = to;
+        }
+
+        Chunk parse() {
+            while (pos < end) {
+                skipSpaces();
+                if (pos < end) {
+                    parseLine();
+                }
+                skipLine();
+            }
+            return this;
+        }
+
+        private void parseLine() {
+            byte b0 = peek(0);
+            byte b1 = peek(1);
+            if (b0 == 'v' && isSpace(b1)) {
+                pos += 1;
+                parseVec3(positions);
+            } else if (b0 == 'v' && b1 == 'n' && isSpace(peek(2))) {
+                pos += 2;
+                parseVec3(normals);
+            } else if (b0 == 'f' && isSpace(b1)) {
+                pos += 1;
+                parseFace();
+            } else if (b0 == 'l' && isSpace(b1)) {
+                pos += 1;
+                parsePolyline();
+            }
+        }
+
+        private void parseVec3(DoubleArray dst) {
+            double x = parseDouble();
+            double y = parseDouble();
+            double z = parseDouble();
+            dst.add(x, y, z);
+        }
+
+        private void parseFace() {
+            int numOfVertices = positions.size / 3;
+            int numOfNormals = normals.size / 3;
+            int firstV = 0, firstN = 0, prevV = 0, prevN = 0;
+            boolean firstRelativeV = false, firstRelativeN = false, prevRelativeV = false, prevRelativeN = false;
+            int corners = 0;
+            while (true) {
+                skipSpaces();
+                if (isLineEnd()) {
+                    break;
+                }
+                int rawV = parseInt();
+                int rawN = 0;
+                if (pos < end && peek(0) == '/') {
+                    pos++;
+                    if (pos < end && peek(0) != '/' && !isSpace(peek(0)) && !isLineEnd()) {
+                        parseInt();
+                    }
+                    if (pos < end && peek(0) == '/') {
+                        pos++;
+                        rawN = parseInt();
+                    }
+                }
+                int v = toIndex(rawV, numOfVertices);
+                int n = rawN == 0 ? NONE : toIndex(rawN, numOfNormals);
+                boolean relativeV = rawV < 0;
+                boolean relativeN = rawN < 0;
+                if (corners == 0) {
+                    firstV = v;
+                    firstN = n;
+                    firstRelativeV = relativeV;
+                    firstRelativeN = relativeN;
+                } else if (corners >= 2) {
+                    addCorner(firstV, firstRelativeV, firstN, firstRelativeN);
+                    addCorner(prevV, prevRelativeV, prevN, prevRelativeN);
+                    addCorner(v, relativeV, n, relativeN);
+                }
+                prevV = v;
+                prevN = n;
+                prevRelativeV = relativeV;
+                prevRelativeN = relativeN;
+                corners++;
+            }
+            if (corners < 3) {
+                throw error("Face needs at least 3 vertices");
+            }
+        }
+
+        private void addCorner(int v, boolean relativeV, int n, boolean relativeN) {
+            if (relativeV) {
+                relativeFaceVertices.add(faceVertices.size);
+            }
+            if (relativeN) {
+                relativeFaceNormals.add(faceNormals.size);
+            }
+            faceVertices.add(v);
+            faceNormals.add(n);
+        }
+
+        private void parsePolyline() {
+            int numOfVertices = positions.size / 3;
+            int prev = 0;
+            boolean prevRelative = false;
+            int points = 0;
+            while (true) {
+                skipSpaces();
+                if (isLineEnd()) {
+                    break;
+                }
+                int raw = parseInt();
+                if (pos < end && peek(0) == '/') {
+                    pos++;
+                    parseInt();
+                }
+                int v = toIndex(raw, numOfVertices);
+                if (points > 0) {
+                    addSegmentEnd(prev, prevRelative);
+                    addSegmentEnd(v, raw < 0);
+                }
+                prev = v;
+                prevRelative = raw < 0;
+                points++;
+            }
+            if (points < 2) {
+                throw error("Line needs at least 2 vertices");
+            }
+        }
+
+        private void addSegmentEnd(int v, boolean relative) {
+            if (relative) {
+                relativeSegmentVertices.add(segmentVertices.size);
+            }
+            segmentVertices.add(v);
+        }
+
+        /**
+         * @return zero based index of the 1 based absolute index,
+         * or the index relative to the start of the chunk for a negative index
+         */
+        private int toIndex(int raw, int numInChunk) {
+            if (raw == 0) {
+                throw error("Index must not be 0");
+            }
+            return raw > 0 ? raw - 1 : numInChunk + raw;
+        }
+
+        private int parseInt() {
+            boolean negative = false;
+            if (pos < end && (peek(0) == '-' || peek(0) == '+')) {
+                negative = peek(0) == '-';
+                pos++;
+            }
+            long start = pos;
+            long v = 0;
+            while (pos < end && isDigit(peek(0))) {
+                v = 10 * v + (peek(0) - '0');
+                pos++;
+                if (v > Integer.MAX_VALUE) {
+                    throw error("Index is too large");
+                }
+            }
+            if (pos == start) {
+                throw error("Index expected");
+            }
+            return (int) (negative ? -v : v);
+        }
+
+        /**
+         * Exact for decimals of at most 15 significant digits and exponents in [-22, 22]:
+         * both the mantissa and the power of ten are exact doubles and the product or quotient is correctly rounded
+         * (Clinger's fast path). Other numbers fall back to {@link Double#parseDouble(String)}.
+         */
+        private double parseDouble() {
+            skipSpaces();
+            long start = pos;
+            boolean negative = false;
+            if (pos < end && (peek(0) == '-' || peek(0) == '+')) {
+                negative = peek(0) == '-';
+                pos++;
+            }
+            long mantissa = 0;
+            int significantDigits = 0;
+            int digits = 0;
+            int exponent = 0;
+            while (pos < end && isDigit(peek(0))) {
+                mantissa = accumulate(mantissa, peek(0));
+                significantDigits += mantissa == 0 ? 0 : 1;
+                digits++;
+                pos++;
+            }
+            if (pos < end && peek(0) == '.') {
+                pos++;
+                while (pos < end && isDigit(peek(0))) {
+                    mantissa = accumulate(mantissa, peek(0));
+                    significantDigits += mantissa == 0 ? 0 : 1;
+                    digits++;
+                    exponent--;
+                    pos++;
+                }
+            }
+            if (pos < end && (peek(0) == 'e' || peek(0) == 'E')) {
+                pos++;
+                boolean negativeExponent = false;
+                if (pos < end && (peek(0) == '-' || peek(0) == '+')) {
+                    negativeExponent = peek(0) == '-';
+                    pos++;
+                }
+                int e = 0;
+                long expStart = pos;
+                while (pos < end && isDigit(peek(0))) {
+                    e = Math.min(10 * e + (peek(0) - '0'), 100_000);
+                    pos++;
+                }
+                if (pos == expStart) {
+                    return parseFallback(start);
+                }
+                exponent += negativeExponent ? -e : e;
+            }
+            if (digits == 0 || (pos < end && !isSpace(peek(0)) && !isLineEnd())) {
+                return parseFallback(start);
+            }
+            if (significantDigits > 15 || exponent < -22 || 22 < exponent) {
+                return parseFallback(start);
+            }
+            double v = exponent < 0 ? mantissa / POW10[-exponent] : mantissa * POW10[exponent];
+            return negative ? -v : v;
+        }
+
+        private static long accumulate(long mantissa, byte digit) {
+            // beyond 18 digits the fallback parser is used anyway, only overflow is avoided here
+            return mantissa < 100_000_000_000_000_000L ? 10 * mantissa + (digit - '0') : mantissa;
+        }
+
+        private double parseFallback(long start) {
+            while (pos < end && !isSpace(peek(0)) && !isLineEnd()) {
+                pos++;
+            }
+            var token = new String(data.asSlice(start, pos - start).toArray(ValueLayout.JAVA_BYTE), StandardCharsets.US_ASCII);
+            try {
+                return Double.parseDouble(token);
+            } catch (NumberFormatException e) {
+                throw error("Invalid number '" + token + "'");
+            }
+        }
+
+        private CadmiumRuntimeException error(String message) {
+            return new CadmiumRuntimeException(message + " at byte " + pos);
+        }
+
+        private void skipSpaces() {
+            while (pos < end && isSpace(peek(0))) {
+                pos++;
+            }
+        }
+
+        private void skipLine() {
+            while (pos < end && peek(0) != '\n') {
+                pos++;
+            }
+            pos++;
+        }
+
+        /**
+         * A comment also ends the content of the line
+         */
+        private boolean isLineEnd() {
+            if (end <= pos) {
+                return true;
+            }
+            byte b = peek(0);
+            return b == '\n' || b == '\r' || b == '#';
+        }
+
+        private byte peek(int ahead) {
+            long p = pos + ahead;
+            return p < end ? data.get(ValueLayout.JAVA_BYTE, p) : (byte) '\n';
+        }
+
+        private static boolean isSpace(byte b) {
+            return b == ' ' || b == '\t';
+        }
+
+        private static boolean isDigit(byte b) {
+            return '0' <= b && b <= '9';
+        }
+    }
+
+    private static final class DoubleArray {
+        private double[] values = new double[3 * 256];
+        private int size;
+
+        void add(double x, double y, double z) {
+            if (values.length < size + 3) {
+                values = Arrays.copyOf(values, 2 * values.length);
+            }
+            values[size] = x;
+            values[size + 1] = y;
+            values[size + 2] = z;
+            size += 3;
+        }
+    }
+
+    private static final class IntArray {
+        private int[] values = new int[256];
+        private int size;
+
+        void add(int v) {
+            if (values.length == size) {
+                values = Arrays.copyOf(values, 2 * values.length);
+            }
+            values[size++] = v;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package capehorn.cadmium.format.gltf;
+
+import capehorn.cadmium.CadmiumRuntimeException;
+import capehorn.cadmium.core.VecBuffer;
+import capehorn.cadmium.core.VecStorage;
+import capehorn.cadmium.format.gltf.dto.Accessor;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+
+/**
+ * Read-only typed view of an accessor directly over the bytes of its buffer view, nothing is copied.
+ * <p>
+ * The components of the elements are indexed as one flat sequence ({@code element * numOfComponents + component}),
+ * so the view is a {@link VecStorage} and can back a {@link VecBuffer}, see {@link #toVecBuffer()}.
+ * Normalized integer components are converted to [0, 1] or [-1, 1] as the glTF specification defines.
+ * Sparse accessors are not supported.
+ */
+public final class AccessorView implements VecStorage {
+    private static final ValueLayout.OfShort SHORT = ValueLayout.JAVA_SHORT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfFloat FLOAT = ValueLayout.JAVA_FLOAT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * Bytes of the accessor from its first element, null when the accessor has no buffer view (all zeros)
+     */
+    private final MemorySegment data;
+    private final int count;
+    private final int numOfComponents;
+    private final int componentType;
+    private final int componentSize;
+    private final boolean normalized;
+    private final long byteStride;
+
+    AccessorView(Accessor accessor, MemorySegment bufferView, Integer bufferViewStride) {
+        this.count = accessor.getCount();
+        this.numOfComponents = numOfComponents(accessor.getType());
+        this.componentType = accessor.getComponentType();
+        this.componentSize = componentSize(componentType);
+        this.normalized = Boolean.TRUE.equals(accessor.getNormalized());
+        long elementSize = (long) numOfComponents * componentSize;
+        this.byteStride = bufferViewStride != null ? bufferViewStride : elementSize;
+        if (bufferView == null) {
+            this.data = null;
+            return;
+        }
+        long byteLength = count == 0 ? 0 : (count - 1) * byteStride + elementSize;
+        if (bufferView.byteSize() < accessor.getByteOffset() + byteLength) {
+            throw new CadmiumRuntimeException("Accessor of " + count + " elements exceeds its buffer view of "
+                    + bufferView.byteSize() + " bytes");
+        }
+        this.data = bufferView.asSlice(accessor.getByteOffset(), byteLength);
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getNumOfComponents() {
+        return numOfComponents;
+    }
+
+    public int getComponentType() {
+        return componentType;
+    }
+
+    /**
+     * @return component of an element converted to double
+     */
+    public double get(int element, int component) {
+        if (data == null) {
+            return 0;
+        }
+        long offset = element * byteStride + (long) component * componentSize;
+        return switch (componentType) {
+            case Accessor.COMPONENT_TYPE_FLOAT -> data.get(FLOAT, offset);
+            case Accessor.COMPONENT_TYPE_UNSIGNED_INT -> Integer.toUnsignedLong(data.get(INT, offset));
+            case Accessor.COMPONENT_TYPE_UNSIGNED_SHORT -> {
+                int v = Short.toUnsignedInt(data.get(SHORT, offset));
+                yield normalized ? v / 65535.0 : v;
+            }
+            case Accessor.COMPONENT_TYPE_SHORT -> {
+                short v = data.get(SHORT, offset);
+                yield normalized ? Math.max(v / 32767.0, -1) : v;
+            }
+            case Accessor.COMPONENT_TYPE_UNSIGNED_BYTE -> {
+                int v = Byte.toUnsignedInt(data.get(ValueLayout.JAVA_BYTE, offset));
+                yield normalized ? v / 255.0 : v;
+            }
+            default -> {
+                byte v = data.get(ValueLayout.JAVA_BYTE, offset);
+                yield normalized ? Math.max(v / 127.0, -1) : v;
+            }
+        };
+    }
+
+    /**
+     * @return integer component of an element, typically a vertex index. Values are read without normalization.
+     * @throws CadmiumRuntimeException for an unsigned int of 2^31 or more, it does not fit in an int
+     */
+    public int getInt(int element, int component) {
+        if (data == null) {
+            return 0;
+        }
+        long offset = element * byteStride + (long) component * componentSize;
+        return switch (componentType) {
+            case Accessor.COMPONENT_TYPE_UNSIGNED_INT -> {
+                int v = data.get(INT, offset);
+                if (v < 0) {
+                    throw new CadmiumRuntimeException("Unsigned int component exceeds the int range: "
+                            + Integer.toUnsignedString(v));
+                }
+                yield v;
+            }
+            case Accessor.COMPONENT_TYPE_UNSIGNED_SHORT -> Short.toUnsignedInt(data.get(SHORT, offset));
+            case Accessor.COMPONENT_TYPE_SHORT -> data.get(SHORT, offset);
+            case Accessor.COMPONENT_TYPE_UNSIGNED_BYTE -> Byte.toUnsignedInt(data.get(ValueLayout.JAVA_BYTE, offset));
+            case Accessor.COMPONENT_TYPE_BYTE -> data.get(ValueLayout.JAVA_BYTE, offset);
+            default -> (int) data.get(FLOAT, offset);
+        };
+    }
+
+    /**
+     * Copies every component of every element as int, e.g. the indices of a primitive, see {@link #getInt(int, int)}
+     */
+    public int[] toIntArray() {
+        int[] dst = new int[count * numOfComponents];
+        for (int e = 0, i = 0; e < count; e++) {
+            for (int c = 0; c < numOfComponents; c++) {
+                dst[i++] = getInt(e, c);
+            }
+        }
+        return dst;
+    }
+
+    /**
+     * @return buffer of the elements backed by this view, without copying. The buffer is read-only.
+     */
+    public VecBuffer toVecBuffer() {
+        return VecBuffer.wrap(this, numOfComponents);
+    }
+
+    @Override
+    public long length() {
+        return (long) count * numOfComponents;
+    }
+
+    @Override
+    public double get(long idx) {
+        return get((int) (idx / numOfComponents), (int) (idx % numOfComponents));
+    }
+
+    @Override
+    public boolean isSinglePrecision() {
+        return componentType == Accessor.COMPONENT_TYPE_FLOAT;
+    }
+
+    @Override
+    public void set(long idx, double v) {
+        throw new UnsupportedOperationException("Accessor view is read-only");
+    }
+
+    @Override
+    public void resize(long newLength) {
+        throw new UnsupportedOperationException("Accessor view is read-only");
+    }
+
+    static int numOfComponents(String type) {
+        return switch (type) {
+            case Accessor.TYPE_SCALAR -> 1;
+            case Accessor.TYPE_VEC2 -> 2;
+            case Accessor.TYPE_VEC3 -> 3;
+            case Accessor.TYPE_VEC4, "MAT2" -> 4;
+            case "MAT3" -> 9;
+            case "MAT4" -> 16;
+            default -> throw new CadmiumRuntimeException("Unknown accessor type: " + type);
+        };
+    }
+
+    static int componentSize(int componentType) {
+        return switch (componentType) {
+            case Accessor.COMPONENT_TYPE_BYTE, Accessor.COMPONENT_TYPE_UNSIGNED_BYTE -> 1;
+            case Accessor.COMPONENT_TYPE_SHORT, Accessor.COMPONENT_TYPE_UNSIGNED_SHORT -> 2;
+            case Accessor.COMPONENT_TYPE_UNSIGNED_INT, Accessor.COMPONENT_TYPE_FLOAT -> 4;
+            default -> throw new CadmiumRuntimeException("Unknown component type: " + componentType);
+        };
+    }
+}
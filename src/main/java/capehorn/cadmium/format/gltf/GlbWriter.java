@@ -0,0 +1,178 @@
+package capehorn.cadmium.format.gltf;
+
+import capehorn.cadmium.CadmiumRuntimeException;
+import capehorn.cadmium.format.gltf.dto.Gltf;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes binary glTF: a 12 byte header, the JSON chunk and the binary chunk.
+ * <p>
+ * The length of the binary chunk must be known in advance, its content is streamed through a reusable
+ * little-endian {@link ByteBuffer}, so the geometry is never collected in memory as a whole.
+ */
+public class GlbWriter {
+    public static final int MAGIC = 0x46546C67;
+    public static final int VERSION = 2;
+    public static final int CHUNK_TYPE_JSON = 0x4E4F534A;
+    public static final int CHUNK_TYPE_BIN = 0x004E4942;
+
+    private static final int HEADER_SIZE = 12;
+    private static final int CHUNK_HEADER_SIZE = 8;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final ObjectMapper mapper;
+
+    public GlbWriter() {
+        this(new ObjectMapper());
+    }
+
+    public GlbWriter(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    /**
+     * Writes the binary content of a glTF buffer
+     */
+    @FunctionalInterface
+    public interface BinaryChunk {
+        void write(Output out) throws IOException;
+    }
+
+    /**
+     * @param binaryLength number of bytes written by the binary chunk, without padding
+     */
+    public void write(Gltf gltf, long binaryLength, BinaryChunk binary, WritableByteChannel channel) throws IOException {
+        byte[] json = toJson(gltf);
+        int jsonChunkLength = align4(json.length);
+        long binChunkLength = align4(binaryLength);
+        long totalLength = HEADER_SIZE + CHUNK_HEADER_SIZE + jsonChunkLength
+                + (binaryLength > 0 ? CHUNK_HEADER_SIZE + binChunkLength : 0);
+        if (totalLength > 0xFFFF_FFFFL) {
+            throw new CadmiumRuntimeException("Binary glTF is limited to 4 GiB: " + totalLength);
+        }
+        var out = new Output(channel);
+        out.putInt(MAGIC);
+        out.putInt(VERSION);
+        out.putInt((int) totalLength);
+        out.putInt(jsonChunkLength);
+        out.putInt(CHUNK_TYPE_JSON);
+        out.put(json);
+        // JSON chunk is padded with spaces
+        for (int i = json.length; i < jsonChunkLength; i++) {
+            out.putByte((byte) ' ');
+        }
+        if (binaryLength > 0) {
+            out.putInt((int) binChunkLength);
+            out.putInt(CHUNK_TYPE_BIN);
+            long start = out.getNumOfBytes();
+            binary.write(out);
+            long written = out.getNumOfBytes() - start;
+            if (written != binaryLength) {
+                throw new CadmiumRuntimeException("Binary chunk length is " + written + " instead of " + binaryLength);
+            }
+            out.pad();
+        }
+        out.flush();
+    }
+
+    private byte[] toJson(Gltf gltf) {
+        try {
+            return mapper.writeValueAsBytes(gltf);
+        } catch (JsonProcessingException e) {
+            throw new CadmiumRuntimeException(e);
+        }
+    }
+
+    public static int align4(int length) {
+        return (length + 3) & ~3;
+    }
+
+    public static long align4(long length) {
+        return (length + 3) & ~3L;
+    }
+
+    /**
+     * Little-endian output into a channel, it writes in large blocks
+     */
+    public static final class Output {
+        private final WritableByteChannel channel;
+        private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long numOfBytes;
+
+        private Output(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * @return number of bytes written so far, including the headers
+         */
+        public long getNumOfBytes() {
+            return numOfBytes + bytes.position();
+        }
+
+        public void putByte(byte v) throws IOException {
+            ensureRemaining(1);
+            bytes.put(v);
+        }
+
+        public void putUnsignedShort(int v) throws IOException {
+            ensureRemaining(2);
+            bytes.putShort((short) v);
+        }
+
+        public void putInt(int v) throws IOException {
+            ensureRemaining(4);
+            bytes.putInt(v);
+        }
+
+        public void putFloat(float v) throws IOException {
+            ensureRemaining(4);
+            bytes.putFloat(v);
+        }
+
+        public void putFloats(float x, float y, float z) throws IOException {
+            ensureRemaining(12);
+            bytes.putFloat(x).putFloat(y).putFloat(z);
+        }
+
+        public void put(byte[] src) throws IOException {
+            int offset = 0;
+            while (offset < src.length) {
+                ensureRemaining(1);
+                int n = Math.min(bytes.remaining(), src.length - offset);
+                bytes.put(src, offset, n);
+                offset += n;
+            }
+        }
+
+        /**
+         * Fills with zeros up to the next multiple of 4 bytes
+         */
+        public void pad() throws IOException {
+            while ((getNumOfBytes() & 3) != 0) {
+                putByte((byte) 0);
+            }
+        }
+
+        private void ensureRemaining(int n) throws IOException {
+            if (bytes.remaining() < n) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            bytes.flip();
+            numOfBytes += bytes.remaining();
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            bytes.clear();
+        }
+    }
+}
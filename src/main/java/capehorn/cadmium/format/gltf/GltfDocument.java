@@ -0,0 +1,59 @@
+package capehorn.cadmium.format.gltf;
+
+import capehorn.cadmium.CadmiumRuntimeException;
+import capehorn.cadmium.format.gltf.dto.Gltf;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.util.List;
+
+/**
+ * A glTF asset with its buffers. Buffers loaded from files are memory mapped, views and accessors are slices of them.
+ * The document must be closed to unmap the buffers, views obtained from it must not be used afterward.
+ */
+public final class GltfDocument implements AutoCloseable {
+    private final Gltf gltf;
+    private final Arena arena;
+    private final List<MemorySegment> buffers;
+
+    GltfDocument(Gltf gltf, Arena arena, List<MemorySegment> buffers) {
+        this.gltf = gltf;
+        this.arena = arena;
+        this.buffers = buffers;
+    }
+
+    public Gltf getGltf() {
+        return gltf;
+    }
+
+    public MemorySegment getBuffer(int bufferIdx) {
+        return buffers.get(bufferIdx);
+    }
+
+    /**
+     * @return bytes of the buffer view, a slice of its buffer
+     */
+    public MemorySegment getBufferView(int bufferViewIdx) {
+        var view = gltf.getBufferViews().get(bufferViewIdx);
+        var buffer = getBuffer(view.getBuffer());
+        if (buffer.byteSize() < (long) view.getByteOffset() + view.getByteLength()) {
+            throw new CadmiumRuntimeException("Buffer view " + bufferViewIdx + " exceeds its buffer of "
+                    + buffer.byteSize() + " bytes");
+        }
+        return buffer.asSlice(view.getByteOffset(), view.getByteLength());
+    }
+
+    public AccessorView getAccessor(int accessorIdx) {
+        var accessor = gltf.getAccessors().get(accessorIdx);
+        Integer viewIdx = accessor.getBufferView();
+        if (viewIdx == null) {
+            return new AccessorView(accessor, null, null);
+        }
+        return new AccessorView(accessor, getBufferView(viewIdx), gltf.getBufferViews().get(viewIdx).getByteStride());
+    }
+
+    @Override
+    public void close() {
+        arena.close();
+    }
+}
@@ -0,0 +1,138 @@
+package capehorn.cadmium.format.gltf;
+
+import capehorn.cadmium.CadmiumRuntimeException;
+import capehorn.cadmium.format.gltf.dto.Buffer;
+import capehorn.cadmium.format.gltf.dto.Gltf;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Reads glTF 2.0 assets, both the JSON (.gltf) and the binary (.glb) form.
+ * <p>
+ * The JSON is parsed into the {@link capehorn.cadmium.format.gltf.dto} classes, properties without a DTO field
+ * (materials, textures, animations, ...) are ignored. Buffers are mapped, not read: the binary chunk of a GLB file
+ * and external .bin files are memory mapped, only {@code data:} URIs are decoded onto the heap.
+ */
+public class GltfReader {
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final String DATA_URI_BASE64 = ";base64,";
+
+    private final ObjectMapper mapper;
+
+    public GltfReader() {
+        this(new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false));
+    }
+
+    public GltfReader(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    public GltfDocument read(Path file) throws IOException {
+        var arena = Arena.ofShared();
+        try {
+            var data = map(file, arena);
+            Gltf gltf;
+            MemorySegment binaryChunk = null;
+            if (data.byteSize() >= 12 && data.get(INT, 0) == GlbWriter.MAGIC) {
+                long length = Integer.toUnsignedLong(data.get(INT, 8));
+                if (data.get(INT, 4) != GlbWriter.VERSION || data.byteSize() < length) {
+                    throw new CadmiumRuntimeException("Unsupported or truncated binary glTF: " + file);
+                }
+                MemorySegment json = null;
+                for (long offset = 12; offset + 8 <= length; ) {
+                    long chunkLength = Integer.toUnsignedLong(data.get(INT, offset));
+                    int chunkType = data.get(INT, offset + 4);
+                    if (length < offset + 8 + chunkLength) {
+                        throw new CadmiumRuntimeException("Chunk exceeds the binary glTF: " + file);
+                    }
+                    var chunk = data.asSlice(offset + 8, chunkLength);
+                    if (chunkType == GlbWriter.CHUNK_TYPE_JSON && json == null) {
+                        json = chunk;
+                    } else if (chunkType == GlbWriter.CHUNK_TYPE_BIN && binaryChunk == null) {
+                        binaryChunk = chunk;
+                    }
+                    offset += 8 + chunkLength;
+                }
+                if (json == null) {
+                    throw new CadmiumRuntimeException("Binary glTF without JSON chunk: " + file);
+                }
+                gltf = mapper.readValue(json.toArray(ValueLayout.JAVA_BYTE), Gltf.class);
+            } else {
+                gltf = mapper.readValue(data.toArray(ValueLayout.JAVA_BYTE), Gltf.class);
+            }
+            var buffers = loadBuffers(gltf, binaryChunk, file.toAbsolutePath().getParent(), arena);
+            return new GltfDocument(gltf, arena, buffers);
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    private List<MemorySegment> loadBuffers(Gltf gltf, MemorySegment binaryChunk, Path dir, Arena arena) throws IOException {
+        List<MemorySegment> segments = new ArrayList<>();
+        if (gltf.getBuffers() == null) {
+            return segments;
+        }
+        for (int i = 0; i < gltf.getBuffers().size(); i++) {
+            Buffer buffer = gltf.getBuffers().get(i);
+            String uri = buffer.getUri();
+            MemorySegment segment;
+            if (uri == null) {
+                // only the first buffer of a GLB can refer to the binary chunk
+                if (i != 0 || binaryChunk == null) {
+                    throw new CadmiumRuntimeException("Buffer " + i + " has no uri");
+                }
+                segment = binaryChunk;
+            } else if (uri.startsWith("data:")) {
+                int base64 = uri.indexOf(DATA_URI_BASE64);
+                if (base64 < 0) {
+                    throw new CadmiumRuntimeException("Only base64 data uri is supported, buffer " + i);
+                }
+                segment = MemorySegment.ofArray(Base64.getDecoder().decode(uri.substring(base64 + DATA_URI_BASE64.length())));
+            } else {
+                segment = map(dir.resolve(decodePath(uri)), arena);
+            }
+            if (segment.byteSize() < buffer.getByteLength()) {
+                throw new CadmiumRuntimeException("Buffer " + i + " has " + segment.byteSize() + " bytes instead of "
+                        + buffer.getByteLength());
+            }
+            segments.add(segment.asSlice(0, buffer.getByteLength()));
+        }
+        return segments;
+    }
+
+    /**
+     * Relative references are percent encoded, but unencoded paths are tolerated
+     */
+    private static String decodePath(String uri) {
+        try {
+            return new URI(uri).getPath();
+        } catch (URISyntaxException e) {
+            return uri;
+        }
+    }
+
+    private static MemorySegment map(Path file, Arena arena) throws IOException {
+        if (Files.size(file) == 0) {
+            return MemorySegment.ofArray(new byte[0]);
+        }
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena);
+        }
+    }
+}
@@ -1,4 +1,136 @@
 package capehorn.cadmium.format.gltf.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+/**
+ * A typed view into a buffer view that contains raw binary data.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class Accessor {
+
+    public static final int COMPONENT_TYPE_BYTE = 5120;
+    public static final int COMPONENT_TYPE_UNSIGNED_BYTE = 5121;
+    public static final int COMPONENT_TYPE_SHORT = 5122;
+    public static final int COMPONENT_TYPE_UNSIGNED_SHORT = 5123;
+    public static final int COMPONENT_TYPE_UNSIGNED_INT = 5125;
+    public static final int COMPONENT_TYPE_FLOAT = 5126;
+
+    public static final String TYPE_SCALAR = "SCALAR";
+    public static final String TYPE_VEC2 = "VEC2";
+    public static final String TYPE_VEC3 = "VEC3";
+    public static final String TYPE_VEC4 = "VEC4";
+
+    /**
+     * The index of the buffer view. When undefined, the accessor **MUST** be initialized with zeros.
+     */
+    @Min(0)
+    private Integer bufferView;
+
+    /**
+     * The offset relative to the start of the buffer view in bytes. (min 0, default 0)
+     */
+    @Min(0)
+    private int byteOffset;
+
+    /**
+     * The datatype of the accessor's components.
+     */
+    @NotNull
+    private Integer componentType;
+
+    /**
+     * Specifies whether integer data values are normalized before usage.
+     */
+    private Boolean normalized;
+
+    /**
+     * The number of elements referenced by this accessor. (min 1)
+     */
+    @Min(1)
+    private int count;
+
+    /**
+     * Specifies if the accessor's elements are scalars, vectors, or matrices.
+     */
+    @NotNull
+    private String type;
+
+    /**
+     * Maximum value of each component in this accessor.
+     */
+    @Size(min = 1, max = 16)
+    private double[] max;
+
+    /**
+     * Minimum value of each component in this accessor.
+     */
+    @Size(min = 1, max = 16)
+    private double[] min;
+
+    public Integer getBufferView() {
+        return bufferView;
+    }
+
+    public void setBufferView(Integer bufferView) {
+        this.bufferView = bufferView;
+    }
+
+    public int getByteOffset() {
+        return byteOffset;
+    }
+
+    public void setByteOffset(int byteOffset) {
+        this.byteOffset = byteOffset;
+    }
+
+    public Integer getComponentType() {
+        return componentType;
+    }
+
+    public void setComponentType(Integer componentType) {
+        this.componentType = componentType;
+    }
+
+    public Boolean getNormalized() {
+        return normalized;
+    }
+
+    public void setNormalized(Boolean normalized) {
+        this.normalized = normalized;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public double[] getMax() {
+        return max;
+    }
+
+    public void setMax(double[] max) {
+        this.max = max;
+    }
+
+    public double[] getMin() {
+        return min;
+    }
+
+    public void setMin(double[] min) {
+        this.min = min;
+    }
 }
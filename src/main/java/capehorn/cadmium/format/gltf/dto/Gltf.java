@@ -23,7 +23,12 @@ public class Gltf {
     /**
      * A list of bufferViews. A bufferView is a view into a buffer generally representing a subset of the buffer.
      */
-    private List<Buffer> bufferViews;
+    private List<BufferView> bufferViews;
+
+    /**
+     * A list of accessors. An accessor is a typed view into a bufferView.
+     */
+    private List<Accessor> accessors;
     private List<Mesh> meshes;
     private List<Node> nodes;
     private List<Scene> scenes;
@@ -50,14 +55,22 @@ public class Gltf {
         this.buffers = buffers;
     }
 
-    public List<Buffer> getBufferViews() {
+    public List<BufferView> getBufferViews() {
         return bufferViews;
     }
 
-    public void setBufferViews(List<Buffer> bufferViews) {
+    public void setBufferViews(List<BufferView> bufferViews) {
         this.bufferViews = bufferViews;
     }
 
+    public List<Accessor> getAccessors() {
+        return accessors;
+    }
+
+    public void setAccessors(List<Accessor> accessors) {
+        this.accessors = accessors;
+    }
+
     public List<Mesh> getMeshes() {
         return meshes;
     }
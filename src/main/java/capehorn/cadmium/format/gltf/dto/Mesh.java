@@ -1,4 +1,39 @@
 package capehorn.cadmium.format.gltf.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/**
+ * A set of primitives to be rendered.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class Mesh {
+
+    private String name;
+
+    /**
+     * A list of primitives, each defining geometry to be rendered.
+     */
+    @NotNull
+    @Size(min = 1)
+    private List<MeshPrimitive> primitives;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public List<MeshPrimitive> getPrimitives() {
+        return primitives;
+    }
+
+    public void setPrimitives(List<MeshPrimitive> primitives) {
+        this.primitives = primitives;
+    }
 }
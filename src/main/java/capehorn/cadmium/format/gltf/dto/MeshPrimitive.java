@@ -0,0 +1,82 @@
+package capehorn.cadmium.format.gltf.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.Map;
+
+/**
+ * Geometry to be rendered with the given material.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MeshPrimitive {
+
+    public static final String ATTRIBUTE_POSITION = "POSITION";
+    public static final String ATTRIBUTE_NORMAL = "NORMAL";
+
+    public static final int MODE_POINTS = 0;
+    public static final int MODE_LINES = 1;
+    public static final int MODE_LINE_LOOP = 2;
+    public static final int MODE_LINE_STRIP = 3;
+    public static final int MODE_TRIANGLES = 4;
+    public static final int MODE_TRIANGLE_STRIP = 5;
+    public static final int MODE_TRIANGLE_FAN = 6;
+
+    /**
+     * A plain JSON object, where each key corresponds to a mesh attribute semantic
+     * and each value is the index of the accessor containing attribute's data.
+     */
+    @NotNull
+    private Map<String, Integer> attributes;
+
+    /**
+     * The index of the accessor that contains the vertex indices.
+     * When undefined, the primitive defines non-indexed geometry.
+     */
+    @Min(0)
+    private Integer indices;
+
+    /**
+     * The index of the material to apply to this primitive when rendering.
+     */
+    @Min(0)
+    private Integer material;
+
+    /**
+     * The topology type of primitives to render. (default 4, triangles)
+     */
+    private Integer mode;
+
+    public Map<String, Integer> getAttributes() {
+        return attributes;
+    }
+
+    public void setAttributes(Map<String, Integer> attributes) {
+        this.attributes = attributes;
+    }
+
+    public Integer getIndices() {
+        return indices;
+    }
+
+    public void setIndices(Integer indices) {
+        this.indices = indices;
+    }
+
+    public Integer getMaterial() {
+        return material;
+    }
+
+    public void setMaterial(Integer material) {
+        this.material = material;
+    }
+
+    public Integer getMode() {
+        return mode;
+    }
+
+    public void setMode(Integer mode) {
+        this.mode = mode;
+    }
+}
@@ -1,4 +1,66 @@
 package capehorn.cadmium.format.gltf.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/**
+ * A node in the node hierarchy.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class Node {
+
+    private String name;
+
+    /**
+     * The index of the mesh in this node.
+     */
+    @Min(0)
+    private Integer mesh;
+
+    /**
+     * The indices of this node's children.
+     */
+    @Size(min = 1)
+    private List<Integer> children;
+
+    /**
+     * A floating-point 4x4 transformation matrix stored in column-major order.
+     */
+    @Size(min = 16, max = 16)
+    private double[] matrix;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Integer getMesh() {
+        return mesh;
+    }
+
+    public void setMesh(Integer mesh) {
+        this.mesh = mesh;
+    }
+
+    public List<Integer> getChildren() {
+        return children;
+    }
+
+    public void setChildren(List<Integer> children) {
+        this.children = children;
+    }
+
+    public double[] getMatrix() {
+        return matrix;
+    }
+
+    public void setMatrix(double[] matrix) {
+        this.matrix = matrix;
+    }
 }
@@ -1,4 +1,37 @@
 package capehorn.cadmium.format.gltf.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/**
+ * The root nodes of a scene.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class Scene {
+
+    private String name;
+
+    /**
+     * The indices of each root node.
+     */
+    @Size(min = 1)
+    private List<Integer> nodes;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public List<Integer> getNodes() {
+        return nodes;
+    }
+
+    public void setNodes(List<Integer> nodes) {
+        this.nodes = nodes;
+    }
 }
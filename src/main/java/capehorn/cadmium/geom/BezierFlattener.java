@@ -0,0 +1,215 @@
+package capehorn.cadmium.geom;
+
+import capehorn.cadmium.core.Vec3;
+import capehorn.cadmium.core.VecBuffer;
+
+import java.util.Arrays;
+
+/**
+ * Adaptive flattening of cubic Bezier curves into polylines.
+ * <p>
+ * Curves are halved with de Casteljau's algorithm in place, on a stack of control points kept in a primitive array,
+ * until every piece is flat enough by the enabled bounds:
+ * <ul>
+ *     <li>chord error: the inner control points are within the tolerance from the chord of the piece,
+ *     the curve is in the convex hull of its control points so it is within the tolerance as well</li>
+ *     <li>angle: the control polygon of the piece turns at most by the angle, so does the tangent of the curve
+ *     and the chord differs from the tangents by at most the angle</li>
+ * </ul>
+ * Only the end points of the flat pieces are written, so points shared by consecutive pieces, and by consecutive
+ * curves of a path when the start is not included, appear once. A flattener reuses its buffers, it is not thread safe.
+ */
+public final class BezierFlattener {
+    /**
+     * Max number of halvings, a piece this deep is accepted even if it is not flat (e.g. for NaN coordinates)
+     */
+    private static final int MAX_DEPTH = 16;
+    private static final int CURVE_SIZE = 12;
+
+    private final double tolerance2;
+    private final boolean angleBound;
+    private final double minCosJointAngle;
+    /**
+     * Pieces waiting to be flattened, the last one is the next
+     */
+    private final double[] stack = new double[CURVE_SIZE * (MAX_DEPTH + 1)];
+    private final int[] depths = new int[MAX_DEPTH + 1];
+    private double[] points = new double[3 * 64];
+    private int numOfPoints;
+
+    private BezierFlattener(double tolerance, double maxAngle) {
+        if (!(tolerance > 0)) {
+            throw new IllegalArgumentException("Tolerance must be positive: " + tolerance);
+        }
+        if (!(maxAngle > 0)) {
+            throw new IllegalArgumentException("Max angle must be positive: " + maxAngle);
+        }
+        this.tolerance2 = tolerance * tolerance;
+        this.angleBound = maxAngle < Math.PI;
+        // the polygon turns at its two joints
+        this.minCosJointAngle = Math.cos(maxAngle / 2);
+    }
+
+    /**
+     * @param tolerance max distance between the curve and the polyline
+     */
+    public static BezierFlattener ofTolerance(double tolerance) {
+        return new BezierFlattener(tolerance, Math.PI);
+    }
+
+    /**
+     * @param maxAngle max angle in radians between a segment of the polyline and the tangents of its piece of curve
+     */
+    public static BezierFlattener ofAngle(double maxAngle) {
+        return new BezierFlattener(Double.POSITIVE_INFINITY, maxAngle);
+    }
+
+    /**
+     * Pieces have to satisfy both bounds
+     */
+    public static BezierFlattener of(double tolerance, double maxAngle) {
+        return new BezierFlattener(tolerance, maxAngle);
+    }
+
+    /**
+     * Appends the points of the polyline approximating the curve
+     *
+     * @param includeStart false to continue a polyline ending at the start of the curve
+     * @param dst buffer of 3 component items
+     * @return number of points appended
+     */
+    public int flatten(CubicBezierCurve curve, boolean includeStart, VecBuffer dst) {
+        push(0, curve.p0, curve.p1, curve.p2, curve.p3);
+        return flatten(includeStart, dst);
+    }
+
+    /**
+     * Same as {@link #flatten(CubicBezierCurve, boolean, VecBuffer)} for control points stored in an array
+     *
+     * @param controlPoints the coordinates of the 4 control points from the offset
+     */
+    public int flatten(double[] controlPoints, int offset, boolean includeStart, VecBuffer dst) {
+        System.arraycopy(controlPoints, offset, stack, 0, CURVE_SIZE);
+        return flatten(includeStart, dst);
+    }
+
+    private void push(int slot, Vec3 p0, Vec3 p1, Vec3 p2, Vec3 p3) {
+        int b = CURVE_SIZE * slot;
+        stack[b] = p0.x();
+        stack[b + 1] = p0.y();
+        stack[b + 2] = p0.z();
+        stack[b + 3] = p1.x();
+        stack[b + 4] = p1.y();
+        stack[b + 5] = p1.z();
+        stack[b + 6] = p2.x();
+        stack[b + 7] = p2.y();
+        stack[b + 8] = p2.z();
+        stack[b + 9] = p3.x();
+        stack[b + 10] = p3.y();
+        stack[b + 11] = p3.z();
+    }
+
+    /**
+     * Flattens the curve in the first slot of the stack
+     */
+    private int flatten(boolean includeStart, VecBuffer dst) {
+        if (dst.getItemSize() != 3) {
+            throw new IllegalArgumentException("Points must have 3 components instead of " + dst.getItemSize());
+        }
+        numOfPoints = 0;
+        if (includeStart) {
+            addPoint(stack[0], stack[1], stack[2]);
+        }
+        depths[0] = 0;
+        int top = 1;
+        while (top > 0) {
+            int slot = --top;
+            int b = CURVE_SIZE * slot;
+            int depth = depths[slot];
+            if (depth == MAX_DEPTH || isFlat(b)) {
+                addPoint(stack[b + 9], stack[b + 10], stack[b + 11]);
+                continue;
+            }
+            split(b);
+            depths[slot] = depth + 1;
+            depths[slot + 1] = depth + 1;
+            top += 2;
+        }
+        dst.put(points, 0, 3 * numOfPoints);
+        return numOfPoints;
+    }
+
+    /**
+     * Halves the piece at b, the second half stays at b, the first half is written to the next slot
+     */
+    private void split(int b) {
+        for (int c = 0; c < 3; c++) {
+            double p0 = stack[b + c], p1 = stack[b + 3 + c], p2 = stack[b + 6 + c], p3 = stack[b + 9 + c];
+            double q0 = (p0 + p1) * 0.5, q1 = (p1 + p2) * 0.5, q2 = (p2 + p3) * 0.5;
+            double r0 = (q0 + q1) * 0.5, r1 = (q1 + q2) * 0.5;
+            double m = (r0 + r1) * 0.5;
+            int first = b + CURVE_SIZE;
+            stack[first + c] = p0;
+            stack[first + 3 + c] = q0;
+            stack[first + 6 + c] = r0;
+            stack[first + 9 + c] = m;
+            stack[b + c] = m;
+            stack[b + 3 + c] = r1;
+            stack[b + 6 + c] = q2;
+        }
+    }
+
+    private boolean isFlat(int b) {
+        double x0 = stack[b], y0 = stack[b + 1], z0 = stack[b + 2];
+        double x1 = stack[b + 3], y1 = stack[b + 4], z1 = stack[b + 5];
+        double x2 = stack[b + 6], y2 = stack[b + 7], z2 = stack[b + 8];
+        double x3 = stack[b + 9], y3 = stack[b + 10], z3 = stack[b + 11];
+        if (tolerance2 < Double.POSITIVE_INFINITY
+                && !(distanceSquaredToSegment(x1, y1, z1, x0, y0, z0, x3, y3, z3) <= tolerance2
+                && distanceSquaredToSegment(x2, y2, z2, x0, y0, z0, x3, y3, z3) <= tolerance2)) {
+            return false;
+        }
+        if (!angleBound) {
+            return true;
+        }
+        double ax = x1 - x0, ay = y1 - y0, az = z1 - z0;
+        double bx = x2 - x1, by = y2 - y1, bz = z2 - z1;
+        double cx = x3 - x2, cy = y3 - y2, cz = z3 - z2;
+        if (bx == 0 && by == 0 && bz == 0) {
+            // the joints of a degenerate middle edge coincide
+            return isJointFlat(ax, ay, az, cx, cy, cz);
+        }
+        return isJointFlat(ax, ay, az, bx, by, bz) && isJointFlat(bx, by, bz, cx, cy, cz);
+    }
+
+    private boolean isJointFlat(double ax, double ay, double az, double bx, double by, double bz) {
+        double a2 = ax * ax + ay * ay + az * az;
+        double b2 = bx * bx + by * by + bz * bz;
+        if (a2 == 0 || b2 == 0) {
+            return true;
+        }
+        return ax * bx + ay * by + az * bz >= minCosJointAngle * Math.sqrt(a2 * b2);
+    }
+
+    private static double distanceSquaredToSegment(double px, double py, double pz,
+                                                   double ax, double ay, double az,
+                                                   double bx, double by, double bz) {
+        double ux = bx - ax, uy = by - ay, uz = bz - az;
+        double wx = px - ax, wy = py - ay, wz = pz - az;
+        double u2 = ux * ux + uy * uy + uz * uz;
+        double t = u2 == 0 ? 0 : Math.max(0, Math.min(1, (wx * ux + wy * uy + wz * uz) / u2));
+        double dx = wx - t * ux, dy = wy - t * uy, dz = wz - t * uz;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private void addPoint(double x, double y, double z) {
+        int i = 3 * numOfPoints;
+        if (points.length < i + 3) {
+            points = Arrays.copyOf(points, 2 * points.length);
+        }
+        points[i] = x;
+        points[i + 1] = y;
+        points[i + 2] = z;
+        numOfPoints++;
+    }
+}
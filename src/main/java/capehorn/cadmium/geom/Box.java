@@ -77,28 +77,19 @@ public record Box(Vec3 min, Vec3 max) implements AffineTransform<Box> {
         return mulBox(mat);
     }
 
+    /**
+     * @return axis aligned bounds of the transformed box, computed without temporary vectors
+     */
     public Box mulBox(Mat4x4 m) {
-        var r = m.getCol0();
-        var u = m.getCol1();
-        var b = m.getCol2();
-        var t = m.getCol3();
-        var xa = r.mulScalar(min().x());
-        var xb = r.mulScalar(max().x());
-        var ya = u.mulScalar(min().y());
-        var yb = u.mulScalar(max().y());
-        var za = b.mulScalar(min().z());
-        var zb = b.mulScalar(max().z());
-        var temp = xa;
-        xa = xa.min(xb);
-        xb = temp.max(xb);
-        temp = ya;
-        ya = ya.min(yb);
-        yb = temp.max(yb);
-        temp = za;
-        za = za.min(zb);
-        zb = temp.max(zb);
-        var min = xa.add(ya).add(za).add(t);
-        var max = xb.add(yb).add(zb).add(t);
-        return new Box(min, max);
+        double[] vs = m.vs();
+        double x0 = min.x(), y0 = min.y(), z0 = min.z();
+        double x1 = max.x(), y1 = max.y(), z1 = max.z();
+        return new Box(
+                Vec3.of(BoxKernels.lower(vs[0], x0, x1) + BoxKernels.lower(vs[1], y0, y1) + BoxKernels.lower(vs[2], z0, z1) + vs[3],
+                        BoxKernels.lower(vs[4], x0, x1) + BoxKernels.lower(vs[5], y0, y1) + BoxKernels.lower(vs[6], z0, z1) + vs[7],
+                        BoxKernels.lower(vs[8], x0, x1) + BoxKernels.lower(vs[9], y0, y1) + BoxKernels.lower(vs[10], z0, z1) + vs[11]),
+                Vec3.of(BoxKernels.upper(vs[0], x0, x1) + BoxKernels.upper(vs[1], y0, y1) + BoxKernels.upper(vs[2], z0, z1) + vs[3],
+                        BoxKernels.upper(vs[4], x0, x1) + BoxKernels.upper(vs[5], y0, y1) + BoxKernels.upper(vs[6], z0, z1) + vs[7],
+                        BoxKernels.upper(vs[8], x0, x1) + BoxKernels.upper(vs[9], y0, y1) + BoxKernels.upper(vs[10], z0, z1) + vs[11]));
     }
 }
@@ -0,0 +1,137 @@
+package capehorn.cadmium.geom;
+
+import java.util.BitSet;
+
+/**
+ * Bulk tests and transformation of boxes stored as six coordinate arrays, see {@link BoxSet}.
+ * <p>
+ * The Vector API implementation is used when the {@code jdk.incubator.vector} module is present
+ * (e.g. {@code --add-modules jdk.incubator.vector}), otherwise the scalar loop.
+ * Setting the system property {@code cadmium.vector.disabled} forces the scalar loop.
+ */
+final class BoxKernels {
+
+    static final boolean VECTORIZED = isVectorApiAvailable();
+
+    private BoxKernels() {
+    }
+
+    private static boolean isVectorApiAvailable() {
+        if (Boolean.getBoolean("cadmium.vector.disabled")
+                || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return false;
+        }
+        try {
+            return VectorBoxKernels.isSupported();
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Sets the bits of the boxes overlapping the query box, boundaries included
+     *
+     * @return number of overlapping boxes
+     */
+    static int intersects(double[] minX, double[] minY, double[] minZ, double[] maxX, double[] maxY, double[] maxZ, int count,
+                          double qMinX, double qMinY, double qMinZ, double qMaxX, double qMaxY, double qMaxZ,
+                          BitSet result) {
+        int found = 0;
+        int done = 0;
+        if (VECTORIZED) {
+            found = VectorBoxKernels.intersects(minX, minY, minZ, maxX, maxY, maxZ, count,
+                    qMinX, qMinY, qMinZ, qMaxX, qMaxY, qMaxZ, result);
+            done = VectorBoxKernels.bound(count);
+        }
+        return found + intersectsScalar(minX, minY, minZ, maxX, maxY, maxZ, done, count,
+                qMinX, qMinY, qMinZ, qMaxX, qMaxY, qMaxZ, result);
+    }
+
+    static int intersectsScalar(double[] minX, double[] minY, double[] minZ, double[] maxX, double[] maxY, double[] maxZ,
+                                int from, int to,
+                                double qMinX, double qMinY, double qMinZ, double qMaxX, double qMaxY, double qMaxZ,
+                                BitSet result) {
+        int found = 0;
+        for (int i = from; i < to; i++) {
+            if (minX[i] <= qMaxX && maxX[i] >= qMinX
+                    && minY[i] <= qMaxY && maxY[i] >= qMinY
+                    && minZ[i] <= qMaxZ && maxZ[i] >= qMinZ) {
+                result.set(i);
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Sets the bits of the boxes containing the point, boundaries included
+     *
+     * @return number of containing boxes
+     */
+    static int contains(double[] minX, double[] minY, double[] minZ, double[] maxX, double[] maxY, double[] maxZ, int count,
+                        double x, double y, double z, BitSet result) {
+        return intersects(minX, minY, minZ, maxX, maxY, maxZ, count, x, y, z, x, y, z, result);
+    }
+
+    /**
+     * Replaces every box by the bounds of the transformed box, same as {@link Box#mulBox}
+     *
+     * @param m row major 4x4 matrix, only the first 3 rows are used
+     */
+    static void transform(double[] m, double[] minX, double[] minY, double[] minZ, double[] maxX, double[] maxY, double[] maxZ,
+                          int count) {
+        int done = 0;
+        if (VECTORIZED) {
+            done = VectorBoxKernels.transform(m, minX, minY, minZ, maxX, maxY, maxZ, count);
+        }
+        transformScalar(m, minX, minY, minZ, maxX, maxY, maxZ, done, count);
+    }
+
+    static void transformScalar(double[] m, double[] minX, double[] minY, double[] minZ, double[] maxX, double[] maxY, double[] maxZ,
+                                int from, int to) {
+        for (int i = from; i < to; i++) {
+            double x0 = minX[i], y0 = minY[i], z0 = minZ[i];
+            double x1 = maxX[i], y1 = maxY[i], z1 = maxZ[i];
+            minX[i] = lower(m[0], x0, x1) + lower(m[1], y0, y1) + lower(m[2], z0, z1) + m[3];
+            maxX[i] = upper(m[0], x0, x1) + upper(m[1], y0, y1) + upper(m[2], z0, z1) + m[3];
+            minY[i] = lower(m[4], x0, x1) + lower(m[5], y0, y1) + lower(m[6], z0, z1) + m[7];
+            maxY[i] = upper(m[4], x0, x1) + upper(m[5], y0, y1) + upper(m[6], z0, z1) + m[7];
+            minZ[i] = lower(m[8], x0, x1) + lower(m[9], y0, y1) + lower(m[10], z0, z1) + m[11];
+            maxZ[i] = upper(m[8], x0, x1) + upper(m[9], y0, y1) + upper(m[10], z0, z1) + m[11];
+        }
+    }
+
+    static double min(double[] a, int count) {
+        double min = Double.POSITIVE_INFINITY;
+        int done = 0;
+        if (VECTORIZED) {
+            done = VectorBoxKernels.bound(count);
+            min = VectorBoxKernels.min(a, done);
+        }
+        for (int i = done; i < count; i++) {
+            min = Math.min(min, a[i]);
+        }
+        return min;
+    }
+
+    static double max(double[] a, int count) {
+        double max = Double.NEGATIVE_INFINITY;
+        int done = 0;
+        if (VECTORIZED) {
+            done = VectorBoxKernels.bound(count);
+            max = VectorBoxKernels.max(a, done);
+        }
+        for (int i = done; i < count; i++) {
+            max = Math.max(max, a[i]);
+        }
+        return max;
+    }
+
+    static double lower(double m, double a, double b) {
+        return Math.min(m * a, m * b);
+    }
+
+    static double upper(double m, double a, double b) {
+        return Math.max(m * a, m * b);
+    }
+}
@@ -0,0 +1,163 @@
+package capehorn.cadmium.geom;
+
+import capehorn.cadmium.core.Mat4x4;
+import capehorn.cadmium.core.Vec3;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Set of axis aligned boxes in structure of arrays layout: one primitive array per min and max coordinate.
+ * <p>
+ * The bulk queries test all boxes in one pass (one box per vector lane when the Vector API is available)
+ * and report the result as bits of the box indices, nothing is allocated per box or per query.
+ * A set is not thread safe, concurrent queries are safe as long as nothing is added or transformed.
+ */
+public final class BoxSet {
+    private double[] minX;
+    private double[] minY;
+    private double[] minZ;
+    private double[] maxX;
+    private double[] maxY;
+    private double[] maxZ;
+    private int size;
+
+    public BoxSet() {
+        this(32);
+    }
+
+    public BoxSet(int capacity) {
+        int n = Math.max(capacity, 1);
+        this.minX = new double[n];
+        this.minY = new double[n];
+        this.minZ = new double[n];
+        this.maxX = new double[n];
+        this.maxY = new double[n];
+        this.maxZ = new double[n];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return index of the added box
+     */
+    public int add(Box box) {
+        return add(box.min().x(), box.min().y(), box.min().z(), box.max().x(), box.max().y(), box.max().z());
+    }
+
+    /**
+     * @return index of the added box
+     */
+    public int add(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        if (size == this.minX.length) {
+            grow();
+        }
+        set(size, minX, minY, minZ, maxX, maxY, maxZ);
+        return size++;
+    }
+
+    public void set(int idx, Box box) {
+        checkIndex(idx);
+        set(idx, box.min().x(), box.min().y(), box.min().z(), box.max().x(), box.max().y(), box.max().z());
+    }
+
+    private void set(int idx, double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        this.minX[idx] = minX;
+        this.minY[idx] = minY;
+        this.minZ[idx] = minZ;
+        this.maxX[idx] = maxX;
+        this.maxY[idx] = maxY;
+        this.maxZ[idx] = maxZ;
+    }
+
+    public Box get(int idx) {
+        checkIndex(idx);
+        return new Box(Vec3.of(minX[idx], minY[idx], minZ[idx]), Vec3.of(maxX[idx], maxY[idx], maxZ[idx]));
+    }
+
+    /**
+     * Finds the boxes overlapping the query box, touching boxes included
+     *
+     * @param result cleared in [0, size) then the bits of the overlapping boxes are set
+     * @return number of overlapping boxes
+     */
+    public int intersects(Box box, BitSet result) {
+        result.clear(0, size);
+        return BoxKernels.intersects(minX, minY, minZ, maxX, maxY, maxZ, size,
+                box.min().x(), box.min().y(), box.min().z(), box.max().x(), box.max().y(), box.max().z(), result);
+    }
+
+    /**
+     * Finds the boxes containing the point, boundaries included
+     *
+     * @param result cleared in [0, size) then the bits of the containing boxes are set
+     * @return number of containing boxes
+     */
+    public int contains(Vec3 point, BitSet result) {
+        result.clear(0, size);
+        return BoxKernels.contains(minX, minY, minZ, maxX, maxY, maxZ, size, point.x(), point.y(), point.z(), result);
+    }
+
+    /**
+     * Replaces every box in place by the axis aligned bounds of the transformed box, see {@link Box#mulBox}
+     */
+    public void transform(Mat4x4 m) {
+        BoxKernels.transform(m.vs(), minX, minY, minZ, maxX, maxY, maxZ, size);
+    }
+
+    /**
+     * @return bounds of all boxes, {@link Box#EMPTY} for an empty set
+     */
+    public Box union() {
+        if (size == 0) {
+            return Box.EMPTY;
+        }
+        return new Box(
+                Vec3.of(BoxKernels.min(minX, size), BoxKernels.min(minY, size), BoxKernels.min(minZ, size)),
+                Vec3.of(BoxKernels.max(maxX, size), BoxKernels.max(maxY, size), BoxKernels.max(maxZ, size)));
+    }
+
+    /**
+     * @param selection indices of the boxes, e.g. the result of a query
+     * @return bounds of the selected boxes, {@link Box#EMPTY} if none is selected
+     */
+    public Box union(BitSet selection) {
+        double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY, z0 = Double.POSITIVE_INFINITY;
+        double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY, z1 = Double.NEGATIVE_INFINITY;
+        int i = selection.nextSetBit(0);
+        if (i < 0 || i >= size) {
+            return Box.EMPTY;
+        }
+        for (; i >= 0 && i < size; i = selection.nextSetBit(i + 1)) {
+            x0 = Math.min(x0, minX[i]);
+            y0 = Math.min(y0, minY[i]);
+            z0 = Math.min(z0, minZ[i]);
+            x1 = Math.max(x1, maxX[i]);
+            y1 = Math.max(y1, maxY[i]);
+            z1 = Math.max(z1, maxZ[i]);
+        }
+        return new Box(Vec3.of(x0, y0, z0), Vec3.of(x1, y1, z1));
+    }
+
+    private void grow() {
+        int n = 2 * minX.length;
+        minX = Arrays.copyOf(minX, n);
+        minY = Arrays.copyOf(minY, n);
+        minZ = Arrays.copyOf(minZ, n);
+        maxX = Arrays.copyOf(maxX, n);
+        maxY = Arrays.copyOf(maxY, n);
+        maxZ = Arrays.copyOf(maxZ, n);
+    }
+
+    private void checkIndex(int idx) {
+        if (idx < 0 || size <= idx) {
+            throw new IndexOutOfBoundsException("Invalid box index: " + idx);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package capehorn.cadmium.geom;
 import capehorn.cadmium.core.AffineTransform;
 import capehorn.cadmium.core.Mat4x4;
 import capehorn.cadmium.core.Vec3;
+import capehorn.cadmium.core.VecBuffer;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
@@ -57,6 +58,69 @@ public class CubicBezierCurve implements AffineTransform<CubicBezierCurve>, Para
         return coefficients[1].add(coefficients[2].mulScalar(2 * t)).add(coefficients[3].mulScalar(3 * tExp2)).normalize();
     }
 
+    /**
+     * Evaluates the polynomial form with Horner's scheme
+     */
+    @Override
+    public void evaluate(double[] ts, VecBuffer out) {
+        var c0 = coefficients[0];
+        var c1 = coefficients[1];
+        var c2 = coefficients[2];
+        var c3 = coefficients[3];
+        var points = new CurvePoints(out, ts.length);
+        for (double t : ts) {
+            points.add(
+                    ((c3.x() * t + c2.x()) * t + c1.x()) * t + c0.x(),
+                    ((c3.y() * t + c2.y()) * t + c1.y()) * t + c0.y(),
+                    ((c3.z() * t + c2.z()) * t + c1.z()) * t + c0.z());
+        }
+        points.flush();
+    }
+
+    /**
+     * Evaluates the polynomial form by forward differencing: 3 additions per coordinate and point
+     */
+    @Override
+    public void evaluateUniform(int n, VecBuffer out) {
+        CurvePoints.checkNumOfPoints(n);
+        double h = n == 1 ? 0 : 1.0 / (n - 1);
+        double h2 = h * h;
+        double h3 = h2 * h;
+        var c0 = coefficients[0];
+        var c1 = coefficients[1];
+        var c2 = coefficients[2];
+        var c3 = coefficients[3];
+        double x = c0.x(), y = c0.y(), z = c0.z();
+        double dx = c1.x() * h + c2.x() * h2 + c3.x() * h3;
+        double dy = c1.y() * h + c2.y() * h2 + c3.y() * h3;
+        double dz = c1.z() * h + c2.z() * h2 + c3.z() * h3;
+        double ddx = 2 * c2.x() * h2 + 6 * c3.x() * h3;
+        double ddy = 2 * c2.y() * h2 + 6 * c3.y() * h3;
+        double ddz = 2 * c2.z() * h2 + 6 * c3.z() * h3;
+        double dddx = 6 * c3.x() * h3, dddy = 6 * c3.y() * h3, dddz = 6 * c3.z() * h3;
+        var points = new CurvePoints(out, n);
+        for (int i = 0; i < n - 1; i++) {
+            points.add(x, y, z);
+            x += dx;
+            y += dy;
+            z += dz;
+            dx += ddx;
+            dy += ddy;
+            dz += ddz;
+            ddx += dddx;
+            ddy += dddy;
+            ddz += dddz;
+        }
+        // the differences accumulate rounding errors, the last point is exactly the end of the curve
+        // so consecutive curves share their end points
+        if (n == 1) {
+            points.add(x, y, z);
+        } else if (n > 1) {
+            points.add(p3.x(), p3.y(), p3.z());
+        }
+        points.flush();
+    }
+
     public CubicBezierCurve[] splitAt(double t) {
         Vec3 p = point(t);
         Vec3 m = p1.lerp(p2, t);
@@ -88,7 +152,7 @@ public class CubicBezierCurve implements AffineTransform<CubicBezierCurve>, Para
         ArrayDeque<CubicBezierCurve> curves = new ArrayDeque<>();
         curves.add(this);
         while (!curves.isEmpty()) {
-            var c = curves.getLast();
+            var c = curves.removeLast();
             var d1 = c.p1.perpendicularDistanceFrom(c.p0, c.p3);
             var d2 = c.p2.perpendicularDistanceFrom(c.p0, c.p3);
             if (d1 <= tolerance && d2 <= tolerance) {
@@ -105,4 +169,15 @@ public class CubicBezierCurve implements AffineTransform<CubicBezierCurve>, Para
         return points;
     }
 
+    /**
+     * Appends the points of a polyline approximating the curve, the start point included.
+     * See {@link BezierFlattener} to flatten many curves without allocation.
+     *
+     * @param tolerance max distance between the curve and the polyline
+     * @param dst buffer of 3 component items
+     * @return number of points appended
+     */
+    public int flatten(double tolerance, VecBuffer dst) {
+        return BezierFlattener.ofTolerance(tolerance).flatten(this, true, dst);
+    }
 }
@@ -0,0 +1,51 @@
+package capehorn.cadmium.geom;
+
+import capehorn.cadmium.core.VecBuffer;
+
+/**
+ * Collects evaluated curve points in a small primitive block and appends the block to a {@link VecBuffer},
+ * so batch evaluation neither creates a {@link capehorn.cadmium.core.Vec3} nor a varargs array per point.
+ */
+final class CurvePoints {
+    private static final int BLOCK_SIZE = 256;
+
+    private final VecBuffer out;
+    private final double[] block;
+    private int size;
+
+    CurvePoints(VecBuffer out, int numOfPoints) {
+        if (out.getItemSize() != 3) {
+            throw new IllegalArgumentException("Points must have 3 components instead of " + out.getItemSize());
+        }
+        this.out = out;
+        this.block = new double[3 * Math.max(1, Math.min(numOfPoints, BLOCK_SIZE))];
+    }
+
+    /**
+     * @return parameter of the i-th of n uniform samples of [0, 1], the last one is exactly 1
+     */
+    static double uniform(int i, int n) {
+        return n == 1 ? 0 : (double) i / (n - 1);
+    }
+
+    static void checkNumOfPoints(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Number of points must not be negative: " + n);
+        }
+    }
+
+    void add(double x, double y, double z) {
+        if (size == block.length) {
+            flush();
+        }
+        block[size] = x;
+        block[size + 1] = y;
+        block[size + 2] = z;
+        size += 3;
+    }
+
+    void flush() {
+        out.put(block, 0, size);
+        size = 0;
+    }
+}
@@ -1,8 +1,9 @@
 package capehorn.cadmium.geom;
 
 import capehorn.cadmium.core.Vec3;
+import capehorn.cadmium.core.VecBuffer;
 
-import java.util.function.Function;
+import java.util.function.DoubleUnaryOperator;
 
 public final class Curves {
 
@@ -14,23 +15,46 @@ public final class Curves {
         return new Ellipse(center, r1, r2);
     }
 
-    public static ParametricCurve custom(
-            Function<Double, Double> fnX,
-            Function<Double, Double> fnY,
-            Function<Double, Double> fnZ) {
-        return new ParametricCurve() {
-            @Override
-            public Vec3 point(double t) {
-                return Vec3.of(fnX.apply(t), fnY.apply(t), fnZ.apply(t));
+    /**
+     * Curve of the coordinate functions, nothing is boxed on evaluation
+     */
+    public static ParametricCurve custom(DoubleUnaryOperator fnX, DoubleUnaryOperator fnY, DoubleUnaryOperator fnZ) {
+        return new Custom(fnX, fnY, fnZ);
+    }
+
+    private record Custom(DoubleUnaryOperator fnX, DoubleUnaryOperator fnY, DoubleUnaryOperator fnZ) implements ParametricCurve {
+
+        @Override
+        public Vec3 point(double t) {
+            return Vec3.of(fnX.applyAsDouble(t), fnY.applyAsDouble(t), fnZ.applyAsDouble(t));
+        }
+
+        @Override
+        public Vec3 tangent(double t, double delta) {
+            var p1 = point(Math.max(0, t - delta));
+            var p2 = point(Math.min(1, t + delta));
+            return p2.sub(p1).normalize();
+        }
+
+        @Override
+        public void evaluate(double[] ts, VecBuffer out) {
+            var points = new CurvePoints(out, ts.length);
+            for (double t : ts) {
+                points.add(fnX.applyAsDouble(t), fnY.applyAsDouble(t), fnZ.applyAsDouble(t));
             }
+            points.flush();
+        }
 
-            @Override
-            public Vec3 tangent(double t, double delta) {
-                var p1 = point(Math.max(0, t - delta));
-                var p2 = point(Math.min(1, t + delta));
-                return p2.sub(p1).normalize();
+        @Override
+        public void evaluateUniform(int n, VecBuffer out) {
+            CurvePoints.checkNumOfPoints(n);
+            var points = new CurvePoints(out, n);
+            for (int i = 0; i < n; i++) {
+                double t = CurvePoints.uniform(i, n);
+                points.add(fnX.applyAsDouble(t), fnY.applyAsDouble(t), fnZ.applyAsDouble(t));
             }
-        };
+            points.flush();
+        }
     }
 
     public record Circle(Vec3 center, double r) implements ParametricCurve {
@@ -48,6 +72,16 @@ public final class Curves {
         public Vec3 tangent(double t, double delta) {
             return null;
         }
+
+        @Override
+        public void evaluate(double[] ts, VecBuffer out) {
+            evaluateArc(center, r, r, ts, out);
+        }
+
+        @Override
+        public void evaluateUniform(int n, VecBuffer out) {
+            evaluateArcUniform(center, r, r, n, out);
+        }
     }
 
     public record Ellipse(Vec3 center, double r1, double r2) implements ParametricCurve {
@@ -65,6 +99,43 @@ public final class Curves {
         public Vec3 tangent(double t, double delta) {
             return null;
         }
+
+        @Override
+        public void evaluate(double[] ts, VecBuffer out) {
+            evaluateArc(center, r1, r2, ts, out);
+        }
+
+        @Override
+        public void evaluateUniform(int n, VecBuffer out) {
+            evaluateArcUniform(center, r1, r2, n, out);
+        }
+    }
+
+    private static void evaluateArc(Vec3 center, double rx, double ry, double[] ts, VecBuffer out) {
+        var points = new CurvePoints(out, ts.length);
+        for (double t : ts) {
+            points.add(center.x() + rx * Math.cos(Math.PI * t), center.y() + ry * Math.sin(Math.PI * t), 0);
+        }
+        points.flush();
     }
 
+    /**
+     * Rotates the unit vector by the constant angle step instead of calling cos and sin per point
+     */
+    private static void evaluateArcUniform(Vec3 center, double rx, double ry, int n, VecBuffer out) {
+        CurvePoints.checkNumOfPoints(n);
+        double step = n == 1 ? 0 : Math.PI / (n - 1);
+        double cosStep = Math.cos(step);
+        double sinStep = Math.sin(step);
+        double cos = 1;
+        double sin = 0;
+        var points = new CurvePoints(out, n);
+        for (int i = 0; i < n; i++) {
+            points.add(center.x() + rx * cos, center.y() + ry * sin, 0);
+            double c = cos * cosStep - sin * sinStep;
+            sin = sin * cosStep + cos * sinStep;
+            cos = c;
+        }
+        points.flush();
+    }
 }
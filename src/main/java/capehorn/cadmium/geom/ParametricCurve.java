@@ -1,6 +1,7 @@
 package capehorn.cadmium.geom;
 
 import capehorn.cadmium.core.Vec3;
+import capehorn.cadmium.core.VecBuffer;
 
 public interface ParametricCurve {
 
@@ -8,4 +9,30 @@ public interface ParametricCurve {
 
     Vec3 tangent(double t, double delta);
 
+    /**
+     * Appends the points at the parameters to a buffer of 3 component items.
+     * The default implementation calls {@link #point(double)}, curves with a closed form override it.
+     */
+    default void evaluate(double[] ts, VecBuffer out) {
+        var points = new CurvePoints(out, ts.length);
+        for (double t : ts) {
+            var p = point(t);
+            points.add(p.x(), p.y(), p.z());
+        }
+        points.flush();
+    }
+
+    /**
+     * Appends n points at uniformly spaced parameters from 0 to 1, both included
+     */
+    default void evaluateUniform(int n, VecBuffer out) {
+        CurvePoints.checkNumOfPoints(n);
+        var points = new CurvePoints(out, n);
+        for (int i = 0; i < n; i++) {
+            var p = point(CurvePoints.uniform(i, n));
+            points.add(p.x(), p.y(), p.z());
+        }
+        points.flush();
+    }
+
 }
@@ -3,6 +3,7 @@ package capehorn.cadmium.geom;
 import capehorn.cadmium.core.AffineTransform;
 import capehorn.cadmium.core.Mat4x4;
 import capehorn.cadmium.core.Vec3;
+import capehorn.cadmium.core.VecBuffer;
 
 public record Segment(Vec3 p1, Vec3 p2) implements AffineTransform<Segment>, ParametricCurve {
 
@@ -24,4 +25,33 @@ public record Segment(Vec3 p1, Vec3 p2) implements AffineTransform<Segment>, Par
         return null;
     }
 
+    @Override
+    public void evaluate(double[] ts, VecBuffer out) {
+        var points = new CurvePoints(out, ts.length);
+        for (double t : ts) {
+            add(points, t);
+        }
+        points.flush();
+    }
+
+    @Override
+    public void evaluateUniform(int n, VecBuffer out) {
+        CurvePoints.checkNumOfPoints(n);
+        var points = new CurvePoints(out, n);
+        for (int i = 0; i < n; i++) {
+            add(points, CurvePoints.uniform(i, n));
+        }
+        points.flush();
+    }
+
+    /**
+     * Same as {@link Vec3#lerp}
+     */
+    private void add(CurvePoints points, double t) {
+        points.add(
+                p1.x() + (p2.x() - p1.x()) * t,
+                p1.y() + (p2.y() - p1.y()) * t,
+                p1.z() + (p2.z() - p1.z()) * t);
+    }
+
 }
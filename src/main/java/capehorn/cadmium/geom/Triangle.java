@@ -51,8 +51,40 @@ public record Triangle(Vec3 p1, Vec3 p2, Vec3 p3, Vec3 normal) implements Affine
         return new Box(min, max);
     }
 
+    /**
+     * Möller–Trumbore intersection with both sides of the triangle
+     *
+     * @return distance of the hit along the ray in units of the direction, NaN if the ray misses
+     */
+    public double intersectRay(Vec3 origin, Vec3 direction) {
+        var e1 = p2.sub(p1);
+        var e2 = p3.sub(p1);
+        var p = direction.cross(e2);
+        double det = e1.dot(p);
+        if (det == 0) {
+            return Double.NaN;
+        }
+        double inv = 1 / det;
+        var s = origin.sub(p1);
+        double u = s.dot(p) * inv;
+        if (u < 0 || u > 1) {
+            return Double.NaN;
+        }
+        var q = s.cross(e1);
+        double v = direction.dot(q) * inv;
+        if (v < 0 || u + v > 1) {
+            return Double.NaN;
+        }
+        double t = e2.dot(q) * inv;
+        return t >= 0 ? t : Double.NaN;
+    }
+
+    /**
+     * The normal is transformed by the normal matrix instead of being recomputed from the points,
+     * so a normal given explicitly stays correct under any affine transform
+     */
     public Triangle transform(Mat4x4 trf) {
-        return new Triangle(trf.mulPosition(p1), trf.mulPosition(p2), trf.mulPosition(p3));
+        return new Triangle(trf.mulPosition(p1), trf.mulPosition(p2), trf.mulPosition(p3), trf.mulNormal(normal));
     }
 
     public Triangle reverseWinding() {
@@ -0,0 +1,107 @@
+package capehorn.cadmium.geom;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.BitSet;
+
+/**
+ * Vector API kernels, this class must be loaded only if the incubator module is present.
+ * One lane per box, the coordinates are loaded from the six arrays without gathering.
+ */
+final class VectorBoxKernels {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private VectorBoxKernels() {
+    }
+
+    static boolean isSupported() {
+        return SPECIES.length() > 1;
+    }
+
+    /**
+     * @return number of boxes handled by the vector loops, the remainder is left for the scalar loop
+     */
+    static int bound(int count) {
+        return count - count % SPECIES.length();
+    }
+
+    /**
+     * @return number of overlapping boxes among the first {@link #bound} boxes
+     */
+    static int intersects(double[] minX, double[] minY, double[] minZ, double[] maxX, double[] maxY, double[] maxZ, int count,
+                          double qMinX, double qMinY, double qMinZ, double qMaxX, double qMaxY, double qMaxZ,
+                          BitSet result) {
+        int lanes = SPECIES.length();
+        int bound = bound(count);
+        int found = 0;
+        for (int i = 0; i < bound; i += lanes) {
+            var mask = DoubleVector.fromArray(SPECIES, minX, i).compare(VectorOperators.LE, qMaxX)
+                    .and(DoubleVector.fromArray(SPECIES, maxX, i).compare(VectorOperators.GE, qMinX))
+                    .and(DoubleVector.fromArray(SPECIES, minY, i).compare(VectorOperators.LE, qMaxY))
+                    .and(DoubleVector.fromArray(SPECIES, maxY, i).compare(VectorOperators.GE, qMinY))
+                    .and(DoubleVector.fromArray(SPECIES, minZ, i).compare(VectorOperators.LE, qMaxZ))
+                    .and(DoubleVector.fromArray(SPECIES, maxZ, i).compare(VectorOperators.GE, qMinZ));
+            long bits = mask.toLong();
+            while (bits != 0) {
+                result.set(i + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return number of boxes transformed, the remainder is left for the scalar loop
+     */
+    static int transform(double[] m, double[] minX, double[] minY, double[] minZ, double[] maxX, double[] maxY, double[] maxZ,
+                         int count) {
+        int lanes = SPECIES.length();
+        int bound = bound(count);
+        for (int i = 0; i < bound; i += lanes) {
+            var x0 = DoubleVector.fromArray(SPECIES, minX, i);
+            var y0 = DoubleVector.fromArray(SPECIES, minY, i);
+            var z0 = DoubleVector.fromArray(SPECIES, minZ, i);
+            var x1 = DoubleVector.fromArray(SPECIES, maxX, i);
+            var y1 = DoubleVector.fromArray(SPECIES, maxY, i);
+            var z1 = DoubleVector.fromArray(SPECIES, maxZ, i);
+            transformRow(m, 0, x0, y0, z0, x1, y1, z1, minX, maxX, i);
+            transformRow(m, 4, x0, y0, z0, x1, y1, z1, minY, maxY, i);
+            transformRow(m, 8, x0, y0, z0, x1, y1, z1, minZ, maxZ, i);
+        }
+        return bound;
+    }
+
+    static double min(double[] a, int bound) {
+        var min = DoubleVector.broadcast(SPECIES, Double.POSITIVE_INFINITY);
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            min = min.min(DoubleVector.fromArray(SPECIES, a, i));
+        }
+        return min.reduceLanes(VectorOperators.MIN);
+    }
+
+    static double max(double[] a, int bound) {
+        var max = DoubleVector.broadcast(SPECIES, Double.NEGATIVE_INFINITY);
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            max = max.max(DoubleVector.fromArray(SPECIES, a, i));
+        }
+        return max.reduceLanes(VectorOperators.MAX);
+    }
+
+    private static void transformRow(double[] m, int row,
+                                     DoubleVector x0, DoubleVector y0, DoubleVector z0,
+                                     DoubleVector x1, DoubleVector y1, DoubleVector z1,
+                                     double[] dstMin, double[] dstMax, int offset) {
+        var ax = x0.mul(m[row]);
+        var bx = x1.mul(m[row]);
+        var ay = y0.mul(m[row + 1]);
+        var by = y1.mul(m[row + 1]);
+        var az = z0.mul(m[row + 2]);
+        var bz = z1.mul(m[row + 2]);
+        ax.min(bx).add(ay.min(by)).add(az.min(bz)).add(m[row + 3]).intoArray(dstMin, offset);
+        ax.max(bx).add(ay.max(by)).add(az.max(bz)).add(m[row + 3]).intoArray(dstMax, offset);
+    }
+}
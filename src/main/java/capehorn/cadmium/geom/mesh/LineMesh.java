@@ -1,4 +1,109 @@
 package capehorn.cadmium.geom.mesh;
 
+import capehorn.cadmium.core.Vec3;
+import capehorn.cadmium.core.VecBuffer;
+
+import java.util.Arrays;
+
+/**
+ * Line segments over a buffer of vertex positions, 2 vertex indices per segment.
+ * Polylines are stored as their consecutive segments.
+ */
 public class LineMesh {
+    private static final int[] VERTEX_LAYOUT = {3};
+
+    private final VecBuffer positions;
+    private int[] indices;
+    private int numOfSegments;
+
+    public LineMesh() {
+        this.positions = new VecBuffer(VERTEX_LAYOUT, 32);
+        this.indices = new int[2 * 32];
+    }
+
+    private LineMesh(VecBuffer positions, int[] indices) {
+        this.positions = positions;
+        this.indices = indices.length == 0 ? new int[2 * 32] : indices;
+        this.numOfSegments = indices.length / 2;
+    }
+
+    /**
+     * Wraps already indexed segments without copying them, the position buffer can be shared with other meshes.
+     *
+     * @param positions vertices, items of 3 doubles up to the limit
+     * @param indices zero based vertex indices, 2 per segment
+     */
+    public static LineMesh indexed(VecBuffer positions, int[] indices) {
+        if (positions.getItemSize() != 3) {
+            throw new IllegalArgumentException("Positions must have 3 components instead of " + positions.getItemSize());
+        }
+        if (indices.length % 2 != 0) {
+            throw new IllegalArgumentException("Number of indices must be even: " + indices.length);
+        }
+        int numOfVertices = positions.getLimit();
+        for (int idx : indices) {
+            if (idx < 0 || numOfVertices <= idx) {
+                throw new IllegalArgumentException("Vertex index out of [0, " + numOfVertices + "): " + idx);
+            }
+        }
+        return new LineMesh(positions, indices);
+    }
+
+    public int getNumOfSegments() {
+        return numOfSegments;
+    }
+
+    public int getNumOfVertices() {
+        return positions.getLimit();
+    }
+
+    /**
+     * Adds the points as new vertices and the segments between the consecutive ones
+     */
+    public void addPolyline(Vec3... points) {
+        if (points.length < 2) {
+            throw new IllegalArgumentException("Polyline needs at least 2 points: " + points.length);
+        }
+        int first = positions.getLimit();
+        positions.setPosition(first);
+        for (var p : points) {
+            positions.put(p.x(), p.y(), p.z());
+        }
+        ensureSegmentCapacity(numOfSegments + points.length - 1);
+        for (int i = 1; i < points.length; i++) {
+            int s = 2 * numOfSegments++;
+            indices[s] = first + i - 1;
+            indices[s + 1] = first + i;
+        }
+    }
+
+    private void ensureSegmentCapacity(int n) {
+        if (indices.length < 2 * n) {
+            indices = Arrays.copyOf(indices, Math.max(2 * n, 2 * indices.length));
+        }
+    }
+
+    /**
+     * Allocation free traversal of the vertices
+     */
+    public void forEachVertex(VertexVisitor visitor) {
+        var v = positions.cursor();
+        for (; v.hasItem(); v.advance()) {
+            visitor.visit(v.index(), v.getDouble(0), v.getDouble(1), v.getDouble(2));
+        }
+    }
+
+    /**
+     * Allocation free traversal of the segments by vertex indices
+     */
+    public void forEachSegment(SegmentVisitor visitor) {
+        for (int s = 0; s < numOfSegments; s++) {
+            visitor.visit(s, indices[2 * s], indices[2 * s + 1]);
+        }
+    }
+
+    @FunctionalInterface
+    public interface SegmentVisitor {
+        void visit(int segmentIdx, int v1, int v2);
+    }
 }
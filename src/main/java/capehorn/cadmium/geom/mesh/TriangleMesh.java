@@ -1,15 +1,48 @@
 package capehorn.cadmium.geom.mesh;
 
+import capehorn.cadmium.core.ConcurrentVecBuffer;
+import capehorn.cadmium.core.Mat4x4;
+import capehorn.cadmium.core.Vec3;
 import capehorn.cadmium.core.VecBuffer;
+import capehorn.cadmium.core.VecStorage;
 import capehorn.cadmium.geom.Box;
 import capehorn.cadmium.geom.Triangle;
 
 import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.function.Consumer;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+/**
+ * Triangle mesh in one of two storage modes:
+ * <ul>
+ *     <li>triangle soup: every triangle is one item of {@link ItemLayout} (3 points and the normal)</li>
+ *     <li>indexed: unique vertices in a position buffer and 3 vertex indices per triangle,
+ *     vertices are welded on insert. Normals are not stored, they are computed from the points on read.</li>
+ * </ul>
+ * The storage of the coordinates can be chosen, e.g. {@link VecStorage#HEAP_FLOAT} halves the memory of the mesh
+ * when single precision is enough. Triangles are still read and written in double precision.
+ * Triangle soup can also be stored in {@link VecBuffer.Layout#PLANAR planar} layout, then every coordinate of
+ * the points and the normals is contiguous for all triangles.
+ */
 public class TriangleMesh {
+    /**
+     * Number of triangles (or vertices) below which a parallel task is not split further
+     */
+    private static final int PARALLEL_GRAIN = 1 << 12;
+    /**
+     * Number of consecutive triangles sharing one entry of the chunk bounds
+     */
+    public static final int BOUNDS_CHUNK_SIZE = 1 << 12;
+    private static final int[] TRIANGLE_POSITIONS = {0, 3, 6};
+    private static final int[] TRIANGLE_NORMAL = {9};
+    private static final int[] VERTEX_POSITION = {0};
+    private static final int[] VERTEX_LAYOUT = {3};
+
     private final VecBuffer buff;
     private enum ItemLayout {
         p1(3),
@@ -26,34 +59,664 @@ public class TriangleMesh {
         public static int[] toArray() {
             return Arrays.stream(ItemLayout.values()).mapToInt(v -> v.size).toArray();
         }
+
+        public static VecBuffer.Attribute[] toAttributes() {
+            return Arrays.stream(ItemLayout.values())
+                    .map(v -> new VecBuffer.Attribute(v.name(), v.size))
+                    .toArray(VecBuffer.Attribute[]::new);
+        }
     }
 
+    /**
+     * Unique vertices of an indexed mesh, null for triangle soup
+     */
+    private final VecBuffer positions;
+    private final double weldTolerance;
+    /**
+     * Created on the first insert for meshes wrapping existing vertices and after transforming the vertices
+     */
+    private VertexWelder welder;
+    /**
+     * Vertex indices of an indexed mesh, 3 per triangle
+     */
+    private int[] indices;
+    private int numOfTriangles;
+
     private Box boundingBox;
+    /**
+     * Bounds of the consecutive ranges of {@link #BOUNDS_CHUNK_SIZE} triangles, min and max per chunk,
+     * null when the bounds are not computed
+     */
+    private double[] chunkBounds;
 
     public TriangleMesh() {
-        this.buff = new VecBuffer(ItemLayout.toArray());
+        this(VecStorage.HEAP);
+    }
+
+    public TriangleMesh(VecStorage.Factory storageFactory) {
+        this(VecBuffer.Layout.INTERLEAVED, storageFactory);
+    }
+
+    /**
+     * @param layout arrangement of the points and the normal of the triangles in the storage
+     */
+    public TriangleMesh(VecBuffer.Layout layout, VecStorage.Factory storageFactory) {
+        this(new VecBuffer(ItemLayout.toAttributes(), layout, 32, storageFactory));
+    }
+
+    private TriangleMesh(VecBuffer buff) {
+        this.buff = buff;
+        this.positions = null;
+        this.weldTolerance = 0;
+        this.welder = null;
+    }
+
+    private TriangleMesh(double weldTolerance, VecStorage.Factory storageFactory) {
+        this.buff = null;
+        this.positions = new VecBuffer(VERTEX_LAYOUT, 32, storageFactory);
+        this.weldTolerance = weldTolerance;
+        this.welder = new VertexWelder(positions, weldTolerance);
+        this.indices = new int[3 * 32];
+    }
+
+    private TriangleMesh(VecBuffer positions, int[] indices) {
+        this.buff = null;
+        this.positions = positions;
+        this.weldTolerance = 0;
+        this.welder = null;
+        this.indices = indices.length == 0 ? new int[3 * 32] : indices;
+        this.numOfTriangles = indices.length / 3;
+    }
+
+    /**
+     * @return indexed mesh welding vertices with exactly the same coordinates
+     */
+    public static TriangleMesh indexed() {
+        return new TriangleMesh(0, VecStorage.HEAP);
+    }
+
+    /**
+     * @param weldTolerance size of the grid cells used for welding, vertices in the same cell are merged
+     * @return indexed mesh welding vertices closer than the tolerance
+     */
+    public static TriangleMesh indexed(double weldTolerance) {
+        return new TriangleMesh(weldTolerance, VecStorage.HEAP);
+    }
+
+    /**
+     * @param weldTolerance size of the grid cells used for welding, 0 for exact match
+     * @param storageFactory storage of the vertex positions
+     */
+    public static TriangleMesh indexed(double weldTolerance, VecStorage.Factory storageFactory) {
+        return new TriangleMesh(weldTolerance, storageFactory);
+    }
+
+    /**
+     * @return builder of triangle soup appended from many threads at once
+     */
+    public static ConcurrentBuilder concurrentBuilder() {
+        return new ConcurrentBuilder();
+    }
+
+    /**
+     * Wraps already indexed geometry without copying it. Vertices are not welded, only the vertices added later
+     * are welded (by exact match) to the existing ones.
+     *
+     * @param positions vertices, items of 3 doubles up to the limit
+     * @param indices zero based vertex indices, 3 per triangle
+     */
+    public static TriangleMesh indexed(VecBuffer positions, int[] indices) {
+        if (positions.getItemSize() != 3) {
+            throw new IllegalArgumentException("Positions must have 3 components instead of " + positions.getItemSize());
+        }
+        if (indices.length % 3 != 0) {
+            throw new IllegalArgumentException("Number of indices must be multiple of 3: " + indices.length);
+        }
+        int numOfVertices = positions.getLimit();
+        for (int idx : indices) {
+            if (idx < 0 || numOfVertices <= idx) {
+                throw new IllegalArgumentException("Vertex index out of [0, " + numOfVertices + "): " + idx);
+            }
+        }
+        return new TriangleMesh(positions, indices);
+    }
+
+    /**
+     * @return true if the coordinates are stored in single precision
+     */
+    public boolean isSinglePrecision() {
+        return isIndexed() ? positions.isSinglePrecision() : buff.isSinglePrecision();
+    }
+
+    public boolean isIndexed() {
+        return positions != null;
+    }
+
+    /**
+     * @return layout of the triangles of soup or of the vertex positions of an indexed mesh
+     */
+    public VecBuffer.Layout getLayout() {
+        return isIndexed() ? positions.getLayout() : buff.getLayout();
+    }
+
+    /**
+     * Rearranges the storage in place, see {@link VecBuffer#setLayout(VecBuffer.Layout)}
+     */
+    public void setLayout(VecBuffer.Layout layout) {
+        (isIndexed() ? positions : buff).setLayout(layout);
     }
 
+    public int getNumOfTriangles() {
+        return isIndexed() ? numOfTriangles : buff.getLimit();
+    }
+
+    /**
+     * @return number of unique vertices of an indexed mesh, 3 per triangle for triangle soup
+     */
+    public int getNumOfVertices() {
+        return isIndexed() ? positions.getLimit() : 3 * buff.getLimit();
+    }
+
+    /**
+     * Adds the triangles, the computed bounds are extended by the new triangles instead of being discarded
+     */
     public void addTriangles(Triangle... ts) {
-        for (var t : ts) {
-            buff.put(t.toArray());
+        int from = getNumOfTriangles();
+        if (isIndexed()) {
+            for (var t : ts) {
+                addIndexed(t.p1(), t.p2(), t.p3());
+            }
+        } else {
+            for (var t : ts) {
+                buff.put(t.toArray());
+            }
+        }
+        if (chunkBounds != null) {
+            extendBounds(from, getNumOfTriangles());
+        }
+    }
+
+    private void addIndexed(Vec3 p1, Vec3 p2, Vec3 p3) {
+        if (indices.length < 3 * (numOfTriangles + 1)) {
+            indices = Arrays.copyOf(indices, indices.length * 2);
+        }
+        if (welder == null) {
+            welder = new VertexWelder(positions, weldTolerance);
+            welder.registerExisting();
+        }
+        int i = 3 * numOfTriangles;
+        indices[i] = welder.weld(p1.x(), p1.y(), p1.z());
+        indices[i + 1] = welder.weld(p2.x(), p2.y(), p2.z());
+        indices[i + 2] = welder.weld(p3.x(), p3.y(), p3.z());
+        numOfTriangles += 1;
+    }
+
+    /**
+     * Trims the storage to the triangles of the mesh, chunked storage is turned into one array,
+     * see {@link VecBuffer#compact()}. Useful after building a mesh incrementally in {@link VecStorage#CHUNKED}.
+     */
+    public void compact() {
+        if (isIndexed()) {
+            positions.compact();
+            if (numOfTriangles > 0) {
+                indices = Arrays.copyOf(indices, 3 * numOfTriangles);
+            }
+        } else {
+            buff.compact();
         }
-        dirty();
     }
 
     public void addTriangleMesh(TriangleMesh other) {
 
     }
 
+    /**
+     * Iterates the triangles by index, the position of the underlying buffer is not changed.
+     */
     public void forEachTriangle(Consumer<Triangle> consumer) {
-        buff.setPosition(0);
-        int limit = buff.getLimit();
-        while (buff.getPosition() < limit) {
-            consumer.accept(Triangle.fromArray(buff.get()));
+        forEachTriangle(0, getNumOfTriangles(), consumer);
+    }
+
+    private void forEachTriangle(int from, int to, Consumer<? super Triangle> consumer) {
+        forEachTriangle(from, to, (idx, p1x, p1y, p1z, p2x, p2y, p2z, p3x, p3y, p3z, nx, ny, nz) -> consumer.accept(new Triangle(
+                Vec3.of(p1x, p1y, p1z),
+                Vec3.of(p2x, p2y, p2z),
+                Vec3.of(p3x, p3y, p3z),
+                Vec3.of(nx, ny, nz))));
+    }
+
+    /**
+     * Allocation free traversal of all triangles. It only reads the mesh, so it can run from several threads.
+     */
+    public void forEachTriangle(TriangleVisitor visitor) {
+        forEachTriangle(0, getNumOfTriangles(), visitor);
+    }
+
+    /**
+     * Visits the triangles in the index range [from, to)
+     */
+    public void forEachTriangle(int from, int to, TriangleVisitor visitor) {
+        if (from < 0 || getNumOfTriangles() < to || to < from) {
+            throw new IndexOutOfBoundsException("Invalid triangle range [" + from + ", " + to + ")");
+        }
+        if (isIndexed()) {
+            var v = positions.cursor();
+            for (int t = from; t < to; t++) {
+                int i = 3 * t;
+                v.moveTo(indices[i]);
+                double p1x = v.getDouble(0), p1y = v.getDouble(1), p1z = v.getDouble(2);
+                v.moveTo(indices[i + 1]);
+                double p2x = v.getDouble(0), p2y = v.getDouble(1), p2z = v.getDouble(2);
+                v.moveTo(indices[i + 2]);
+                double p3x = v.getDouble(0), p3y = v.getDouble(1), p3z = v.getDouble(2);
+                // same as Triangle.computeNormal
+                double ux = p2x - p1x, uy = p2y - p1y, uz = p2z - p1z;
+                double wx = p3x - p1x, wy = p3y - p1y, wz = p3z - p1z;
+                double nx = uy * wz - uz * wy;
+                double ny = uz * wx - ux * wz;
+                double nz = ux * wy - uy * wx;
+                double r = 1 / Math.sqrt(nx * nx + ny * ny + nz * nz);
+                visitor.visit(t, p1x, p1y, p1z, p2x, p2y, p2z, p3x, p3y, p3z, nx * r, ny * r, nz * r);
+            }
+            return;
+        }
+        var c = buff.cursor();
+        for (int t = from; t < to; t++) {
+            c.moveTo(t);
+            visitor.visit(t,
+                    c.getDouble(0), c.getDouble(1), c.getDouble(2),
+                    c.getDouble(3), c.getDouble(4), c.getDouble(5),
+                    c.getDouble(6), c.getDouble(7), c.getDouble(8),
+                    c.getDouble(9), c.getDouble(10), c.getDouble(11));
+        }
+    }
+
+    /**
+     * Visits the mesh as unique vertices and triangles of vertex indices.
+     * A vertex is always visited before the first triangle referring to it.
+     * Triangle soup is welded on the fly by exact coordinates, only the unique vertices are kept meanwhile.
+     */
+    public void forEachIndexedTriangle(VertexVisitor vertexVisitor, IndexedTriangleVisitor triangleVisitor) {
+        if (isIndexed()) {
+            var v = positions.cursor();
+            for (; v.hasItem(); v.advance()) {
+                vertexVisitor.visit(v.index(), v.getDouble(0), v.getDouble(1), v.getDouble(2));
+            }
+            for (int t = 0; t < numOfTriangles; t++) {
+                int i = 3 * t;
+                triangleVisitor.visit(t, indices[i], indices[i + 1], indices[i + 2]);
+            }
+            return;
+        }
+        var unique = new VecBuffer(VERTEX_LAYOUT, 32, buff.isSinglePrecision() ? VecStorage.HEAP_FLOAT : VecStorage.HEAP);
+        var uniqueWelder = new VertexWelder(unique, 0);
+        var c = buff.cursor();
+        for (; c.hasItem(); c.advance()) {
+            int v1 = weldAndVisit(uniqueWelder, unique, vertexVisitor, c.getDouble(0), c.getDouble(1), c.getDouble(2));
+            int v2 = weldAndVisit(uniqueWelder, unique, vertexVisitor, c.getDouble(3), c.getDouble(4), c.getDouble(5));
+            int v3 = weldAndVisit(uniqueWelder, unique, vertexVisitor, c.getDouble(6), c.getDouble(7), c.getDouble(8));
+            triangleVisitor.visit(c.index(), v1, v2, v3);
+        }
+    }
+
+    private static int weldAndVisit(VertexWelder welder, VecBuffer unique, VertexVisitor visitor, double x, double y, double z) {
+        int numOfVertices = unique.getLimit();
+        int vertexIdx = welder.weld(x, y, z);
+        if (vertexIdx == numOfVertices) {
+            visitor.visit(vertexIdx, x, y, z);
+        }
+        return vertexIdx;
+    }
+
+    @FunctionalInterface
+    public interface IndexedTriangleVisitor {
+        void visit(int triangleIdx, int v1, int v2, int v3);
+    }
+
+    /**
+     * Visits the triangles from the common fork-join pool. The visitor must tolerate concurrent calls.
+     */
+    public void parallelForEachTriangle(TriangleVisitor visitor) {
+        ForkJoinPool.commonPool().invoke(new RangeAction(0, getNumOfTriangles(),
+                (from, to) -> forEachTriangle(from, to, visitor)));
+    }
+
+    public Triangle getTriangle(int triangleIdx) {
+        Triangle[] t = new Triangle[1];
+        forEachTriangle(triangleIdx, triangleIdx + 1, (Consumer<Triangle>) tr -> t[0] = tr);
+        return t[0];
+    }
+
+    public IntStream triangleIndices() {
+        return IntStream.range(0, getNumOfTriangles());
+    }
+
+    /**
+     * @return sequential stream of the triangles, it splits by index ranges when turned to parallel
+     */
+    public Stream<Triangle> triangles() {
+        return StreamSupport.stream(new TriangleSpliterator(0, getNumOfTriangles()), false);
+    }
+
+    /**
+     * Transforms the mesh in place. Ranges of the storage are processed in parallel on the common fork-join pool.
+     * Normals of triangle soup are transformed together with the points by the normal matrix, see {@link Mat4x4#normalMatrix()}.
+     * The mesh must not be read or written by other threads meanwhile.
+     */
+    public void transform(Mat4x4 trf) {
+        if (isIndexed()) {
+            ForkJoinPool.commonPool().invoke(new RangeAction(0, positions.getLimit(),
+                    (from, to) -> trf.transformPositions(positions, from, to, VERTEX_POSITION)));
+            // the welder is keyed on the old coordinates, it is rebuilt on the next insert
+            welder = null;
+        } else {
+            ForkJoinPool.commonPool().invoke(new RangeAction(0, buff.getLimit(),
+                    (from, to) -> trf.transformPositionsAndNormals(buff, from, to, TRIANGLE_POSITIONS, TRIANGLE_NORMAL)));
+        }
+        dirty();
+    }
+
+    /**
+     * The bounds are computed in one parallel pass over the storage on the first call, then kept up to date
+     * by {@link #addTriangles} until the mesh is transformed. Changes of a wrapped position buffer are not tracked.
+     *
+     * @return bounds of the triangles, {@link Box#EMPTY} for an empty mesh
+     */
+    public Box boundingBox() {
+        if (chunkBounds == null) {
+            computeBounds();
+        }
+        return boundingBox;
+    }
+
+    public int getNumOfBoundsChunks() {
+        return (getNumOfTriangles() + BOUNDS_CHUNK_SIZE - 1) / BOUNDS_CHUNK_SIZE;
+    }
+
+    /**
+     * @return bounds of the triangles in [chunkIdx * {@link #BOUNDS_CHUNK_SIZE}, (chunkIdx + 1) * {@link #BOUNDS_CHUNK_SIZE})
+     */
+    public Box chunkBounds(int chunkIdx) {
+        if (chunkIdx < 0 || getNumOfBoundsChunks() <= chunkIdx) {
+            throw new IndexOutOfBoundsException("Invalid chunk index: " + chunkIdx);
+        }
+        boundingBox();
+        int i = 6 * chunkIdx;
+        return new Box(Vec3.of(chunkBounds[i], chunkBounds[i + 1], chunkBounds[i + 2]),
+                Vec3.of(chunkBounds[i + 3], chunkBounds[i + 4], chunkBounds[i + 5]));
+    }
+
+    /**
+     * Visits the triangles of the chunks whose bounds intersect the box, whole chunks outside the box are skipped.
+     * Triangles of an intersecting chunk are all visited, also the ones outside the box.
+     */
+    public void forEachTriangleNear(Box box, TriangleVisitor visitor) {
+        boundingBox();
+        int numOfTriangles = getNumOfTriangles();
+        for (int chunk = 0, n = getNumOfBoundsChunks(); chunk < n; chunk++) {
+            int i = 6 * chunk;
+            if (chunkBounds[i] > box.max().x() || chunkBounds[i + 3] < box.min().x()
+                    || chunkBounds[i + 1] > box.max().y() || chunkBounds[i + 4] < box.min().y()
+                    || chunkBounds[i + 2] > box.max().z() || chunkBounds[i + 5] < box.min().z()) {
+                continue;
+            }
+            int from = chunk * BOUNDS_CHUNK_SIZE;
+            forEachTriangle(from, Math.min(from + BOUNDS_CHUNK_SIZE, numOfTriangles), visitor);
         }
     }
 
+    private void computeBounds() {
+        int numOfChunks = getNumOfBoundsChunks();
+        int numOfTriangles = getNumOfTriangles();
+        double[] bounds = new double[6 * Math.max(numOfChunks, 1)];
+        IntStream.range(0, numOfChunks).parallel().forEach(chunk -> {
+            int from = chunk * BOUNDS_CHUNK_SIZE;
+            resetChunkBounds(bounds, chunk);
+            extendChunkBounds(bounds, chunk, from, Math.min(from + BOUNDS_CHUNK_SIZE, numOfTriangles));
+        });
+        chunkBounds = bounds;
+        boundingBox = numOfChunks == 0 ? Box.EMPTY : unionOfChunks(0, numOfChunks, null);
+    }
+
+    /**
+     * Extends the computed bounds by the triangles in [from, to)
+     */
+    private void extendBounds(int from, int to) {
+        if (from == to) {
+            return;
+        }
+        int numOfChunks = getNumOfBoundsChunks();
+        if (chunkBounds.length < 6 * numOfChunks) {
+            chunkBounds = Arrays.copyOf(chunkBounds, Math.max(6 * numOfChunks, 2 * chunkBounds.length));
+        }
+        int firstChunk = from / BOUNDS_CHUNK_SIZE;
+        for (int chunk = firstChunk; chunk < numOfChunks; chunk++) {
+            int start = chunk * BOUNDS_CHUNK_SIZE;
+            if (start >= from) {
+                resetChunkBounds(chunkBounds, chunk);
+            }
+            extendChunkBounds(chunkBounds, chunk, Math.max(start, from), Math.min(start + BOUNDS_CHUNK_SIZE, to));
+        }
+        boundingBox = unionOfChunks(firstChunk, numOfChunks, from == 0 ? null : boundingBox);
+    }
+
+    private Box unionOfChunks(int fromChunk, int toChunk, Box box) {
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+        if (box != null) {
+            minX = box.min().x();
+            minY = box.min().y();
+            minZ = box.min().z();
+            maxX = box.max().x();
+            maxY = box.max().y();
+            maxZ = box.max().z();
+        }
+        for (int i = 6 * fromChunk, end = 6 * toChunk; i < end; i += 6) {
+            minX = Math.min(minX, chunkBounds[i]);
+            minY = Math.min(minY, chunkBounds[i + 1]);
+            minZ = Math.min(minZ, chunkBounds[i + 2]);
+            maxX = Math.max(maxX, chunkBounds[i + 3]);
+            maxY = Math.max(maxY, chunkBounds[i + 4]);
+            maxZ = Math.max(maxZ, chunkBounds[i + 5]);
+        }
+        return new Box(Vec3.of(minX, minY, minZ), Vec3.of(maxX, maxY, maxZ));
+    }
+
+    private static void resetChunkBounds(double[] bounds, int chunk) {
+        Arrays.fill(bounds, 6 * chunk, 6 * chunk + 3, Double.POSITIVE_INFINITY);
+        Arrays.fill(bounds, 6 * chunk + 3, 6 * chunk + 6, Double.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * Extends the bounds of a chunk by the triangles in [from, to), reading the coordinates directly from the storage
+     */
+    private void extendChunkBounds(double[] bounds, int chunk, int from, int to) {
+        int i = 6 * chunk;
+        double minX = bounds[i], minY = bounds[i + 1], minZ = bounds[i + 2];
+        double maxX = bounds[i + 3], maxY = bounds[i + 4], maxZ = bounds[i + 5];
+        if (isIndexed()) {
+            var v = positions.cursor();
+            for (int k = 3 * from, end = 3 * to; k < end; k++) {
+                v.moveTo(indices[k]);
+                double x = v.getDouble(0), y = v.getDouble(1), z = v.getDouble(2);
+                minX = Math.min(minX, x);
+                minY = Math.min(minY, y);
+                minZ = Math.min(minZ, z);
+                maxX = Math.max(maxX, x);
+                maxY = Math.max(maxY, y);
+                maxZ = Math.max(maxZ, z);
+            }
+        } else {
+            var c = buff.cursor();
+            for (int t = from; t < to; t++) {
+                c.moveTo(t);
+                for (int p = 0; p < 9; p += 3) {
+                    double x = c.getDouble(p), y = c.getDouble(p + 1), z = c.getDouble(p + 2);
+                    minX = Math.min(minX, x);
+                    minY = Math.min(minY, y);
+                    minZ = Math.min(minZ, z);
+                    maxX = Math.max(maxX, x);
+                    maxY = Math.max(maxY, y);
+                    maxZ = Math.max(maxZ, z);
+                }
+            }
+        }
+        bounds[i] = minX;
+        bounds[i + 1] = minY;
+        bounds[i + 2] = minZ;
+        bounds[i + 3] = maxX;
+        bounds[i + 4] = maxY;
+        bounds[i + 5] = maxZ;
+    }
+
     private void dirty() {
         boundingBox = null;
+        chunkBounds = null;
+    }
+
+    /**
+     * Collects triangle soup from concurrent producers. Every call reserves the indices of its triangles with one
+     * atomic increment and then writes them without locking, see {@link ConcurrentVecBuffer}.
+     * Triangles are stored in the order of the reservations, the triangles of one call stay together.
+     * Vertices are not welded, so there is no indexed variant.
+     */
+    public static final class ConcurrentBuilder {
+        private final ConcurrentVecBuffer triangles = new ConcurrentVecBuffer(12);
+
+        private ConcurrentBuilder() {
+        }
+
+        public int getNumOfTriangles() {
+            return triangles.size();
+        }
+
+        /**
+         * @return index of the first triangle
+         */
+        public int addTriangles(Triangle... ts) {
+            double[] items = new double[12 * ts.length];
+            for (int i = 0; i < ts.length; i++) {
+                System.arraycopy(ts[i].toArray(), 0, items, 12 * i, 12);
+            }
+            return triangles.append(items);
+        }
+
+        /**
+         * Adds triangles given by the coordinates of their points, the normals are computed like
+         * {@link Triangle#computeNormal}
+         *
+         * @param coords 9 coordinates per triangle from the offset
+         * @return index of the first triangle
+         */
+        public int addTriangles(double[] coords, int offset, int numOfTriangles) {
+            double[] items = new double[12 * numOfTriangles];
+            for (int t = 0; t < numOfTriangles; t++) {
+                int i = offset + 9 * t;
+                int o = 12 * t;
+                System.arraycopy(coords, i, items, o, 9);
+                double ux = coords[i + 3] - coords[i], uy = coords[i + 4] - coords[i + 1], uz = coords[i + 5] - coords[i + 2];
+                double wx = coords[i + 6] - coords[i], wy = coords[i + 7] - coords[i + 1], wz = coords[i + 8] - coords[i + 2];
+                double nx = uy * wz - uz * wy;
+                double ny = uz * wx - ux * wz;
+                double nz = ux * wy - uy * wx;
+                double r = 1 / Math.sqrt(nx * nx + ny * ny + nz * nz);
+                items[o + 9] = nx * r;
+                items[o + 10] = ny * r;
+                items[o + 11] = nz * r;
+            }
+            int from = triangles.reserve(numOfTriangles);
+            triangles.put(from, items, 0, numOfTriangles);
+            return from;
+        }
+
+        /**
+         * Copies the triangles into a new mesh, it must not run concurrently with producers
+         */
+        public TriangleMesh build() {
+            return build(VecBuffer.Layout.INTERLEAVED, VecStorage.HEAP);
+        }
+
+        public TriangleMesh build(VecBuffer.Layout layout, VecStorage.Factory storageFactory) {
+            var buff = new VecBuffer(ItemLayout.toAttributes(), layout, triangles.size(), storageFactory);
+            triangles.copyTo(buff);
+            return new TriangleMesh(buff);
+        }
+    }
+
+    @FunctionalInterface
+    private interface RangeBody {
+        void run(int from, int to);
+    }
+
+    /**
+     * Splits [from, to) in halves until the range is small enough to run sequentially
+     */
+    private static final class RangeAction extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final RangeBody body;
+
+        RangeAction(int from, int to, RangeBody body) {
+            this.from = from;
+            this.to = to;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_GRAIN) {
+                body.run(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new RangeAction(from, mid, body), new RangeAction(mid, to, body));
+        }
+    }
+
+    private final class TriangleSpliterator implements Spliterator<Triangle> {
+        private int from;
+        private final int to;
+
+        TriangleSpliterator(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Triangle> action) {
+            if (from >= to) {
+                return false;
+            }
+            action.accept(getTriangle(from++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Triangle> action) {
+            int start = from;
+            from = to;
+            forEachTriangle(start, to, action);
+        }
+
+        @Override
+        public Spliterator<Triangle> trySplit() {
+            if (to - from <= PARALLEL_GRAIN) {
+                return null;
+            }
+            int mid = (from + to) >>> 1;
+            var prefix = new TriangleSpliterator(from, mid);
+            from = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL;
+        }
     }
 }
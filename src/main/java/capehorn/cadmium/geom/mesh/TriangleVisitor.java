@@ -0,0 +1,14 @@
+package capehorn.cadmium.geom.mesh;
+
+/**
+ * Receives the coordinates of a triangle as primitives, so traversing a mesh does not allocate per triangle.
+ */
+@FunctionalInterface
+public interface TriangleVisitor {
+
+    void visit(int triangleIdx,
+               double p1x, double p1y, double p1z,
+               double p2x, double p2y, double p2z,
+               double p3x, double p3y, double p3z,
+               double nx, double ny, double nz);
+}
@@ -0,0 +1,10 @@
+package capehorn.cadmium.geom.mesh;
+
+/**
+ * Receives a vertex of a mesh by its index and coordinates
+ */
+@FunctionalInterface
+public interface VertexVisitor {
+
+    void visit(int vertexIdx, double x, double y, double z);
+}
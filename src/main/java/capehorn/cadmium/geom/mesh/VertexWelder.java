@@ -0,0 +1,136 @@
+package capehorn.cadmium.geom.mesh;
+
+import capehorn.cadmium.core.VecBuffer;
+
+import java.util.Arrays;
+
+/**
+ * Deduplicates vertices while they are appended to a position buffer.
+ * <p>
+ * Vertices are keyed either by their exact coordinates (tolerance 0) or by the cell of a regular grid
+ * with the given tolerance as cell size. Two vertices are welded when they fall into the same cell,
+ * the first inserted vertex of a cell represents all the others.
+ * <p>
+ * The lookup table is an open addressing hash table of vertex indices, so welding does not allocate per vertex.
+ * With single precision positions the coordinates are rounded to float before they are compared.
+ */
+final class VertexWelder {
+
+    private static final int EMPTY = -1;
+
+    private final VecBuffer positions;
+    private final double tolerance;
+    private final boolean singlePrecision;
+    private final double[] scratch = new double[3];
+    private int[] table;
+    private int mask;
+    private int size;
+
+    VertexWelder(VecBuffer positions, double tolerance) {
+        if (tolerance < 0) {
+            throw new IllegalArgumentException("Tolerance must not be negative: " + tolerance);
+        }
+        this.positions = positions;
+        this.tolerance = tolerance;
+        this.singlePrecision = positions.isSinglePrecision();
+        this.table = new int[64];
+        this.mask = table.length - 1;
+        Arrays.fill(table, EMPTY);
+    }
+
+    /**
+     * @return index of the vertex in the position buffer, either an already existing one or the newly added
+     */
+    int weld(double x, double y, double z) {
+        if (singlePrecision) {
+            x = (float) x;
+            y = (float) y;
+            z = (float) z;
+        }
+        int slot = findSlot(x, y, z);
+        int vertexIdx = table[slot];
+        if (vertexIdx != EMPTY) {
+            return vertexIdx;
+        }
+        vertexIdx = positions.getLimit();
+        positions.setPosition(vertexIdx);
+        positions.put(x, y, z);
+        insert(slot, vertexIdx);
+        return vertexIdx;
+    }
+
+    /**
+     * Adds the vertices already in the position buffer to the lookup table,
+     * a vertex matching an earlier one is left out.
+     */
+    void registerExisting() {
+        double[] vertex = new double[3];
+        int numOfVertices = positions.getLimit();
+        for (int vertexIdx = 0; vertexIdx < numOfVertices; vertexIdx++) {
+            positions.get(vertexIdx, vertex);
+            int slot = findSlot(vertex[0], vertex[1], vertex[2]);
+            if (table[slot] == EMPTY) {
+                insert(slot, vertexIdx);
+            }
+        }
+    }
+
+    /**
+     * @return slot of the matching vertex, or the empty slot where it should be inserted
+     */
+    private int findSlot(double x, double y, double z) {
+        long kx = key(x);
+        long ky = key(y);
+        long kz = key(z);
+        int slot = hash(kx, ky, kz) & mask;
+        int vertexIdx;
+        while ((vertexIdx = table[slot]) != EMPTY) {
+            positions.get(vertexIdx, scratch);
+            if (key(scratch[0]) == kx && key(scratch[1]) == ky && key(scratch[2]) == kz) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void insert(int slot, int vertexIdx) {
+        table[slot] = vertexIdx;
+        if (++size * 2 > table.length) {
+            rehash();
+        }
+    }
+
+    private long key(double v) {
+        if (tolerance == 0) {
+            // +0.0 and -0.0 are the same position
+            return Double.doubleToLongBits(v == 0 ? 0.0 : v);
+        }
+        return (long) Math.floor(v / tolerance);
+    }
+
+    private static int hash(long kx, long ky, long kz) {
+        long h = kx * 0x9E3779B97F4A7C15L ^ ky * 0xC2B2AE3D27D4EB4FL ^ kz * 0x165667B19E3779F9L;
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        return (int) (h ^ (h >>> 33));
+    }
+
+    private void rehash() {
+        int[] newTable = new int[table.length * 2];
+        Arrays.fill(newTable, EMPTY);
+        int newMask = newTable.length - 1;
+        for (int vertexIdx : table) {
+            if (vertexIdx == EMPTY) {
+                continue;
+            }
+            positions.get(vertexIdx, scratch);
+            int slot = hash(key(scratch[0]), key(scratch[1]), key(scratch[2])) & newMask;
+            while (newTable[slot] != EMPTY) {
+                slot = (slot + 1) & newMask;
+            }
+            newTable[slot] = vertexIdx;
+        }
+        this.table = newTable;
+        this.mask = newMask;
+    }
+}
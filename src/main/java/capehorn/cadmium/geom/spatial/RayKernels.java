@@ -0,0 +1,82 @@
+package capehorn.cadmium.geom.spatial;
+
+/**
+ * Möller–Trumbore intersection of one triangle with every ray of a packet, both sides of the triangle are hit.
+ * <p>
+ * The Vector API implementation (one lane per ray) is used when the {@code jdk.incubator.vector} module is present,
+ * otherwise the scalar loop. Setting the system property {@code cadmium.vector.disabled} forces the scalar loop.
+ * Both compute the same operations in the same order, so their results are identical.
+ */
+final class RayKernels {
+
+    static final boolean VECTORIZED = isVectorApiAvailable();
+
+    private RayKernels() {
+    }
+
+    private static boolean isVectorApiAvailable() {
+        if (Boolean.getBoolean("cadmium.vector.disabled")
+                || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return false;
+        }
+        try {
+            return VectorRayKernels.isSupported();
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Updates the hits of the rays which hit the triangle nearer than their current hit
+     *
+     * @param e1x edge from the first to the second point
+     * @param e2x edge from the first to the third point
+     */
+    static void intersect(double p1x, double p1y, double p1z,
+                          double e1x, double e1y, double e1z,
+                          double e2x, double e2y, double e2z,
+                          int triangleIdx, RayPacket rays) {
+        int done = 0;
+        if (VECTORIZED) {
+            done = VectorRayKernels.intersect(p1x, p1y, p1z, e1x, e1y, e1z, e2x, e2y, e2z, triangleIdx, rays);
+        }
+        intersectScalar(p1x, p1y, p1z, e1x, e1y, e1z, e2x, e2y, e2z, triangleIdx, rays, done);
+    }
+
+    static void intersectScalar(double p1x, double p1y, double p1z,
+                                double e1x, double e1y, double e1z,
+                                double e2x, double e2y, double e2z,
+                                int triangleIdx, RayPacket rays, int from) {
+        double[] ox = rays.ox, oy = rays.oy, oz = rays.oz;
+        double[] dx = rays.dx, dy = rays.dy, dz = rays.dz;
+        for (int i = from, n = rays.size(); i < n; i++) {
+            double px = dy[i] * e2z - dz[i] * e2y;
+            double py = dz[i] * e2x - dx[i] * e2z;
+            double pz = dx[i] * e2y - dy[i] * e2x;
+            double det = px * e1x + py * e1y + pz * e1z;
+            if (det == 0) {
+                continue;
+            }
+            double inv = 1 / det;
+            double tx = ox[i] - p1x, ty = oy[i] - p1y, tz = oz[i] - p1z;
+            double u = (tx * px + ty * py + tz * pz) * inv;
+            if (u < 0 || u > 1) {
+                continue;
+            }
+            double qx = ty * e1z - tz * e1y;
+            double qy = tz * e1x - tx * e1z;
+            double qz = tx * e1y - ty * e1x;
+            double v = (dx[i] * qx + dy[i] * qy + dz[i] * qz) * inv;
+            if (v < 0 || u + v > 1) {
+                continue;
+            }
+            double t = (qx * e2x + qy * e2y + qz * e2z) * inv;
+            if (0 <= t && t <= rays.t[i]) {
+                rays.t[i] = t;
+                rays.u[i] = u;
+                rays.v[i] = v;
+                rays.triangle[i] = triangleIdx;
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package capehorn.cadmium.geom.spatial;
+
+/**
+ * A batch of rays and their nearest hits in structure of arrays layout, one primitive array per component.
+ * <p>
+ * Intersection updates the hit arrays in place: {@link #hitDistances()} starts from the max. distance of each ray
+ * and {@link #hitTriangles()} from -1, so a packet can be intersected with several meshes or ranges one after
+ * the other and keeps the nearest hit. The arrays are returned without copying, only the first {@link #size()}
+ * elements are meaningful. Rays of a packet should be coherent (similar origin and direction) when the packet
+ * is traced through a {@link TriangleBvh}.
+ */
+public final class RayPacket {
+    final double[] ox;
+    final double[] oy;
+    final double[] oz;
+    final double[] dx;
+    final double[] dy;
+    final double[] dz;
+    final double[] invDx;
+    final double[] invDy;
+    final double[] invDz;
+    final double[] t;
+    final double[] u;
+    final double[] v;
+    final int[] triangle;
+    private int size;
+
+    public RayPacket(int capacity) {
+        this.ox = new double[capacity];
+        this.oy = new double[capacity];
+        this.oz = new double[capacity];
+        this.dx = new double[capacity];
+        this.dy = new double[capacity];
+        this.dz = new double[capacity];
+        this.invDx = new double[capacity];
+        this.invDy = new double[capacity];
+        this.invDz = new double[capacity];
+        this.t = new double[capacity];
+        this.u = new double[capacity];
+        this.v = new double[capacity];
+        this.triangle = new int[capacity];
+    }
+
+    public int capacity() {
+        return t.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all rays, the arrays are reused
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Adds a ray without a max. distance
+     *
+     * @return index of the ray
+     */
+    public int add(double ox, double oy, double oz, double dx, double dy, double dz) {
+        return add(ox, oy, oz, dx, dy, dz, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * @param tMax hits farther than tMax (in units of the direction) are ignored
+     * @return index of the ray
+     */
+    public int add(double ox, double oy, double oz, double dx, double dy, double dz, double tMax) {
+        if (size == capacity()) {
+            throw new IllegalStateException("Packet is full: " + size);
+        }
+        int i = size++;
+        this.ox[i] = ox;
+        this.oy[i] = oy;
+        this.oz[i] = oz;
+        this.dx[i] = dx;
+        this.dy[i] = dy;
+        this.dz[i] = dz;
+        this.invDx[i] = 1 / dx;
+        this.invDy[i] = 1 / dy;
+        this.invDz[i] = 1 / dz;
+        this.t[i] = tMax;
+        this.u[i] = 0;
+        this.v[i] = 0;
+        this.triangle[i] = -1;
+        return i;
+    }
+
+    public boolean isHit(int rayIdx) {
+        return triangle[rayIdx] >= 0;
+    }
+
+    /**
+     * @return distance of the nearest hit per ray in units of the direction, the max. distance if there is no hit
+     */
+    public double[] hitDistances() {
+        return t;
+    }
+
+    /**
+     * @return barycentric coordinate of the second point of the hit triangle per ray
+     */
+    public double[] hitU() {
+        return u;
+    }
+
+    /**
+     * @return barycentric coordinate of the third point of the hit triangle per ray
+     */
+    public double[] hitV() {
+        return v;
+    }
+
+    /**
+     * @return index of the hit triangle per ray, -1 if there is no hit
+     */
+    public int[] hitTriangles() {
+        return triangle;
+    }
+}
@@ -0,0 +1,73 @@
+package capehorn.cadmium.geom.spatial;
+
+import capehorn.cadmium.geom.mesh.TriangleMesh;
+
+/**
+ * Intersects packets of rays with every triangle of a mesh, without a spatial index.
+ * <p>
+ * The triangles are copied into structure of arrays layout: the first point and the two edges from it,
+ * one array per coordinate. Each triangle is loaded once per packet and tested against all rays,
+ * see {@link RayPacket} for the results. For large meshes use {@link TriangleBvh#intersect(RayPacket)}.
+ */
+public final class RayTriangleIntersector {
+    private final double[] p1x;
+    private final double[] p1y;
+    private final double[] p1z;
+    private final double[] e1x;
+    private final double[] e1y;
+    private final double[] e1z;
+    private final double[] e2x;
+    private final double[] e2y;
+    private final double[] e2z;
+
+    private RayTriangleIntersector(int numOfTriangles) {
+        this.p1x = new double[numOfTriangles];
+        this.p1y = new double[numOfTriangles];
+        this.p1z = new double[numOfTriangles];
+        this.e1x = new double[numOfTriangles];
+        this.e1y = new double[numOfTriangles];
+        this.e1z = new double[numOfTriangles];
+        this.e2x = new double[numOfTriangles];
+        this.e2y = new double[numOfTriangles];
+        this.e2z = new double[numOfTriangles];
+    }
+
+    public static RayTriangleIntersector of(TriangleMesh mesh) {
+        var intersector = new RayTriangleIntersector(mesh.getNumOfTriangles());
+        mesh.parallelForEachTriangle((idx, ax, ay, az, bx, by, bz, cx, cy, cz, nx, ny, nz) -> {
+            intersector.p1x[idx] = ax;
+            intersector.p1y[idx] = ay;
+            intersector.p1z[idx] = az;
+            intersector.e1x[idx] = bx - ax;
+            intersector.e1y[idx] = by - ay;
+            intersector.e1z[idx] = bz - az;
+            intersector.e2x[idx] = cx - ax;
+            intersector.e2y[idx] = cy - ay;
+            intersector.e2z[idx] = cz - az;
+        });
+        return intersector;
+    }
+
+    public int getNumOfTriangles() {
+        return p1x.length;
+    }
+
+    /**
+     * Updates the hits of the rays with the nearer hits of the triangles
+     */
+    public void intersect(RayPacket rays) {
+        intersect(rays, 0, getNumOfTriangles());
+    }
+
+    /**
+     * Tests the triangles in the index range [from, to) only
+     */
+    public void intersect(RayPacket rays, int from, int to) {
+        if (from < 0 || getNumOfTriangles() < to || to < from) {
+            throw new IndexOutOfBoundsException("Invalid triangle range [" + from + ", " + to + ")");
+        }
+        for (int i = from; i < to; i++) {
+            RayKernels.intersect(p1x[i], p1y[i], p1z[i], e1x[i], e1y[i], e1z[i], e2x[i], e2y[i], e2z[i], i, rays);
+        }
+    }
+}
@@ -0,0 +1,465 @@
+package capehorn.cadmium.geom.spatial;
+
+import capehorn.cadmium.core.Vec3;
+import capehorn.cadmium.core.VecBuffer;
+import capehorn.cadmium.geom.Box;
+import capehorn.cadmium.geom.Triangle;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Uniform grid over points and boxes, the cells are stored sparsely in an open addressing hash table.
+ * <p>
+ * Items are identified by the index returned on insert, a point is a box of zero size. An item is listed in
+ * every cell its box overlaps, so the cell size should be about the size of the typical item and query.
+ * Queries report an item once, from the cell of the item nearest to the query, so they neither allocate nor
+ * keep visited flags and can run from several threads as long as the grid is not modified meanwhile.
+ * <p>
+ * All the state is in primitive arrays: the bounds of the items, the linked lists of cell entries and the table.
+ */
+public final class SpatialHashGrid {
+    /**
+     * Cell coordinates are clamped to [-CELL_RANGE, CELL_RANGE), 21 bits per axis in the key
+     */
+    private static final int CELL_RANGE = 1 << 20;
+    private static final long EMPTY_KEY = -1;
+    private static final int NONE = -1;
+
+    private final double cellSize;
+    private final double invCellSize;
+
+    /**
+     * Min and max corner per item, NaN for removed items
+     */
+    private double[] bounds = new double[6 * 32];
+    private int numOfItems;
+    private int numOfRemovedItems;
+
+    /**
+     * Singly linked lists of the items of the cells
+     */
+    private int[] entryItem = new int[32];
+    private int[] entryNext = new int[32];
+    private int numOfEntries;
+    private int freeEntry = NONE;
+
+    private long[] cellKeys;
+    private int[] cellHeads;
+    private int numOfCells;
+    private int mask;
+
+    /**
+     * Cell range of all items inserted so far, queries don't look beyond it
+     */
+    private int minCellX = Integer.MAX_VALUE, minCellY = Integer.MAX_VALUE, minCellZ = Integer.MAX_VALUE;
+    private int maxCellX = Integer.MIN_VALUE, maxCellY = Integer.MIN_VALUE, maxCellZ = Integer.MIN_VALUE;
+
+    public SpatialHashGrid(double cellSize) {
+        if (!(cellSize > 0) || Double.isInfinite(cellSize)) {
+            throw new IllegalArgumentException("Cell size must be positive: " + cellSize);
+        }
+        this.cellSize = cellSize;
+        this.invCellSize = 1 / cellSize;
+        this.cellKeys = new long[64];
+        this.cellHeads = new int[64];
+        this.mask = cellKeys.length - 1;
+        Arrays.fill(cellKeys, EMPTY_KEY);
+    }
+
+    /**
+     * Indexes the first 3 components of every item of the buffer up to its limit, the item index is the point index
+     */
+    public static SpatialHashGrid of(VecBuffer positions, double cellSize) {
+        if (positions.getItemSize() < 3) {
+            throw new IllegalArgumentException("Positions must have at least 3 components: " + positions.getItemSize());
+        }
+        var grid = new SpatialHashGrid(cellSize);
+        grid.ensureItemCapacity(positions.getLimit());
+        var c = positions.cursor();
+        for (; c.hasItem(); c.advance()) {
+            grid.insert(c.getDouble(0), c.getDouble(1), c.getDouble(2));
+        }
+        return grid;
+    }
+
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * @return number of items not removed
+     */
+    public int size() {
+        return numOfItems - numOfRemovedItems;
+    }
+
+    /**
+     * @return exclusive upper bound of the item indices, removed indices are not reused
+     */
+    public int getNumOfItems() {
+        return numOfItems;
+    }
+
+    public boolean contains(int item) {
+        return 0 <= item && item < numOfItems && !Double.isNaN(bounds[6 * item]);
+    }
+
+    /**
+     * @return index of the point
+     */
+    public int insert(Vec3 point) {
+        return insert(point.x(), point.y(), point.z());
+    }
+
+    /**
+     * @return index of the point
+     */
+    public int insert(double x, double y, double z) {
+        return insert(x, y, z, x, y, z);
+    }
+
+    /**
+     * @return index of the box
+     */
+    public int insert(Box box) {
+        return insert(box.min().x(), box.min().y(), box.min().z(), box.max().x(), box.max().y(), box.max().z());
+    }
+
+    /**
+     * Inserts the bounding box of the triangle, queries are answered for the box
+     *
+     * @return index of the triangle
+     */
+    public int insert(Triangle triangle) {
+        return insert(triangle.boundingBox());
+    }
+
+    /**
+     * @return index of the box
+     */
+    public int insert(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        if (!(minX <= maxX && minY <= maxY && minZ <= maxZ)) {
+            throw new IllegalArgumentException("Invalid box: [" + minX + ", " + minY + ", " + minZ + "] - ["
+                    + maxX + ", " + maxY + ", " + maxZ + "]");
+        }
+        ensureItemCapacity(numOfItems + 1);
+        int item = numOfItems++;
+        int b = 6 * item;
+        bounds[b] = minX;
+        bounds[b + 1] = minY;
+        bounds[b + 2] = minZ;
+        bounds[b + 3] = maxX;
+        bounds[b + 4] = maxY;
+        bounds[b + 5] = maxZ;
+        int x0 = cell(minX), y0 = cell(minY), z0 = cell(minZ);
+        int x1 = cell(maxX), y1 = cell(maxY), z1 = cell(maxZ);
+        for (int ix = x0; ix <= x1; ix++) {
+            for (int iy = y0; iy <= y1; iy++) {
+                for (int iz = z0; iz <= z1; iz++) {
+                    addEntry(ix, iy, iz, item);
+                }
+            }
+        }
+        minCellX = Math.min(minCellX, x0);
+        minCellY = Math.min(minCellY, y0);
+        minCellZ = Math.min(minCellZ, z0);
+        maxCellX = Math.max(maxCellX, x1);
+        maxCellY = Math.max(maxCellY, y1);
+        maxCellZ = Math.max(maxCellZ, z1);
+        return item;
+    }
+
+    /**
+     * @return false if the item was not in the grid
+     */
+    public boolean remove(int item) {
+        if (!contains(item)) {
+            return false;
+        }
+        int b = 6 * item;
+        int x0 = cell(bounds[b]), y0 = cell(bounds[b + 1]), z0 = cell(bounds[b + 2]);
+        int x1 = cell(bounds[b + 3]), y1 = cell(bounds[b + 4]), z1 = cell(bounds[b + 5]);
+        for (int ix = x0; ix <= x1; ix++) {
+            for (int iy = y0; iy <= y1; iy++) {
+                for (int iz = z0; iz <= z1; iz++) {
+                    removeEntry(ix, iy, iz, item);
+                }
+            }
+        }
+        Arrays.fill(bounds, b, b + 6, Double.NaN);
+        numOfRemovedItems++;
+        return true;
+    }
+
+    public Box getBounds(int item) {
+        if (!contains(item)) {
+            throw new IndexOutOfBoundsException("Invalid item: " + item);
+        }
+        int b = 6 * item;
+        return new Box(Vec3.of(bounds[b], bounds[b + 1], bounds[b + 2]), Vec3.of(bounds[b + 3], bounds[b + 4], bounds[b + 5]));
+    }
+
+    /**
+     * Visits the items overlapping the box, touching items included
+     */
+    public void forEachInBox(Box box, IntConsumer consumer) {
+        forEachInBox(box.min().x(), box.min().y(), box.min().z(), box.max().x(), box.max().y(), box.max().z(), consumer);
+    }
+
+    public void forEachInBox(double minX, double minY, double minZ, double maxX, double maxY, double maxZ,
+                             IntConsumer consumer) {
+        query(minX, minY, minZ, maxX, maxY, maxZ, 0, 0, 0, -1, consumer);
+    }
+
+    /**
+     * Visits the items within the distance from the point, the distance of a box is measured to its nearest point
+     */
+    public void forEachInRadius(Vec3 point, double radius, IntConsumer consumer) {
+        forEachInRadius(point.x(), point.y(), point.z(), radius, consumer);
+    }
+
+    public void forEachInRadius(double x, double y, double z, double radius, IntConsumer consumer) {
+        if (radius < 0) {
+            return;
+        }
+        query(x - radius, y - radius, z - radius, x + radius, y + radius, z + radius, x, y, z, radius * radius, consumer);
+    }
+
+    /**
+     * Visits the items overlapping the box and, if the squared radius is not negative, within the radius from the point
+     */
+    private void query(double minX, double minY, double minZ, double maxX, double maxY, double maxZ,
+                       double x, double y, double z, double radius2, IntConsumer consumer) {
+        int qx = cell(minX), qy = cell(minY), qz = cell(minZ);
+        int x0 = Math.max(qx, minCellX), y0 = Math.max(qy, minCellY), z0 = Math.max(qz, minCellZ);
+        int x1 = Math.min(cell(maxX), maxCellX), y1 = Math.min(cell(maxY), maxCellY), z1 = Math.min(cell(maxZ), maxCellZ);
+        for (int ix = x0; ix <= x1; ix++) {
+            for (int iy = y0; iy <= y1; iy++) {
+                for (int iz = z0; iz <= z1; iz++) {
+                    int slot = findSlot(key(ix, iy, iz));
+                    if (cellKeys[slot] == EMPTY_KEY) {
+                        continue;
+                    }
+                    for (int e = cellHeads[slot]; e != NONE; e = entryNext[e]) {
+                        int item = entryItem[e];
+                        int b = 6 * item;
+                        if (bounds[b] <= maxX && bounds[b + 3] >= minX
+                                && bounds[b + 1] <= maxY && bounds[b + 4] >= minY
+                                && bounds[b + 2] <= maxZ && bounds[b + 5] >= minZ
+                                && isReferenceCell(b, ix, iy, iz, qx, qy, qz)
+                                && (radius2 < 0 || distanceSquared(b, x, y, z) <= radius2)) {
+                            consumer.accept(item);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return nearest item to the point, -1 for an empty grid
+     */
+    public int nearest(Vec3 point) {
+        int[] items = new int[1];
+        return nearest(point.x(), point.y(), point.z(), 1, Double.POSITIVE_INFINITY, items, new double[1]) == 0 ? -1 : items[0];
+    }
+
+    /**
+     * Finds the k nearest items by searching shells of cells around the point until no unvisited cell can contain
+     * a nearer item. Ties are broken arbitrarily.
+     *
+     * @param items receives the items, nearest first, it must have at least k elements
+     * @param distances receives the distances of the items, it must have at least k elements
+     * @return number of items found, less than k if the grid has fewer items within the max distance
+     */
+    public int nearest(double x, double y, double z, int k, double maxDistance, int[] items, double[] distances) {
+        if (k <= 0 || size() == 0) {
+            return 0;
+        }
+        int cx = cell(x), cy = cell(y), cz = cell(z);
+        int maxShell = Math.max(Math.max(
+                        Math.max(cx - minCellX, maxCellX - cx),
+                        Math.max(cy - minCellY, maxCellY - cy)),
+                Math.max(cz - minCellZ, maxCellZ - cz));
+        double maxDistance2 = maxDistance * maxDistance;
+        int found = 0;
+        for (int r = 0; r <= maxShell; r++) {
+            int x0 = Math.max(cx - r, minCellX), x1 = Math.min(cx + r, maxCellX);
+            int y0 = Math.max(cy - r, minCellY), y1 = Math.min(cy + r, maxCellY);
+            for (int ix = x0; ix <= x1; ix++) {
+                for (int iy = y0; iy <= y1; iy++) {
+                    boolean inner = Math.abs(ix - cx) < r && Math.abs(iy - cy) < r;
+                    // only the two caps of the shell are new inside the inner columns
+                    int step = inner ? 2 * r : 1;
+                    for (int iz = cz - r; iz <= cz + r; iz += step) {
+                        if (iz < minCellZ || maxCellZ < iz) {
+                            continue;
+                        }
+                        found = collectNearest(ix, iy, iz, cx, cy, cz, x, y, z, k, maxDistance2, found, items, distances);
+                    }
+                }
+            }
+            // items in the next shells are at least r cells away, the candidate distances are still squared
+            double reached = r * cellSize;
+            if (reached > maxDistance || found == k && distances[k - 1] <= reached * reached) {
+                break;
+            }
+        }
+        for (int i = 0; i < found; i++) {
+            distances[i] = Math.sqrt(distances[i]);
+        }
+        return found;
+    }
+
+    /**
+     * Adds the items of a cell to the sorted candidates, the distances are squared meanwhile
+     */
+    private int collectNearest(int ix, int iy, int iz, int cx, int cy, int cz, double x, double y, double z,
+                               int k, double maxDistance2, int found, int[] items, double[] distances) {
+        int slot = findSlot(key(ix, iy, iz));
+        if (cellKeys[slot] == EMPTY_KEY) {
+            return found;
+        }
+        for (int e = cellHeads[slot]; e != NONE; e = entryNext[e]) {
+            int item = entryItem[e];
+            int b = 6 * item;
+            if (!isReferenceCell(b, ix, iy, iz, cx, cy, cz)) {
+                continue;
+            }
+            double d2 = distanceSquared(b, x, y, z);
+            if (d2 > maxDistance2 || found == k && d2 >= distances[k - 1]) {
+                continue;
+            }
+            int i = found < k ? found++ : k - 1;
+            for (; i > 0 && distances[i - 1] > d2; i--) {
+                items[i] = items[i - 1];
+                distances[i] = distances[i - 1];
+            }
+            items[i] = item;
+            distances[i] = d2;
+        }
+        return found;
+    }
+
+    /**
+     * An item is reported from one of its cells only: the one nearest to the reference cell of the query
+     */
+    private boolean isReferenceCell(int b, int ix, int iy, int iz, int refX, int refY, int refZ) {
+        return ix == clamp(refX, cell(bounds[b]), cell(bounds[b + 3]))
+                && iy == clamp(refY, cell(bounds[b + 1]), cell(bounds[b + 4]))
+                && iz == clamp(refZ, cell(bounds[b + 2]), cell(bounds[b + 5]));
+    }
+
+    private double distanceSquared(int b, double x, double y, double z) {
+        double dx = Math.max(Math.max(bounds[b] - x, x - bounds[b + 3]), 0);
+        double dy = Math.max(Math.max(bounds[b + 1] - y, y - bounds[b + 4]), 0);
+        double dz = Math.max(Math.max(bounds[b + 2] - z, z - bounds[b + 5]), 0);
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private int cell(double v) {
+        double c = Math.floor(v * invCellSize);
+        return (int) Math.max(-CELL_RANGE, Math.min(CELL_RANGE - 1, c));
+    }
+
+    private static int clamp(int v, int min, int max) {
+        return Math.max(min, Math.min(max, v));
+    }
+
+    private static long key(int ix, int iy, int iz) {
+        return (long) (ix + CELL_RANGE) << 42 | (long) (iy + CELL_RANGE) << 21 | (iz + CELL_RANGE);
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        return (int) (h ^ (h >>> 33));
+    }
+
+    /**
+     * @return slot of the cell, or the empty slot where it should be inserted
+     */
+    private int findSlot(long key) {
+        int slot = hash(key) & mask;
+        long k;
+        while ((k = cellKeys[slot]) != EMPTY_KEY && k != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void addEntry(int ix, int iy, int iz, int item) {
+        long key = key(ix, iy, iz);
+        int slot = findSlot(key);
+        if (cellKeys[slot] == EMPTY_KEY) {
+            cellKeys[slot] = key;
+            cellHeads[slot] = NONE;
+            if (++numOfCells * 2 > cellKeys.length) {
+                rehash();
+                slot = findSlot(key);
+            }
+        }
+        int entry = allocateEntry();
+        entryItem[entry] = item;
+        entryNext[entry] = cellHeads[slot];
+        cellHeads[slot] = entry;
+    }
+
+    /**
+     * Unlinks the entry of the item, an emptied cell is kept in the table
+     */
+    private void removeEntry(int ix, int iy, int iz, int item) {
+        int slot = findSlot(key(ix, iy, iz));
+        int prev = NONE;
+        for (int e = cellHeads[slot]; e != NONE; prev = e, e = entryNext[e]) {
+            if (entryItem[e] != item) {
+                continue;
+            }
+            if (prev == NONE) {
+                cellHeads[slot] = entryNext[e];
+            } else {
+                entryNext[prev] = entryNext[e];
+            }
+            entryNext[e] = freeEntry;
+            freeEntry = e;
+            return;
+        }
+    }
+
+    private int allocateEntry() {
+        if (freeEntry != NONE) {
+            int entry = freeEntry;
+            freeEntry = entryNext[entry];
+            return entry;
+        }
+        if (numOfEntries == entryItem.length) {
+            entryItem = Arrays.copyOf(entryItem, 2 * numOfEntries);
+            entryNext = Arrays.copyOf(entryNext, 2 * numOfEntries);
+        }
+        return numOfEntries++;
+    }
+
+    private void ensureItemCapacity(int capacity) {
+        if (bounds.length < 6 * capacity) {
+            bounds = Arrays.copyOf(bounds, Math.max(6 * capacity, 2 * bounds.length));
+        }
+    }
+
+    private void rehash() {
+        long[] oldKeys = cellKeys;
+        int[] oldHeads = cellHeads;
+        cellKeys = new long[oldKeys.length * 2];
+        cellHeads = new int[oldKeys.length * 2];
+        mask = cellKeys.length - 1;
+        Arrays.fill(cellKeys, EMPTY_KEY);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == EMPTY_KEY) {
+                continue;
+            }
+            int slot = findSlot(oldKeys[i]);
+            cellKeys[slot] = oldKeys[i];
+            cellHeads[slot] = oldHeads[i];
+        }
+    }
+}
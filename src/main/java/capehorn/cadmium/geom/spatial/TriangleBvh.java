@@ -0,0 +1,718 @@
+package capehorn.cadmium.geom.spatial;
+
+import capehorn.cadmium.core.Vec3;
+import capehorn.cadmium.geom.Box;
+import capehorn.cadmium.geom.mesh.TriangleMesh;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Bounding volume hierarchy over the triangles of a {@link TriangleMesh}, built with the binned surface area heuristic
+ * over the triangle centroids.
+ * <p>
+ * Nodes are stored in flat arrays: 6 doubles of bounds (min x, y, z, max x, y, z) and 2 ints per node.
+ * An inner node holds the indices of its children, a leaf holds its first triangle and the negated triangle count.
+ * The coordinates of the triangles are copied in leaf order, so a query does not touch the mesh and
+ * the triangles of a leaf are adjacent in memory. Results refer to the triangle indices of the mesh.
+ * <p>
+ * The build runs on the common fork-join pool, subtrees are built in parallel.
+ * The tree is immutable, queries can run from several threads. It is not updated when the mesh changes.
+ */
+public final class TriangleBvh {
+    private static final int NUM_OF_BINS = 16;
+    /**
+     * Ranges with at most this many triangles may become leaves, larger ranges are always split
+     */
+    private static final int MAX_LEAF_SIZE = 8;
+    /**
+     * Cost of visiting a node relative to intersecting a triangle
+     */
+    private static final double TRAVERSAL_COST = 1;
+    /**
+     * Number of triangles below which a subtree is built sequentially
+     */
+    private static final int PARALLEL_GRAIN = 1 << 12;
+
+    private final double[] nodeBounds;
+    private final int[] nodes;
+    private final int numOfNodes;
+    /**
+     * Coordinates of the triangles in leaf order, 9 per triangle
+     */
+    private final double[] triangles;
+    /**
+     * Mesh index of the triangles in leaf order
+     */
+    private final int[] triangleIds;
+
+    /**
+     * @param triangleIdx index of the triangle in the mesh
+     * @param t distance along the ray in units of the direction
+     * @param u barycentric coordinate of the second point
+     * @param v barycentric coordinate of the third point
+     */
+    public record RayHit(int triangleIdx, double t, double u, double v) {
+    }
+
+    /**
+     * @param triangleIdx index of the triangle in the mesh
+     * @param point closest point of the triangle
+     * @param distance distance of the query point and the closest point
+     */
+    public record ClosestPoint(int triangleIdx, Vec3 point, double distance) {
+    }
+
+    private TriangleBvh(double[] nodeBounds, int[] nodes, int numOfNodes, double[] triangles, int[] triangleIds) {
+        this.nodeBounds = nodeBounds;
+        this.nodes = nodes;
+        this.numOfNodes = numOfNodes;
+        this.triangles = triangles;
+        this.triangleIds = triangleIds;
+    }
+
+    public static TriangleBvh build(TriangleMesh mesh) {
+        int n = mesh.getNumOfTriangles();
+        double[] coords = new double[9 * n];
+        double[] centroids = new double[3 * n];
+        mesh.parallelForEachTriangle((idx, p1x, p1y, p1z, p2x, p2y, p2z, p3x, p3y, p3z, nx, ny, nz) -> {
+            int i = 9 * idx;
+            coords[i] = p1x;
+            coords[i + 1] = p1y;
+            coords[i + 2] = p1z;
+            coords[i + 3] = p2x;
+            coords[i + 4] = p2y;
+            coords[i + 5] = p2z;
+            coords[i + 6] = p3x;
+            coords[i + 7] = p3y;
+            coords[i + 8] = p3z;
+            int c = 3 * idx;
+            centroids[c] = (p1x + p2x + p3x) / 3;
+            centroids[c + 1] = (p1y + p2y + p3y) / 3;
+            centroids[c + 2] = (p1z + p2z + p3z) / 3;
+        });
+        if (n == 0) {
+            return new TriangleBvh(new double[0], new int[0], 0, coords, new int[0]);
+        }
+        var builder = new Builder(coords, centroids, n);
+        ForkJoinPool.commonPool().invoke(builder.new BuildTask(0, 0, n));
+
+        int[] order = builder.order;
+        double[] triangles = new double[9 * n];
+        IntStream.range(0, n).parallel().forEach(i -> System.arraycopy(coords, 9 * order[i], triangles, 9 * i, 9));
+        int numOfNodes = builder.nodeCounter.get();
+        return new TriangleBvh(
+                Arrays.copyOf(builder.nodeBounds, 6 * numOfNodes),
+                Arrays.copyOf(builder.nodes, 2 * numOfNodes),
+                numOfNodes, triangles, order);
+    }
+
+    public int getNumOfNodes() {
+        return numOfNodes;
+    }
+
+    public int getNumOfTriangles() {
+        return triangleIds.length;
+    }
+
+    /**
+     * @return bounds of all triangles, {@link Box#EMPTY} for an empty tree
+     */
+    public Box bounds() {
+        if (numOfNodes == 0) {
+            return Box.EMPTY;
+        }
+        return new Box(Vec3.of(nodeBounds[0], nodeBounds[1], nodeBounds[2]),
+                Vec3.of(nodeBounds[3], nodeBounds[4], nodeBounds[5]));
+    }
+
+    /**
+     * @return the nearest hit of the ray with both sides of the triangles, or null
+     */
+    public RayHit intersectRay(Vec3 origin, Vec3 direction) {
+        return intersectRay(origin.x(), origin.y(), origin.z(), direction.x(), direction.y(), direction.z(),
+                Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * @param tMax hits farther than tMax (in units of the direction) are ignored
+     * @return the nearest hit with 0 &lt;= t &lt;= tMax, or null
+     */
+    public RayHit intersectRay(double ox, double oy, double oz, double dx, double dy, double dz, double tMax) {
+        if (numOfNodes == 0) {
+            return null;
+        }
+        double idx = 1 / dx, idy = 1 / dy, idz = 1 / dz;
+        double bestT = tMax, bestU = 0, bestV = 0;
+        int bestTriangle = -1;
+        int[] stack = new int[64];
+        int top = 0;
+        if (slab(0, ox, oy, oz, idx, idy, idz, bestT) < Double.POSITIVE_INFINITY) {
+            stack[top++] = 0;
+        }
+        while (top > 0) {
+            int node = stack[--top];
+            int a = nodes[2 * node];
+            int b = nodes[2 * node + 1];
+            if (b < 0) {
+                for (int i = a, end = a - b; i < end; i++) {
+                    int base = 9 * i;
+                    double p1x = triangles[base], p1y = triangles[base + 1], p1z = triangles[base + 2];
+                    double e1x = triangles[base + 3] - p1x, e1y = triangles[base + 4] - p1y, e1z = triangles[base + 5] - p1z;
+                    double e2x = triangles[base + 6] - p1x, e2y = triangles[base + 7] - p1y, e2z = triangles[base + 8] - p1z;
+                    // Möller–Trumbore
+                    double px = dy * e2z - dz * e2y, py = dz * e2x - dx * e2z, pz = dx * e2y - dy * e2x;
+                    double det = e1x * px + e1y * py + e1z * pz;
+                    if (det == 0) {
+                        continue;
+                    }
+                    double inv = 1 / det;
+                    double tx = ox - p1x, ty = oy - p1y, tz = oz - p1z;
+                    double u = (tx * px + ty * py + tz * pz) * inv;
+                    if (u < 0 || u > 1) {
+                        continue;
+                    }
+                    double qx = ty * e1z - tz * e1y, qy = tz * e1x - tx * e1z, qz = tx * e1y - ty * e1x;
+                    double v = (dx * qx + dy * qy + dz * qz) * inv;
+                    if (v < 0 || u + v > 1) {
+                        continue;
+                    }
+                    double t = (e2x * qx + e2y * qy + e2z * qz) * inv;
+                    if (0 <= t && t <= bestT) {
+                        bestT = t;
+                        bestU = u;
+                        bestV = v;
+                        bestTriangle = i;
+                    }
+                }
+                continue;
+            }
+            double ta = slab(a, ox, oy, oz, idx, idy, idz, bestT);
+            double tb = slab(b, ox, oy, oz, idx, idy, idz, bestT);
+            if (top + 2 > stack.length) {
+                stack = Arrays.copyOf(stack, 2 * stack.length);
+            }
+            // the nearer child is visited first, it may shorten the ray for the other one
+            if (ta <= tb) {
+                if (tb < Double.POSITIVE_INFINITY) {
+                    stack[top++] = b;
+                }
+                if (ta < Double.POSITIVE_INFINITY) {
+                    stack[top++] = a;
+                }
+            } else {
+                if (ta < Double.POSITIVE_INFINITY) {
+                    stack[top++] = a;
+                }
+                stack[top++] = b;
+            }
+        }
+        return bestTriangle < 0 ? null : new RayHit(triangleIds[bestTriangle], bestT, bestU, bestV);
+    }
+
+    /**
+     * Traces the packet through the tree: a node is visited when any ray of the packet enters its bounds
+     * before its current hit, the triangles of a leaf are tested against the whole packet.
+     * Hits nearer than the current hits of the packet are written into it, nothing is allocated per hit.
+     */
+    public void intersect(RayPacket rays) {
+        if (numOfNodes == 0 || rays.size() == 0) {
+            return;
+        }
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            if (!isEnteredByAny(node, rays)) {
+                continue;
+            }
+            int a = nodes[2 * node];
+            int b = nodes[2 * node + 1];
+            if (b < 0) {
+                for (int i = a, end = a - b; i < end; i++) {
+                    int base = 9 * i;
+                    double p1x = triangles[base], p1y = triangles[base + 1], p1z = triangles[base + 2];
+                    RayKernels.intersect(p1x, p1y, p1z,
+                            triangles[base + 3] - p1x, triangles[base + 4] - p1y, triangles[base + 5] - p1z,
+                            triangles[base + 6] - p1x, triangles[base + 7] - p1y, triangles[base + 8] - p1z,
+                            triangleIds[i], rays);
+                }
+                continue;
+            }
+            if (top + 2 > stack.length) {
+                stack = Arrays.copyOf(stack, 2 * stack.length);
+            }
+            // the child nearer to the first ray is visited first, it may shorten the rays for the other one
+            if (slab(a, rays.ox[0], rays.oy[0], rays.oz[0], rays.invDx[0], rays.invDy[0], rays.invDz[0], rays.t[0])
+                    <= slab(b, rays.ox[0], rays.oy[0], rays.oz[0], rays.invDx[0], rays.invDy[0], rays.invDz[0], rays.t[0])) {
+                stack[top++] = b;
+                stack[top++] = a;
+            } else {
+                stack[top++] = a;
+                stack[top++] = b;
+            }
+        }
+    }
+
+    private boolean isEnteredByAny(int node, RayPacket rays) {
+        for (int i = 0, n = rays.size(); i < n; i++) {
+            if (slab(node, rays.ox[i], rays.oy[i], rays.oz[i], rays.invDx[i], rays.invDy[i], rays.invDz[i], rays.t[i])
+                    < Double.POSITIVE_INFINITY) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return entry distance of the ray into the bounds of the node, +infinity if it misses or enters after tMax
+     */
+    private double slab(int node, double ox, double oy, double oz, double idx, double idy, double idz, double tMax) {
+        int i = 6 * node;
+        double t1 = (nodeBounds[i] - ox) * idx, t2 = (nodeBounds[i + 3] - ox) * idx;
+        double tNear = Math.min(t1, t2), tFar = Math.max(t1, t2);
+        t1 = (nodeBounds[i + 1] - oy) * idy;
+        t2 = (nodeBounds[i + 4] - oy) * idy;
+        tNear = Math.max(tNear, Math.min(t1, t2));
+        tFar = Math.min(tFar, Math.max(t1, t2));
+        t1 = (nodeBounds[i + 2] - oz) * idz;
+        t2 = (nodeBounds[i + 5] - oz) * idz;
+        tNear = Math.max(tNear, Math.min(t1, t2));
+        tFar = Math.min(tFar, Math.max(t1, t2));
+        // a NaN (origin on a slab with zero direction) keeps the node, the test is only conservative
+        if (tNear > tFar || tFar < 0 || tNear > tMax) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return tNear > 0 ? tNear : 0;
+    }
+
+    /**
+     * Visits the triangles intersecting the box (triangle and box overlap exactly, not only their bounds),
+     * in no particular order
+     */
+    public void forEachOverlapping(Box box, IntConsumer consumer) {
+        if (numOfNodes == 0) {
+            return;
+        }
+        double minX = box.min().x(), minY = box.min().y(), minZ = box.min().z();
+        double maxX = box.max().x(), maxY = box.max().y(), maxZ = box.max().z();
+        double cx = (minX + maxX) / 2, cy = (minY + maxY) / 2, cz = (minZ + maxZ) / 2;
+        double hx = (maxX - minX) / 2, hy = (maxY - minY) / 2, hz = (maxZ - minZ) / 2;
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            int i = 6 * node;
+            if (nodeBounds[i] > maxX || nodeBounds[i + 3] < minX
+                    || nodeBounds[i + 1] > maxY || nodeBounds[i + 4] < minY
+                    || nodeBounds[i + 2] > maxZ || nodeBounds[i + 5] < minZ) {
+                continue;
+            }
+            int a = nodes[2 * node];
+            int b = nodes[2 * node + 1];
+            if (b < 0) {
+                for (int t = a, end = a - b; t < end; t++) {
+                    if (overlaps(triangles, 9 * t, cx, cy, cz, hx, hy, hz)) {
+                        consumer.accept(triangleIds[t]);
+                    }
+                }
+                continue;
+            }
+            if (top + 2 > stack.length) {
+                stack = Arrays.copyOf(stack, 2 * stack.length);
+            }
+            stack[top++] = a;
+            stack[top++] = b;
+        }
+    }
+
+    /**
+     * @return true if any triangle intersects the box
+     */
+    public boolean overlaps(Box box) {
+        boolean[] found = new boolean[1];
+        forEachOverlapping(box, t -> found[0] = true);
+        return found[0];
+    }
+
+    /**
+     * Separating axis test of a triangle and a box given by its center and half size (Akenine-Möller)
+     */
+    static boolean overlaps(double[] tris, int base, double cx, double cy, double cz, double hx, double hy, double hz) {
+        double v0x = tris[base] - cx, v0y = tris[base + 1] - cy, v0z = tris[base + 2] - cz;
+        double v1x = tris[base + 3] - cx, v1y = tris[base + 4] - cy, v1z = tris[base + 5] - cz;
+        double v2x = tris[base + 6] - cx, v2y = tris[base + 7] - cy, v2z = tris[base + 8] - cz;
+        // box face normals
+        if (Math.min(v0x, Math.min(v1x, v2x)) > hx || Math.max(v0x, Math.max(v1x, v2x)) < -hx
+                || Math.min(v0y, Math.min(v1y, v2y)) > hy || Math.max(v0y, Math.max(v1y, v2y)) < -hy
+                || Math.min(v0z, Math.min(v1z, v2z)) > hz || Math.max(v0z, Math.max(v1z, v2z)) < -hz) {
+            return false;
+        }
+        double e0x = v1x - v0x, e0y = v1y - v0y, e0z = v1z - v0z;
+        double e1x = v2x - v1x, e1y = v2y - v1y, e1z = v2z - v1z;
+        double e2x = v0x - v2x, e2y = v0y - v2y, e2z = v0z - v2z;
+        // triangle plane
+        double nx = e0y * e1z - e0z * e1y, ny = e0z * e1x - e0x * e1z, nz = e0x * e1y - e0y * e1x;
+        if (separates(nx, ny, nz, v0x, v0y, v0z, v0x, v0y, v0z, v0x, v0y, v0z, hx, hy, hz)) {
+            return false;
+        }
+        // cross products of the box axes and the triangle edges
+        return !(separates(0, -e0z, e0y, v0x, v0y, v0z, v1x, v1y, v1z, v2x, v2y, v2z, hx, hy, hz)
+                || separates(0, -e1z, e1y, v0x, v0y, v0z, v1x, v1y, v1z, v2x, v2y, v2z, hx, hy, hz)
+                || separates(0, -e2z, e2y, v0x, v0y, v0z, v1x, v1y, v1z, v2x, v2y, v2z, hx, hy, hz)
+                || separates(e0z, 0, -e0x, v0x, v0y, v0z, v1x, v1y, v1z, v2x, v2y, v2z, hx, hy, hz)
+                || separates(e1z, 0, -e1x, v0x, v0y, v0z, v1x, v1y, v1z, v2x, v2y, v2z, hx, hy, hz)
+                || separates(e2z, 0, -e2x, v0x, v0y, v0z, v1x, v1y, v1z, v2x, v2y, v2z, hx, hy, hz)
+                || separates(-e0y, e0x, 0, v0x, v0y, v0z, v1x, v1y, v1z, v2x, v2y, v2z, hx, hy, hz)
+                || separates(-e1y, e1x, 0, v0x, v0y, v0z, v1x, v1y, v1z, v2x, v2y, v2z, hx, hy, hz)
+                || separates(-e2y, e2x, 0, v0x, v0y, v0z, v1x, v1y, v1z, v2x, v2y, v2z, hx, hy, hz));
+    }
+
+    private static boolean separates(double ax, double ay, double az,
+                                     double v0x, double v0y, double v0z,
+                                     double v1x, double v1y, double v1z,
+                                     double v2x, double v2y, double v2z,
+                                     double hx, double hy, double hz) {
+        double p0 = ax * v0x + ay * v0y + az * v0z;
+        double p1 = ax * v1x + ay * v1y + az * v1z;
+        double p2 = ax * v2x + ay * v2y + az * v2z;
+        double r = hx * Math.abs(ax) + hy * Math.abs(ay) + hz * Math.abs(az);
+        return Math.min(p0, Math.min(p1, p2)) > r || Math.max(p0, Math.max(p1, p2)) < -r;
+    }
+
+    /**
+     * @return closest point of the triangles to p, or null for an empty tree
+     */
+    public ClosestPoint closestPoint(Vec3 p) {
+        return closestPoint(p.x(), p.y(), p.z(), Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * @param maxDistance triangles farther than this are ignored
+     * @return closest point within maxDistance, or null
+     */
+    public ClosestPoint closestPoint(double px, double py, double pz, double maxDistance) {
+        if (numOfNodes == 0) {
+            return null;
+        }
+        double bestDistSq = maxDistance * maxDistance;
+        int bestTriangle = -1;
+        double[] closest = new double[3];
+        double[] best = new double[3];
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            if (boxDistanceSquared(node, px, py, pz) > bestDistSq) {
+                continue;
+            }
+            int a = nodes[2 * node];
+            int b = nodes[2 * node + 1];
+            if (b < 0) {
+                for (int t = a, end = a - b; t < end; t++) {
+                    closestPointOnTriangle(triangles, 9 * t, px, py, pz, closest);
+                    double dx = closest[0] - px, dy = closest[1] - py, dz = closest[2] - pz;
+                    double distSq = dx * dx + dy * dy + dz * dz;
+                    if (distSq <= bestDistSq) {
+                        bestDistSq = distSq;
+                        bestTriangle = t;
+                        System.arraycopy(closest, 0, best, 0, 3);
+                    }
+                }
+                continue;
+            }
+            if (top + 2 > stack.length) {
+                stack = Arrays.copyOf(stack, 2 * stack.length);
+            }
+            // nearer child on top of the stack
+            if (boxDistanceSquared(a, px, py, pz) <= boxDistanceSquared(b, px, py, pz)) {
+                stack[top++] = b;
+                stack[top++] = a;
+            } else {
+                stack[top++] = a;
+                stack[top++] = b;
+            }
+        }
+        if (bestTriangle < 0) {
+            return null;
+        }
+        return new ClosestPoint(triangleIds[bestTriangle], Vec3.of(best[0], best[1], best[2]), Math.sqrt(bestDistSq));
+    }
+
+    private double boxDistanceSquared(int node, double px, double py, double pz) {
+        int i = 6 * node;
+        double dx = Math.max(0, Math.max(nodeBounds[i] - px, px - nodeBounds[i + 3]));
+        double dy = Math.max(0, Math.max(nodeBounds[i + 1] - py, py - nodeBounds[i + 4]));
+        double dz = Math.max(0, Math.max(nodeBounds[i + 2] - pz, pz - nodeBounds[i + 5]));
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * Closest point of a triangle by the Voronoi regions of its vertices and edges (Ericson)
+     */
+    static void closestPointOnTriangle(double[] tris, int base, double px, double py, double pz, double[] dst) {
+        double ax = tris[base], ay = tris[base + 1], az = tris[base + 2];
+        double bx = tris[base + 3], by = tris[base + 4], bz = tris[base + 5];
+        double cx = tris[base + 6], cy = tris[base + 7], cz = tris[base + 8];
+        double abx = bx - ax, aby = by - ay, abz = bz - az;
+        double acx = cx - ax, acy = cy - ay, acz = cz - az;
+        double apx = px - ax, apy = py - ay, apz = pz - az;
+        double d1 = abx * apx + aby * apy + abz * apz;
+        double d2 = acx * apx + acy * apy + acz * apz;
+        if (d1 <= 0 && d2 <= 0) {
+            set(dst, ax, ay, az);
+            return;
+        }
+        double bpx = px - bx, bpy = py - by, bpz = pz - bz;
+        double d3 = abx * bpx + aby * bpy + abz * bpz;
+        double d4 = acx * bpx + acy * bpy + acz * bpz;
+        if (d3 >= 0 && d4 <= d3) {
+            set(dst, bx, by, bz);
+            return;
+        }
+        double vc = d1 * d4 - d3 * d2;
+        if (vc <= 0 && d1 >= 0 && d3 <= 0) {
+            double v = d1 / (d1 - d3);
+            set(dst, ax + v * abx, ay + v * aby, az + v * abz);
+            return;
+        }
+        double cpx = px - cx, cpy = py - cy, cpz = pz - cz;
+        double d5 = abx * cpx + aby * cpy + abz * cpz;
+        double d6 = acx * cpx + acy * cpy + acz * cpz;
+        if (d6 >= 0 && d5 <= d6) {
+            set(dst, cx, cy, cz);
+            return;
+        }
+        double vb = d5 * d2 - d1 * d6;
+        if (vb <= 0 && d2 >= 0 && d6 <= 0) {
+            double w = d2 / (d2 - d6);
+            set(dst, ax + w * acx, ay + w * acy, az + w * acz);
+            return;
+        }
+        double va = d3 * d6 - d5 * d4;
+        if (va <= 0 && (d4 - d3) >= 0 && (d5 - d6) >= 0) {
+            double w = (d4 - d3) / ((d4 - d3) + (d5 - d6));
+            set(dst, bx + w * (cx - bx), by + w * (cy - by), bz + w * (cz - bz));
+            return;
+        }
+        double denom = 1 / (va + vb + vc);
+        double v = vb * denom;
+        double w = vc * denom;
+        set(dst, ax + abx * v + acx * w, ay + aby * v + acy * w, az + abz * v + acz * w);
+    }
+
+    private static void set(double[] dst, double x, double y, double z) {
+        dst[0] = x;
+        dst[1] = y;
+        dst[2] = z;
+    }
+
+    /**
+     * Builds the nodes top-down. Node indices are reserved atomically, so subtrees can be built concurrently.
+     */
+    private static final class Builder {
+        private final double[] coords;
+        private final double[] centroids;
+        private final int[] order;
+        private final double[] nodeBounds;
+        private final int[] nodes;
+        private final AtomicInteger nodeCounter = new AtomicInteger(1);
+
+        Builder(double[] coords, double[] centroids, int numOfTriangles) {
+            this.coords = coords;
+            this.centroids = centroids;
+            this.order = IntStream.range(0, numOfTriangles).toArray();
+            // a binary tree with n leaves has 2n - 1 nodes, every leaf has at least one triangle
+            int maxNodes = 2 * numOfTriangles - 1;
+            this.nodeBounds = new double[6 * maxNodes];
+            this.nodes = new int[2 * maxNodes];
+        }
+
+        final class BuildTask extends RecursiveAction {
+            private final int node;
+            private final int from;
+            private final int to;
+
+            BuildTask(int node, int from, int to) {
+                this.node = node;
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            protected void compute() {
+                build(node, from, to);
+            }
+        }
+
+        private void build(int node, int from, int to) {
+            double[] centroidBounds = bounds(node, from, to);
+            int mid = split(node, from, to, centroidBounds);
+            if (mid < 0) {
+                nodes[2 * node] = from;
+                nodes[2 * node + 1] = -(to - from);
+                return;
+            }
+            int left = nodeCounter.getAndAdd(2);
+            int right = left + 1;
+            nodes[2 * node] = left;
+            nodes[2 * node + 1] = right;
+            if (to - from > PARALLEL_GRAIN) {
+                RecursiveAction.invokeAll(new BuildTask(left, from, mid), new BuildTask(right, mid, to));
+            } else {
+                build(left, from, mid);
+                build(right, mid, to);
+            }
+        }
+
+        /**
+         * Sets the bounds of the node
+         *
+         * @return bounds of the centroids in the range
+         */
+        private double[] bounds(int node, int from, int to) {
+            double[] b = emptyBounds();
+            double[] cb = emptyBounds();
+            for (int i = from; i < to; i++) {
+                int t = order[i];
+                for (int v = 0; v < 3; v++) {
+                    extend(b, 0, coords, 9 * t + 3 * v);
+                }
+                extend(cb, 0, centroids, 3 * t);
+            }
+            System.arraycopy(b, 0, nodeBounds, 6 * node, 6);
+            return cb;
+        }
+
+        /**
+         * Binned SAH over the 3 axes.
+         *
+         * @return index where the range is partitioned, or -1 if the range should be a leaf
+         */
+        private int split(int node, int from, int to, double[] centroidBounds) {
+            int count = to - from;
+            if (count == 1) {
+                return -1;
+            }
+            double parentArea = area(nodeBounds, 6 * node);
+            double bestCost = Double.POSITIVE_INFINITY;
+            int bestAxis = -1;
+            int bestBin = -1;
+            int[] binCounts = new int[NUM_OF_BINS];
+            double[] binBounds = new double[6 * NUM_OF_BINS];
+            double[] rightAreas = new double[NUM_OF_BINS];
+            double[] acc = new double[6];
+            for (int axis = 0; axis < 3; axis++) {
+                double lo = centroidBounds[axis];
+                double extent = centroidBounds[axis + 3] - lo;
+                if (!(extent > 0)) {
+                    continue;
+                }
+                double scale = NUM_OF_BINS / extent;
+                Arrays.fill(binCounts, 0);
+                for (int b = 0; b < NUM_OF_BINS; b++) {
+                    clear(binBounds, 6 * b);
+                }
+                for (int i = from; i < to; i++) {
+                    int t = order[i];
+                    int b = bin(centroids[3 * t + axis], lo, scale);
+                    binCounts[b]++;
+                    for (int v = 0; v < 3; v++) {
+                        extend(binBounds, 6 * b, coords, 9 * t + 3 * v);
+                    }
+                }
+                clear(acc, 0);
+                for (int b = NUM_OF_BINS - 1; b > 0; b--) {
+                    union(acc, binBounds, 6 * b);
+                    rightAreas[b] = area(acc, 0);
+                }
+                clear(acc, 0);
+                int leftCount = 0;
+                for (int b = 1; b < NUM_OF_BINS; b++) {
+                    union(acc, binBounds, 6 * (b - 1));
+                    leftCount += binCounts[b - 1];
+                    int rightCount = count - leftCount;
+                    if (leftCount == 0 || rightCount == 0) {
+                        continue;
+                    }
+                    double cost = TRAVERSAL_COST + (area(acc, 0) * leftCount + rightAreas[b] * rightCount) / parentArea;
+                    if (cost < bestCost) {
+                        bestCost = cost;
+                        bestAxis = axis;
+                        bestBin = b;
+                    }
+                }
+            }
+            if (count <= MAX_LEAF_SIZE && !(bestCost < count)) {
+                return -1;
+            }
+            if (bestAxis < 0) {
+                // centroids coincide, any partition is as good
+                return from + count / 2;
+            }
+            double lo = centroidBounds[bestAxis];
+            double scale = NUM_OF_BINS / (centroidBounds[bestAxis + 3] - lo);
+            int i = from;
+            int j = to - 1;
+            while (i <= j) {
+                if (bin(centroids[3 * order[i] + bestAxis], lo, scale) < bestBin) {
+                    i++;
+                } else {
+                    int tmp = order[i];
+                    order[i] = order[j];
+                    order[j--] = tmp;
+                }
+            }
+            return i;
+        }
+
+        private static int bin(double centroid, double lo, double scale) {
+            return Math.min(NUM_OF_BINS - 1, (int) ((centroid - lo) * scale));
+        }
+
+        private static double[] emptyBounds() {
+            double[] b = new double[6];
+            clear(b, 0);
+            return b;
+        }
+
+        private static void clear(double[] b, int i) {
+            Arrays.fill(b, i, i + 3, Double.POSITIVE_INFINITY);
+            Arrays.fill(b, i + 3, i + 6, Double.NEGATIVE_INFINITY);
+        }
+
+        private static void extend(double[] b, int i, double[] p, int j) {
+            b[i] = Math.min(b[i], p[j]);
+            b[i + 1] = Math.min(b[i + 1], p[j + 1]);
+            b[i + 2] = Math.min(b[i + 2], p[j + 2]);
+            b[i + 3] = Math.max(b[i + 3], p[j]);
+            b[i + 4] = Math.max(b[i + 4], p[j + 1]);
+            b[i + 5] = Math.max(b[i + 5], p[j + 2]);
+        }
+
+        private static void union(double[] b, double[] other, int j) {
+            for (int k = 0; k < 3; k++) {
+                b[k] = Math.min(b[k], other[j + k]);
+                b[k + 3] = Math.max(b[k + 3], other[j + k + 3]);
+            }
+        }
+
+        /**
+         * @return half of the surface area, only ratios of areas are used
+         */
+        private static double area(double[] b, int i) {
+            double dx = b[i + 3] - b[i], dy = b[i + 4] - b[i + 1], dz = b[i + 5] - b[i + 2];
+            if (dx < 0) {
+                return 0;
+            }
+            return dx * dy + dy * dz + dz * dx;
+        }
+    }
+}
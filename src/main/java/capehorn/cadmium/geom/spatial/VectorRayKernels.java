@@ -0,0 +1,82 @@
+package capehorn.cadmium.geom.spatial;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API kernels, this class must be loaded only if the incubator module is present.
+ * One lane per ray, the triangle is broadcast.
+ */
+final class VectorRayKernels {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    /**
+     * Same number of lanes as {@link #SPECIES}, for the triangle indices
+     */
+    private static final VectorSpecies<Integer> INT_SPECIES =
+            VectorSpecies.of(int.class, VectorShape.forBitSize(SPECIES.length() * Integer.SIZE));
+
+    private VectorRayKernels() {
+    }
+
+    static boolean isSupported() {
+        return SPECIES.length() > 1;
+    }
+
+    /**
+     * @return number of rays processed, the remainder is left for the scalar loop
+     */
+    static int intersect(double p1x, double p1y, double p1z,
+                         double e1x, double e1y, double e1z,
+                         double e2x, double e2y, double e2z,
+                         int triangleIdx, RayPacket rays) {
+        int lanes = SPECIES.length();
+        int count = rays.size();
+        int bound = count - count % lanes;
+        var one = DoubleVector.broadcast(SPECIES, 1);
+        var zero = DoubleVector.zero(SPECIES);
+        var triangle = IntVector.broadcast(INT_SPECIES, triangleIdx);
+        for (int i = 0; i < bound; i += lanes) {
+            var dx = DoubleVector.fromArray(SPECIES, rays.dx, i);
+            var dy = DoubleVector.fromArray(SPECIES, rays.dy, i);
+            var dz = DoubleVector.fromArray(SPECIES, rays.dz, i);
+            var px = dy.mul(e2z).sub(dz.mul(e2y));
+            var py = dz.mul(e2x).sub(dx.mul(e2z));
+            var pz = dx.mul(e2y).sub(dy.mul(e2x));
+            var det = px.mul(e1x).add(py.mul(e1y)).add(pz.mul(e1z));
+            var mask = det.compare(VectorOperators.NE, 0);
+            if (!mask.anyTrue()) {
+                continue;
+            }
+            var inv = one.div(det);
+            var tx = DoubleVector.fromArray(SPECIES, rays.ox, i).sub(p1x);
+            var ty = DoubleVector.fromArray(SPECIES, rays.oy, i).sub(p1y);
+            var tz = DoubleVector.fromArray(SPECIES, rays.oz, i).sub(p1z);
+            var u = tx.mul(px).add(ty.mul(py)).add(tz.mul(pz)).mul(inv);
+            mask = mask.and(u.compare(VectorOperators.GE, zero)).and(u.compare(VectorOperators.LE, one));
+            if (!mask.anyTrue()) {
+                continue;
+            }
+            var qx = ty.mul(e1z).sub(tz.mul(e1y));
+            var qy = tz.mul(e1x).sub(tx.mul(e1z));
+            var qz = tx.mul(e1y).sub(ty.mul(e1x));
+            var v = dx.mul(qx).add(dy.mul(qy)).add(dz.mul(qz)).mul(inv);
+            var t = qx.mul(e2x).add(qy.mul(e2y)).add(qz.mul(e2z)).mul(inv);
+            var tBest = DoubleVector.fromArray(SPECIES, rays.t, i);
+            mask = mask.and(v.compare(VectorOperators.GE, zero))
+                    .and(u.add(v).compare(VectorOperators.LE, one))
+                    .and(t.compare(VectorOperators.GE, zero))
+                    .and(t.compare(VectorOperators.LE, tBest));
+            if (mask.anyTrue()) {
+                t.intoArray(rays.t, i, mask);
+                u.intoArray(rays.u, i, mask);
+                v.intoArray(rays.v, i, mask);
+                triangle.intoArray(rays.triangle, i, mask.cast(INT_SPECIES));
+            }
+        }
+        return bound;
+    }
+}
@@ -0,0 +1,474 @@
+package capehorn.cadmium.io;
+
+import capehorn.cadmium.format.gltf.GlbWriter;
+import capehorn.cadmium.format.gltf.dto.Accessor;
+import capehorn.cadmium.format.gltf.dto.Asset;
+import capehorn.cadmium.format.gltf.dto.Buffer;
+import capehorn.cadmium.format.gltf.dto.BufferView;
+import capehorn.cadmium.format.gltf.dto.Gltf;
+import capehorn.cadmium.format.gltf.dto.Mesh;
+import capehorn.cadmium.format.gltf.dto.MeshPrimitive;
+import capehorn.cadmium.format.gltf.dto.Node;
+import capehorn.cadmium.format.gltf.dto.Scene;
+import capehorn.cadmium.geom.mesh.LineMesh;
+import capehorn.cadmium.geom.mesh.TriangleMesh;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Collects meshes and writes them as binary glTF, every mesh is a node of the scene.
+ * <p>
+ * Vertices are written as interleaved float32 position and normal (byte stride 24), lines as float32 positions.
+ * Indices are uint16 when every vertex index fits, uint32 otherwise. Triangle soup is written as non-indexed geometry
+ * with the face normals, an indexed mesh with area weighted vertex normals. glTF requires unit normals,
+ * degenerate triangles and vertices without triangles get +z instead.
+ * The meshes are read when written, not when added.
+ */
+public class GeomToGlbFormat {
+    private static final String GENERATOR = "cadmium";
+    private static final int POSITION_SIZE = 12;
+    private static final int POSITION_NORMAL_SIZE = 24;
+
+    private final List<Part> parts = new ArrayList<>();
+
+    public void addTriangleMesh(TriangleMesh mesh) {
+        if (mesh.getNumOfTriangles() == 0) {
+            throw new IllegalArgumentException("Mesh has no triangles");
+        }
+        parts.add(mesh.isIndexed() ? new IndexedTrianglePart(mesh) : new TriangleSoupPart(mesh));
+    }
+
+    public void addLineMesh(LineMesh mesh) {
+        if (mesh.getNumOfSegments() == 0) {
+            throw new IllegalArgumentException("Mesh has no segments");
+        }
+        parts.add(new LinePart(mesh));
+    }
+
+    public void write(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(channel);
+        }
+    }
+
+    public void write(WritableByteChannel channel) throws IOException {
+        if (parts.isEmpty()) {
+            throw new IllegalStateException("Nothing to write");
+        }
+        parts.forEach(Part::prepare);
+
+        var gltf = new Gltf();
+        var asset = new Asset();
+        asset.setVersion("2.0");
+        asset.setGenerator(GENERATOR);
+        gltf.setAsset(asset);
+        List<BufferView> bufferViews = new ArrayList<>();
+        List<Accessor> accessors = new ArrayList<>();
+        List<Mesh> meshes = new ArrayList<>();
+        List<Node> nodes = new ArrayList<>();
+        long byteLength = 0;
+        for (var part : parts) {
+            var primitive = new MeshPrimitive();
+            primitive.setMode(part.mode());
+            var attributes = new LinkedHashMap<String, Integer>();
+
+            int stride = part.hasNormals() ? POSITION_NORMAL_SIZE : POSITION_SIZE;
+            int vertexView = bufferViews.size();
+            bufferViews.add(bufferView(byteLength, (long) part.numOfVertices() * stride, stride,
+                    BufferView.TARGET_ARRAY_BUFFER));
+            byteLength += (long) part.numOfVertices() * stride;
+
+            attributes.put(MeshPrimitive.ATTRIBUTE_POSITION, accessors.size());
+            var position = accessor(vertexView, 0, Accessor.COMPONENT_TYPE_FLOAT, part.numOfVertices(), Accessor.TYPE_VEC3);
+            position.setMin(toDoubles(part.min()));
+            position.setMax(toDoubles(part.max()));
+            accessors.add(position);
+            if (part.hasNormals()) {
+                attributes.put(MeshPrimitive.ATTRIBUTE_NORMAL, accessors.size());
+                accessors.add(accessor(vertexView, POSITION_SIZE, Accessor.COMPONENT_TYPE_FLOAT, part.numOfVertices(),
+                        Accessor.TYPE_VEC3));
+            }
+            primitive.setAttributes(attributes);
+
+            if (part.numOfIndices() > 0) {
+                int indexSize = part.shortIndices() ? 2 : 4;
+                int indexView = bufferViews.size();
+                bufferViews.add(bufferView(byteLength, (long) part.numOfIndices() * indexSize, null,
+                        BufferView.TARGET_ELEMENT_ARRAY_BUFFER));
+                byteLength = GlbWriter.align4(byteLength + (long) part.numOfIndices() * indexSize);
+                primitive.setIndices(accessors.size());
+                accessors.add(accessor(indexView, 0, part.shortIndices()
+                        ? Accessor.COMPONENT_TYPE_UNSIGNED_SHORT
+                        : Accessor.COMPONENT_TYPE_UNSIGNED_INT, part.numOfIndices(), Accessor.TYPE_SCALAR));
+            }
+
+            var mesh = new Mesh();
+            mesh.setPrimitives(List.of(primitive));
+            var node = new Node();
+            node.setMesh(meshes.size());
+            meshes.add(mesh);
+            nodes.add(node);
+        }
+        if (byteLength > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Buffer is too large: " + byteLength);
+        }
+        var buffer = new Buffer();
+        buffer.setByteLength((int) byteLength);
+        gltf.setBuffers(List.of(buffer));
+        gltf.setBufferViews(bufferViews);
+        gltf.setAccessors(accessors);
+        gltf.setMeshes(meshes);
+        gltf.setNodes(nodes);
+        var scene = new Scene();
+        scene.setNodes(IntStream.range(0, nodes.size()).boxed().toList());
+        gltf.setScenes(List.of(scene));
+        gltf.setScene(0);
+
+        new GlbWriter().write(gltf, byteLength, out -> {
+            for (var part : parts) {
+                part.writeVertices(out);
+                if (part.numOfIndices() > 0) {
+                    part.writeIndices(out);
+                    out.pad();
+                }
+            }
+        }, channel);
+    }
+
+    private static BufferView bufferView(long byteOffset, long byteLength, Integer byteStride, int target) {
+        var view = new BufferView();
+        view.setBuffer(0);
+        view.setByteOffset((int) byteOffset);
+        view.setByteLength((int) byteLength);
+        view.setByteStride(byteStride);
+        view.setTarget(target);
+        return view;
+    }
+
+    private static Accessor accessor(int bufferView, int byteOffset, int componentType, int count, String type) {
+        var accessor = new Accessor();
+        accessor.setBufferView(bufferView);
+        accessor.setByteOffset(byteOffset);
+        accessor.setComponentType(componentType);
+        accessor.setCount(count);
+        accessor.setType(type);
+        return accessor;
+    }
+
+    private static double[] toDoubles(float[] v) {
+        return new double[]{v[0], v[1], v[2]};
+    }
+
+    /**
+     * Geometry of one mesh primitive. Bounds are computed from the float32 coordinates, as they are written.
+     */
+    private abstract static class Part {
+        final float[] min = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY};
+        final float[] max = {Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+
+        abstract void prepare();
+
+        abstract int mode();
+
+        abstract boolean hasNormals();
+
+        abstract int numOfVertices();
+
+        /**
+         * @return number of indices, 0 for non-indexed geometry
+         */
+        abstract int numOfIndices();
+
+        abstract void writeVertices(GlbWriter.Output out) throws IOException;
+
+        void writeIndices(GlbWriter.Output out) throws IOException {
+        }
+
+        float[] min() {
+            return min;
+        }
+
+        float[] max() {
+            return max;
+        }
+
+        /**
+         * 0xFFFF is the primitive restart value, it is not allowed as index
+         */
+        boolean shortIndices() {
+            return numOfVertices() < 0xFFFF;
+        }
+
+        /**
+         * Writes the normalized normal, or the fallback if it has no direction (e.g. NaN of a degenerate triangle)
+         */
+        static void putNormal(GlbWriter.Output out, double nx, double ny, double nz) throws IOException {
+            double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+            if (length > 0 && Double.isFinite(length)) {
+                out.putFloats((float) (nx / length), (float) (ny / length), (float) (nz / length));
+            } else {
+                out.putFloats(0, 0, 1);
+            }
+        }
+
+        void extend(float x, float y, float z) {
+            min[0] = Math.min(min[0], x);
+            min[1] = Math.min(min[1], y);
+            min[2] = Math.min(min[2], z);
+            max[0] = Math.max(max[0], x);
+            max[1] = Math.max(max[1], y);
+            max[2] = Math.max(max[2], z);
+        }
+
+    }
+
+    /**
+     * 3 vertices per triangle with the face normal
+     */
+    private static final class TriangleSoupPart extends Part {
+        private final TriangleMesh mesh;
+
+        TriangleSoupPart(TriangleMesh mesh) {
+            this.mesh = mesh;
+        }
+
+        @Override
+        void prepare() {
+            mesh.forEachTriangle((idx, p1x, p1y, p1z, p2x, p2y, p2z, p3x, p3y, p3z, nx, ny, nz) -> {
+                extend((float) p1x, (float) p1y, (float) p1z);
+                extend((float) p2x, (float) p2y, (float) p2z);
+                extend((float) p3x, (float) p3y, (float) p3z);
+            });
+        }
+
+        @Override
+        int mode() {
+            return MeshPrimitive.MODE_TRIANGLES;
+        }
+
+        @Override
+        boolean hasNormals() {
+            return true;
+        }
+
+        @Override
+        int numOfVertices() {
+            return 3 * mesh.getNumOfTriangles();
+        }
+
+        @Override
+        int numOfIndices() {
+            return 0;
+        }
+
+        @Override
+        void writeVertices(GlbWriter.Output out) throws IOException {
+            try {
+                mesh.forEachTriangle((idx, p1x, p1y, p1z, p2x, p2y, p2z, p3x, p3y, p3z, nx, ny, nz) -> {
+                    try {
+                        out.putFloats((float) p1x, (float) p1y, (float) p1z);
+                        putNormal(out, nx, ny, nz);
+                        out.putFloats((float) p2x, (float) p2y, (float) p2z);
+                        putNormal(out, nx, ny, nz);
+                        out.putFloats((float) p3x, (float) p3y, (float) p3z);
+                        putNormal(out, nx, ny, nz);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Unique vertices with area weighted normals of the adjacent triangles. The normals need the vertices in memory,
+     * the indices are streamed from the mesh.
+     */
+    private static final class IndexedTrianglePart extends Part {
+        private final TriangleMesh mesh;
+        /**
+         * Interleaved position and normal
+         */
+        private float[] vertices;
+
+        IndexedTrianglePart(TriangleMesh mesh) {
+            this.mesh = mesh;
+        }
+
+        @Override
+        void prepare() {
+            float[] vs = new float[6 * mesh.getNumOfVertices()];
+            mesh.forEachIndexedTriangle((idx, x, y, z) -> {
+                int i = 6 * idx;
+                vs[i] = (float) x;
+                vs[i + 1] = (float) y;
+                vs[i + 2] = (float) z;
+                extend(vs[i], vs[i + 1], vs[i + 2]);
+            }, (idx, v1, v2, v3) -> {
+                int i1 = 6 * v1, i2 = 6 * v2, i3 = 6 * v3;
+                float ux = vs[i2] - vs[i1], uy = vs[i2 + 1] - vs[i1 + 1], uz = vs[i2 + 2] - vs[i1 + 2];
+                float wx = vs[i3] - vs[i1], wy = vs[i3 + 1] - vs[i1 + 1], wz = vs[i3 + 2] - vs[i1 + 2];
+                // length of the cross product is twice the area, so the sum is area weighted
+                float nx = uy * wz - uz * wy;
+                float ny = uz * wx - ux * wz;
+                float nz = ux * wy - uy * wx;
+                addNormal(vs, i1, nx, ny, nz);
+                addNormal(vs, i2, nx, ny, nz);
+                addNormal(vs, i3, nx, ny, nz);
+            });
+            for (int i = 0; i < vs.length; i += 6) {
+                float length = (float) Math.sqrt(vs[i + 3] * vs[i + 3] + vs[i + 4] * vs[i + 4] + vs[i + 5] * vs[i + 5]);
+                if (length > 0 && Float.isFinite(length)) {
+                    vs[i + 3] /= length;
+                    vs[i + 4] /= length;
+                    vs[i + 5] /= length;
+                } else {
+                    vs[i + 3] = 0;
+                    vs[i + 4] = 0;
+                    vs[i + 5] = 1;
+                }
+            }
+            this.vertices = vs;
+        }
+
+        private static void addNormal(float[] vs, int i, float nx, float ny, float nz) {
+            vs[i + 3] += nx;
+            vs[i + 4] += ny;
+            vs[i + 5] += nz;
+        }
+
+        @Override
+        int mode() {
+            return MeshPrimitive.MODE_TRIANGLES;
+        }
+
+        @Override
+        boolean hasNormals() {
+            return true;
+        }
+
+        @Override
+        int numOfVertices() {
+            return mesh.getNumOfVertices();
+        }
+
+        @Override
+        int numOfIndices() {
+            return 3 * mesh.getNumOfTriangles();
+        }
+
+        @Override
+        void writeVertices(GlbWriter.Output out) throws IOException {
+            for (float v : vertices) {
+                out.putFloat(v);
+            }
+        }
+
+        @Override
+        void writeIndices(GlbWriter.Output out) throws IOException {
+            boolean shortIndices = shortIndices();
+            try {
+                mesh.forEachIndexedTriangle((idx, x, y, z) -> {
+                }, (idx, v1, v2, v3) -> {
+                    try {
+                        if (shortIndices) {
+                            out.putUnsignedShort(v1);
+                            out.putUnsignedShort(v2);
+                            out.putUnsignedShort(v3);
+                        } else {
+                            out.putInt(v1);
+                            out.putInt(v2);
+                            out.putInt(v3);
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private static final class LinePart extends Part {
+        private final LineMesh mesh;
+
+        LinePart(LineMesh mesh) {
+            this.mesh = mesh;
+        }
+
+        @Override
+        void prepare() {
+            mesh.forEachVertex((idx, x, y, z) -> extend((float) x, (float) y, (float) z));
+        }
+
+        @Override
+        int mode() {
+            return MeshPrimitive.MODE_LINES;
+        }
+
+        @Override
+        boolean hasNormals() {
+            return false;
+        }
+
+        @Override
+        int numOfVertices() {
+            return mesh.getNumOfVertices();
+        }
+
+        @Override
+        int numOfIndices() {
+            return 2 * mesh.getNumOfSegments();
+        }
+
+        @Override
+        void writeVertices(GlbWriter.Output out) throws IOException {
+            try {
+                mesh.forEachVertex((idx, x, y, z) -> {
+                    try {
+                        out.putFloats((float) x, (float) y, (float) z);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        @Override
+        void writeIndices(GlbWriter.Output out) throws IOException {
+            boolean shortIndices = shortIndices();
+            try {
+                mesh.forEachSegment((idx, v1, v2) -> {
+                    try {
+                        if (shortIndices) {
+                            out.putUnsignedShort(v1);
+                            out.putUnsignedShort(v2);
+                        } else {
+                            out.putInt(v1);
+                            out.putInt(v2);
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
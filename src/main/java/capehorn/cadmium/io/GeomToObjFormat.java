@@ -1,16 +1,18 @@
 package capehorn.cadmium.io;
 
+import capehorn.cadmium.core.VecBuffer;
 import capehorn.cadmium.format.Obj;
 import capehorn.cadmium.geom.Frame;
 import capehorn.cadmium.geom.ParametricCurve;
 import capehorn.cadmium.geom.mesh.TriangleMesh;
 
+import java.io.Closeable;
+import java.io.Flushable;
 import java.io.IOException;
 import java.io.Writer;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.channels.WritableByteChannel;
 
-public class GeomToObjFormat {
+public class GeomToObjFormat implements Closeable, Flushable {
 
     private final Obj.ObjFormatWriter writer;
 
@@ -18,25 +20,62 @@ public class GeomToObjFormat {
         this.writer = new Obj.ObjFormatWriter(writer);
     }
 
+    /**
+     * Buffered output into the channel, it must be flushed or closed at the end
+     */
+    public GeomToObjFormat(WritableByteChannel channel, Obj.Precision precision) {
+        this.writer = new Obj.ObjFormatWriter(channel, precision);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    /**
+     * Writes 3 vertices per triangle and then the faces. Face indices are computed from the triangle index,
+     * so nothing is collected in memory.
+     */
     public void writeTriangleMesh(TriangleMesh mesh) throws IOException {
-        List<int[]> faces = new ArrayList<>();
-        mesh.forEachTriangle(t -> {
-            faces.add(new int[] {
-                    writer.writeVertex(t.p1()),
-                    writer.writeVertex(t.p2()),
-                    writer.writeVertex(t.p3())
-            });
+        int first = writer.getNumOfVertices() + 1;
+        mesh.forEachTriangle((idx, p1x, p1y, p1z, p2x, p2y, p2z, p3x, p3y, p3z, nx, ny, nz) -> {
+            writer.writeVertex(p1x, p1y, p1z);
+            writer.writeVertex(p2x, p2y, p2z);
+            writer.writeVertex(p3x, p3y, p3z);
         });
-        for(var f: faces) {
-            writer.writeFace(f);
+        int numOfTriangles = mesh.getNumOfTriangles();
+        for (int t = 0; t < numOfTriangles; t++) {
+            int v = first + 3 * t;
+            writer.writeFace(v, v + 1, v + 2);
         }
     }
 
+    /**
+     * Writes every unique vertex once, faces refer to them by index.
+     * Triangle soup is welded while it is written, see {@link TriangleMesh#forEachIndexedTriangle}.
+     */
+    public void writeTriangleMeshIndexed(TriangleMesh mesh) throws IOException {
+        int first = writer.getNumOfVertices() + 1;
+        mesh.forEachIndexedTriangle(
+                (idx, x, y, z) -> writer.writeVertex(x, y, z),
+                (idx, v1, v2, v3) -> writer.writeFace(first + v1, first + v2, first + v3));
+    }
+
+    /**
+     * Samples the curve at uniformly spaced parameters in one batch, see {@link ParametricCurve#evaluateUniform}
+     */
     public void writeParametricCurve(ParametricCurve curve, int numOfPoints) throws IOException {
-        double step = 1.0 / (numOfPoints - 1);
+        var points = new VecBuffer(new int[]{3}, Math.max(numOfPoints, 1));
+        curve.evaluateUniform(numOfPoints, points);
         var vIndices = new int[numOfPoints];
-        for (int i = 0; i < numOfPoints; i++) {
-            vIndices[i] = writer.writeVertex(curve.point(i * step));
+        var c = points.cursor();
+        for (int i = 0; i < numOfPoints; i++, c.advance()) {
+            vIndices[i] = writer.writeVertex(c.getDouble(0), c.getDouble(1), c.getDouble(2));
         }
         writer.writeLine(vIndices);
     }
@@ -0,0 +1,132 @@
+package capehorn.cadmium.io;
+
+import capehorn.cadmium.CadmiumRuntimeException;
+import capehorn.cadmium.core.VecBuffer;
+import capehorn.cadmium.core.VecStorage;
+import capehorn.cadmium.format.gltf.AccessorView;
+import capehorn.cadmium.format.gltf.GltfDocument;
+import capehorn.cadmium.format.gltf.GltfReader;
+import capehorn.cadmium.format.gltf.dto.Accessor;
+import capehorn.cadmium.format.gltf.dto.MeshPrimitive;
+import capehorn.cadmium.geom.mesh.LineMesh;
+import capehorn.cadmium.geom.mesh.TriangleMesh;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Builds meshes from the primitives of a glTF asset. Vertex positions are not copied, the meshes read them
+ * from the mapped buffers through {@link AccessorView}s, so the meshes are read-only
+ * and must not be used after this is closed. Indices are copied into int arrays.
+ * Meshes to be modified or kept after closing are built by the variants copying the positions into a storage,
+ * e.g. {@link #toTriangleMeshes(VecStorage.Factory)}.
+ */
+public class GltfFormatToGeom implements AutoCloseable {
+    private static final int[] VERTEX_LAYOUT = {3};
+    private static final int COPY_BLOCK = 1 << 12;
+
+    private final GltfDocument document;
+
+    public GltfFormatToGeom(Path file) throws IOException {
+        this.document = new GltfReader().read(file);
+    }
+
+    public GltfDocument getDocument() {
+        return document;
+    }
+
+    /**
+     * @return a mesh for every triangle primitive of every mesh, in the order of the asset
+     */
+    public List<TriangleMesh> toTriangleMeshes() {
+        List<TriangleMesh> result = new ArrayList<>();
+        forEachPrimitive(MeshPrimitive.MODE_TRIANGLES, (positions, indices) ->
+                result.add(TriangleMesh.indexed(positions.toVecBuffer(), indices)));
+        return result;
+    }
+
+    /**
+     * @param storageFactory storage the positions are copied into
+     * @return modifiable meshes independent of this reader, otherwise the same as {@link #toTriangleMeshes()}
+     */
+    public List<TriangleMesh> toTriangleMeshes(VecStorage.Factory storageFactory) {
+        List<TriangleMesh> result = new ArrayList<>();
+        forEachPrimitive(MeshPrimitive.MODE_TRIANGLES, (positions, indices) ->
+                result.add(TriangleMesh.indexed(copy(positions, storageFactory), indices)));
+        return result;
+    }
+
+    /**
+     * @return a mesh for every line primitive of every mesh, in the order of the asset
+     */
+    public List<LineMesh> toLineMeshes() {
+        List<LineMesh> result = new ArrayList<>();
+        forEachPrimitive(MeshPrimitive.MODE_LINES, (positions, indices) ->
+                result.add(LineMesh.indexed(positions.toVecBuffer(), indices)));
+        return result;
+    }
+
+    /**
+     * @param storageFactory storage the positions are copied into
+     * @return modifiable meshes independent of this reader, otherwise the same as {@link #toLineMeshes()}
+     */
+    public List<LineMesh> toLineMeshes(VecStorage.Factory storageFactory) {
+        List<LineMesh> result = new ArrayList<>();
+        forEachPrimitive(MeshPrimitive.MODE_LINES, (positions, indices) ->
+                result.add(LineMesh.indexed(copy(positions, storageFactory), indices)));
+        return result;
+    }
+
+    private static VecBuffer copy(AccessorView positions, VecStorage.Factory storageFactory) {
+        var src = positions.toVecBuffer();
+        int numOfVertices = src.getLimit();
+        var dst = new VecBuffer(VERTEX_LAYOUT, Math.max(1, numOfVertices), storageFactory);
+        double[] block = new double[3 * Math.min(COPY_BLOCK, Math.max(1, numOfVertices))];
+        for (int from = 0; from < numOfVertices; from += COPY_BLOCK) {
+            int n = Math.min(COPY_BLOCK, numOfVertices - from);
+            src.getItems(from, n, block);
+            dst.put(block, 0, 3 * n);
+        }
+        return dst;
+    }
+
+    @FunctionalInterface
+    private interface PrimitiveConsumer {
+        void accept(AccessorView positions, int[] indices);
+    }
+
+    private void forEachPrimitive(int mode, PrimitiveConsumer consumer) {
+        var gltf = document.getGltf();
+        if (gltf.getMeshes() == null) {
+            return;
+        }
+        for (var mesh : gltf.getMeshes()) {
+            for (var primitive : mesh.getPrimitives()) {
+                int primitiveMode = primitive.getMode() == null ? MeshPrimitive.MODE_TRIANGLES : primitive.getMode();
+                if (primitiveMode != mode) {
+                    continue;
+                }
+                Integer positionIdx = primitive.getAttributes().get(MeshPrimitive.ATTRIBUTE_POSITION);
+                if (positionIdx == null) {
+                    continue;
+                }
+                var positions = document.getAccessor(positionIdx);
+                if (positions.getNumOfComponents() != 3) {
+                    throw new CadmiumRuntimeException("Positions must be " + Accessor.TYPE_VEC3);
+                }
+                int[] indices = primitive.getIndices() == null
+                        ? IntStream.range(0, positions.getCount()).toArray()
+                        : document.getAccessor(primitive.getIndices()).toIntArray();
+                consumer.accept(positions, indices);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        document.close();
+    }
+}
@@ -0,0 +1,47 @@
+package capehorn.cadmium.io;
+
+import capehorn.cadmium.core.VecStorage;
+import capehorn.cadmium.format.ObjFormatReader;
+import capehorn.cadmium.geom.mesh.LineMesh;
+import capehorn.cadmium.geom.mesh.TriangleMesh;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Builds meshes from an obj. file. The faces and the lines of the file share the same vertex buffer,
+ * nothing is copied after parsing.
+ */
+public class ObjFormatToGeom {
+
+    private final ObjFormatReader.Content content;
+
+    public ObjFormatToGeom(Path file) throws IOException {
+        this(file, VecStorage.HEAP);
+    }
+
+    /**
+     * @param storageFactory storage of the vertex positions, e.g. {@link VecStorage#HEAP_FLOAT} for large scans
+     */
+    public ObjFormatToGeom(Path file, VecStorage.Factory storageFactory) throws IOException {
+        this.content = new ObjFormatReader(storageFactory).read(file);
+    }
+
+    public ObjFormatReader.Content getContent() {
+        return content;
+    }
+
+    /**
+     * @return indexed mesh of the faces, vertices are kept as in the file
+     */
+    public TriangleMesh toTriangleMesh() {
+        return TriangleMesh.indexed(content.positions(), content.triangles());
+    }
+
+    /**
+     * @return segments of the lines
+     */
+    public LineMesh toLineMesh() {
+        return LineMesh.indexed(content.positions(), content.segments());
+    }
+}
@@ -0,0 +1,71 @@
+package capehorn.cadmium.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ConcurrentVecBufferTest {
+
+    @Test
+    void put_acrossBuckets() {
+        var b = new ConcurrentVecBuffer(2);
+        int n = 5000;
+        double[] items = IntStream.range(0, 2 * n).asDoubleStream().toArray();
+        assertThat(b.reserve(10)).isEqualTo(0);
+        int from = b.reserve(n);
+        b.put(from, items, 0, n);
+        assertThat(b.size()).isEqualTo(n + 10);
+
+        var item = new double[2];
+        b.get(10 + 3000, item);
+        assertThat(item).isEqualTo(new double[]{6000, 6001});
+        b.get(5, item);
+        assertThat(item).isEqualTo(new double[]{0, 0});
+
+        var buffer = b.toVecBuffer();
+        assertThat(buffer.getLimit()).isEqualTo(n + 10);
+        assertThat(buffer.get(10 + n - 1)).isEqualTo(new double[]{2 * n - 2, 2 * n - 1});
+        assertThrows(IndexOutOfBoundsException.class, () -> b.put(n, items, 0, 11));
+    }
+
+    @Test
+    void append_concurrentProducers() throws InterruptedException {
+        var b = new ConcurrentVecBuffer(3, 1);
+        int producers = 8;
+        int itemsPerProducer = 20_000;
+        try (var executor = Executors.newFixedThreadPool(producers)) {
+            for (int p = 0; p < producers; p++) {
+                int producer = p;
+                executor.execute(() -> {
+                    for (int i = 0; i < itemsPerProducer; i += 10) {
+                        double[] items = new double[4 * 10];
+                        for (int k = 0; k < 10; k++) {
+                            items[4 * k] = producer;
+                            items[4 * k + 1] = i + k;
+                            items[4 * k + 3] = 1;
+                        }
+                        b.append(items);
+                    }
+                });
+            }
+            executor.shutdown();
+            assertThat(executor.awaitTermination(1, TimeUnit.MINUTES)).isTrue();
+        }
+        var buffer = new VecBuffer(new int[]{3, 1}, 1, VecStorage.CHUNKED);
+        b.copyTo(buffer);
+        assertThat(buffer.getLimit()).isEqualTo(producers * itemsPerProducer);
+        var seen = new boolean[producers][itemsPerProducer];
+        for (var c = buffer.cursor(); c.hasItem(); c.advance()) {
+            assertThat(c.getDouble(3)).isEqualTo(1);
+            seen[(int) c.getDouble(0)][(int) c.getDouble(1)] = true;
+        }
+        for (var producerSeen : seen) {
+            assertThat(producerSeen).doesNotContain(false);
+        }
+    }
+}
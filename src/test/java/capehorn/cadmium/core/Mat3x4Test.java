@@ -0,0 +1,79 @@
+package capehorn.cadmium.core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class Mat3x4Test {
+
+    private final Mat4x4 trf = Mat4x4.translation(1, -2, 3)
+            .mul(Mat4x4.rotation(Vec3.of(1, 2, 0), 0.4))
+            .mul(Mat4x4.scaling(2, 0.5, 3));
+
+    @Test
+    void fromMat4x4() {
+        assertThat(trf.isAffine()).isTrue();
+        var affine = trf.toAffine();
+        assertThat(affine.toMat4x4()).isEqualTo(trf);
+        var p = Vec3.of(0.3, -4, 7);
+        assertThat(affine.mulPosition(p)).isEqualTo(trf.mulPosition(p));
+        assertThat(affine.mulDirection(p).add(affine.getTranslation())).isEqualTo(trf.mulPosition(p));
+
+        var projective = new Mat4x4(
+                1, 0, 0, 0,
+                0, 1, 0, 0,
+                0, 0, 1, 0,
+                0, 0, 1, 0);
+        assertThat(projective.isAffine()).isFalse();
+        assertThatThrownBy(projective::toAffine).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void mul() {
+        var other = Mat4x4.rotation(Vec3.of(0, 1, 1), -1.1).translate(4, 5, 6);
+        assertClose(trf.toAffine().mul(other.toAffine()).toMat4x4(), trf.mul(other));
+        assertThat(Mat3x4.IDENTITY.mul(trf.toAffine())).isEqualTo(trf.toAffine());
+        assertThat(trf.toAffine().translate(1, 2, 3)).isEqualTo(Mat3x4.translation(1, 2, 3).mul(trf.toAffine()));
+    }
+
+    @Test
+    void inverse() {
+        var affine = trf.toAffine();
+        assertThat(affine.determinant()).isCloseTo(3, within(1e-12));
+        assertClose(affine.mul(affine.inverse()).toMat4x4(), Mat4x4.Identity);
+        assertClose(affine.inverse().mul(affine).toMat4x4(), Mat4x4.Identity);
+        // orthogonal columns: rotation and scaling
+        assertClose(affine.inverseOrthogonal().toMat4x4(), affine.inverse().toMat4x4());
+
+        var skewed = new Mat3x4(
+                1, 2, 0, 1,
+                0, 1, 0, 2,
+                3, 0, 1, 3);
+        assertClose(skewed.mul(skewed.inverse()).toMat4x4(), Mat4x4.Identity);
+        assertClose(skewed.inverse().toMat4x4(), new Mat4x4(
+                1, -2, 0, 3,
+                0, 1, 0, -2,
+                -3, 6, 1, -12,
+                0, 0, 0, 1));
+        // affine fast path of the 4x4 inverse
+        assertClose(trf.inverse().mul(trf), Mat4x4.Identity);
+    }
+
+    @Test
+    void transformPositions() {
+        double[] src = {1, 2, 3, -4, 5, 6, 0, 0, 0};
+        double[] expected = new double[src.length];
+        double[] actual = new double[src.length];
+        trf.transformPositions(src, 0, expected, 0, 3);
+        trf.toAffine().transformPositions(src, 0, actual, 0, 3);
+        assertThat(actual).containsExactly(expected);
+    }
+
+    private static void assertClose(Mat4x4 actual, Mat4x4 expected) {
+        for (int i = 0; i < 16; i++) {
+            assertThat(actual.vs()[i]).isCloseTo(expected.vs()[i], within(1e-12));
+        }
+    }
+}
@@ -3,6 +3,7 @@ package capehorn.cadmium.core;
 import org.junit.jupiter.api.Test;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
 
 class Mat4x4Test {
 
@@ -75,4 +76,100 @@ class Mat4x4Test {
                 -2.0, 1.16, -3.24, 4.64
         ));
     }
+
+    @Test
+    void transformPositions_array() {
+        int n = 13;
+        double[] src = new double[3 * n + 1];
+        for (int i = 0; i < src.length; i++) {
+            src[i] = i * 0.5 - 7;
+        }
+        double[] dst = new double[src.length];
+        matA.transformPositions(src, 1, dst, n);
+        for (int i = 0; i < n; i++) {
+            var expected = matA.mulPosition(Vec3.of(src[1 + 3 * i], src[2 + 3 * i], src[3 + 3 * i]));
+            assertThat(Vec3.of(dst[1 + 3 * i], dst[2 + 3 * i], dst[3 + 3 * i]).distance(expected)).isLessThan(1e-9);
+        }
+        double[] scalar = new double[src.length];
+        TransformKernels.transformPositionsScalar(matA.vs(), src, 1, 3, scalar, 1, 3, n);
+        for (int i = 0; i < dst.length; i++) {
+            assertThat(dst[i]).isCloseTo(scalar[i], offset(1e-9));
+        }
+    }
+
+    @Test
+    void transformPositions_sameAsMulPosition() {
+        var trf = Mat4x4.translation(0.1, -0.7, 3.3).mul(Mat4x4.rotation(Vec3.of(1, 2, 3), 0.7));
+        int n = 37;
+        double[] src = new double[3 * n];
+        for (int i = 0; i < src.length; i++) {
+            src[i] = i * 0.37 - 7.1;
+        }
+        double[] dst = new double[src.length];
+        trf.transformPositions(src, 0, dst, n);
+        // lanes and the scalar remainder round exactly like the single position
+        for (int i = 0; i < n; i++) {
+            var expected = trf.mulPosition(Vec3.of(src[3 * i], src[3 * i + 1], src[3 * i + 2]));
+            assertThat(Vec3.of(dst[3 * i], dst[3 * i + 1], dst[3 * i + 2])).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void transformPositions_buffer() {
+        var b = new VecBuffer(new int[]{3, 1, 3}, 2);
+        for (int i = 0; i < 2000; i++) {
+            b.put(i, 1, 2, -1, 0, i, 3);
+        }
+        matB.transformPositions(b, 0, 4);
+        for (int i = 0; i < 2000; i += 111) {
+            var item = b.get(i);
+            assertThat(Vec3.of(item[0], item[1], item[2]).distance(matB.mulPosition(Vec3.of(i, 1, 2)))).isLessThan(1e-9);
+            assertThat(item[3]).isEqualTo(-1);
+            assertThat(Vec3.of(item[4], item[5], item[6]).distance(matB.mulPosition(Vec3.of(0, i, 3)))).isLessThan(1e-9);
+        }
+    }
+
+    @Test
+    void normalMatrix() {
+        var p1 = Vec3.of(0, 0, 0);
+        var p2 = Vec3.of(1, 0.5, 0);
+        var p3 = Vec3.of(0.2, 1, 0.7);
+        var normal = p2.sub(p1).cross(p3.sub(p1)).normalize();
+        var rotation = Mat4x4.rotation(Vec3.of(1, 1, 0), 0.3);
+        for (var trf : new Mat4x4[]{
+                rotation.mul(Mat4x4.scaling(3, 0.5, -2)),
+                rotation.mul(Mat4x4.scaling(-2, 2, 2)).translate(1, 2, 3),
+                matA}) {
+            var q1 = trf.mulPosition(p1);
+            var q2 = trf.mulPosition(p2);
+            var q3 = trf.mulPosition(p3);
+            var expected = q2.sub(q1).cross(q3.sub(q1)).normalize();
+            // same orientation as the recomputed normal, also when mirrored
+            assertThat(trf.mulNormal(normal).distance(expected)).isLessThan(1e-12);
+            assertThat(trf.mulNormal(normal).distance(trf.normalMatrix().mulDirection(normal).normalize())).isLessThan(1e-12);
+        }
+        assertThat(rotation.isConformal()).isTrue();
+        assertThat(rotation.mul(Mat4x4.scaling(-2, 2, 2)).isConformal()).isTrue();
+        assertThat(rotation.mul(Mat4x4.scaling(3, 0.5, -2)).isConformal()).isFalse();
+        // conformal normal matrices keep the length
+        var n = rotation.mul(Mat4x4.scaling(5, 5, 5)).normalMatrix().mulDirection(normal);
+        assertThat(n.length()).isCloseTo(1, offset(1e-12));
+    }
+
+    @Test
+    void transformPositionsAndNormals() {
+        var trf = Mat4x4.rotation(Vec3.of(0, 1, 1), 1.2).mul(Mat4x4.scaling(1, 4, 0.25)).translate(1, 0, -1);
+        var b = new VecBuffer(new int[]{3, 3}, 2);
+        for (int i = 0; i < 1000; i++) {
+            var n = Vec3.of(1, i, -2).normalize();
+            b.put(i, 1, 2, n.x(), n.y(), n.z());
+        }
+        trf.transformPositionsAndNormals(b, 0, 1000, new int[]{0}, new int[]{3});
+        for (int i = 0; i < 1000; i += 37) {
+            var item = b.get(i);
+            assertThat(Vec3.of(item[0], item[1], item[2]).distance(trf.mulPosition(Vec3.of(i, 1, 2)))).isLessThan(1e-9);
+            var expected = trf.mulNormal(Vec3.of(1, i, -2).normalize());
+            assertThat(Vec3.of(item[3], item[4], item[5]).distance(expected)).isLessThan(1e-12);
+        }
+    }
 }
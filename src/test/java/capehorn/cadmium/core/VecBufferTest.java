@@ -1,11 +1,21 @@
 package capehorn.cadmium.core;
 
+import capehorn.cadmium.CadmiumRuntimeException;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.stream.DoubleStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.jupiter.api.Assertions.*;
 class VecBufferTest {
 
@@ -133,6 +143,228 @@ class VecBufferTest {
         });
     }
 
+    @Test
+    void cursor() {
+        var b = VecBuffer.of(Vec3.of(1, 2, 3), Vec3.of(4, 5, 6));
+        b.setPosition(1);
+        var c = b.cursor();
+        assertThat(c.hasItem()).isTrue();
+        assertThat(c.index()).isEqualTo(0);
+        assertThat(c.getDouble(2)).isEqualTo(3);
+        c.set(2, 30);
+        assertThat(c.advance()).isTrue();
+        assertThat(c.getDouble(0)).isEqualTo(4);
+        assertThat(c.advance()).isFalse();
+        assertThat(c.moveTo(0).getDouble(2)).isEqualTo(30);
+        assertThat(b.get(0)).isEqualTo(new double[]{1, 2, 30});
+        assertOnPositionLimitCapacity(b, 1, 2, 2);
+        assertThrows(IndexOutOfBoundsException.class, () -> c.getDouble(3));
+    }
+
+    @Test
+    void recomputeInPlace_components() {
+        var b = VecBuffer.of(Vec3.of(1, 2, 3), Vec3.of(4, 5, 6));
+        b.recomputeInPlace(v -> v * 2);
+        assertThat(b.get(0)).isEqualTo(new double[]{2, 4, 6});
+        assertThat(b.get(1)).isEqualTo(new double[]{8, 10, 12});
+    }
+
+    @Test
+    void recomputeInPlace_items() {
+        var b = VecBuffer.of(Vec3.of(1, 2, 3), Vec3.of(4, 5, 6));
+        b.recomputeInPlace((i, item) -> item.set(0, item.getDouble(1) + item.getDouble(2) + i));
+        assertThat(b.get(0)).isEqualTo(new double[]{5, 2, 3});
+        assertThat(b.get(1)).isEqualTo(new double[]{12, 5, 6});
+    }
+
+    @Test
+    void put_growsBeyondDoubleCapacity() {
+        var b = new VecBuffer(new int[]{3}, 1);
+        b.put(new double[3 * 5]);
+        assertOnPositionLimitCapacity(b, 5, 5, 5);
+    }
+
+    @Test
+    void offHeap() {
+        try (var b = VecBuffer.offHeap(new int[]{3}, 2)) {
+            for (int i = 0; i < 100; i++) {
+                b.put(i, i + 1, i + 2);
+            }
+            assertOnPositionLimitCapacity(b, 100, 100, 128);
+            assertThat(b.get(99)).isEqualTo(new double[]{99, 100, 101});
+            b.recomputeInPlace(v -> -v);
+            assertThat(b.cursor().moveTo(1).getDouble(2)).isEqualTo(-3);
+        }
+    }
+
+    @Test
+    void mapped_reopen(@TempDir Path dir) {
+        var file = dir.resolve("positions.vec");
+        try (var b = VecBuffer.mapped(file, new int[]{3, 1}, 2)) {
+            b.put(1, 2, 3, 4);
+            b.put(5, 6, 7, 8);
+            b.put(9, 10, 11, 12);
+        }
+        try (var b = VecBuffer.openMapped(file)) {
+            assertOnPositionLimitCapacity(b, 3, 3, 4);
+            assertThat(b.get(2)).isEqualTo(new double[]{9, 10, 11, 12});
+            b.setPosition(1);
+            b.put(0, 0, 0, 0);
+        }
+        try (var b = VecBuffer.openMapped(file)) {
+            assertThat(b.getLimit()).isEqualTo(3);
+            assertThat(b.get(1)).isEqualTo(new double[]{0, 0, 0, 0});
+        }
+    }
+
+    @Test
+    void mapped_corruptLayout(@TempDir Path dir) throws IOException {
+        var file = dir.resolve("corrupt.vec");
+        try (var b = VecBuffer.mapped(file, new int[]{3}, 2)) {
+            b.put(1, 2, 3);
+        }
+        try (var channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            // layout length after magic, version and limit
+            channel.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, -5), 16);
+        }
+        assertThatThrownBy(() -> VecBuffer.openMapped(file))
+                .isInstanceOf(CadmiumRuntimeException.class)
+                .hasMessageContaining("Corrupt item layout");
+        Files.delete(file);
+    }
+
+    @Test
+    void singlePrecision() {
+        var b = new VecBuffer(new int[]{3}, 1, VecStorage.HEAP_FLOAT);
+        b.put(0.1, 0.2, 0.3);
+        b.put(1, 2, 3);
+        assertThat(b.isSinglePrecision()).isTrue();
+        assertThat(b.get(0)).isEqualTo(new double[]{(float) 0.1, (float) 0.2, (float) 0.3});
+        assertThat(b.cursor().getFloat(1)).isEqualTo(0.2f);
+        assertThat(b.toFloatArray()).isEqualTo(new float[]{0.1f, 0.2f, 0.3f, 1, 2, 3});
+        var item = new float[3];
+        VecBuffer.of(Vec3.of(0.1, 0.2, 0.3)).get(0, item);
+        assertThat(item).isEqualTo(new float[]{0.1f, 0.2f, 0.3f});
+    }
+
+    @Test
+    void planar_putGrowsAndReadsItems() {
+        var b = VecBuffer.planar(1, new VecBuffer.Attribute("position", 3), new VecBuffer.Attribute("weight", 1));
+        for (int i = 0; i < 10; i++) {
+            b.put(i, 10 + i, 20 + i, -i);
+        }
+        assertOnPositionLimitCapacity(b, 10, 10, 16);
+        assertThat(b.getLayout()).isEqualTo(VecBuffer.Layout.PLANAR);
+        assertThat(b.get(7)).isEqualTo(new double[]{7, 17, 27, -7});
+        var c = b.cursor().moveTo(3);
+        assertThat(c.getDouble(2)).isEqualTo(23);
+        c.set(3, 100);
+        assertThat(b.get(3)).isEqualTo(new double[]{3, 13, 23, 100});
+        var ys = new double[4];
+        b.getComponents(1, 2, 4, ys, 0);
+        assertThat(ys).isEqualTo(new double[]{12, 13, 14, 15});
+        b.recomputeInPlace(v -> v * 2);
+        assertThat(b.get(9)).isEqualTo(new double[]{18, 38, 58, -18});
+    }
+
+    @Test
+    void setLayout_convertsInPlace() {
+        var b = new VecBuffer(new int[]{3, 2}, 8);
+        for (int i = 0; i < 5; i++) {
+            b.put(i, i + 0.1, i + 0.2, -i, -i - 0.5);
+        }
+        var expected = new double[5 * 5];
+        b.getItems(0, 5, expected);
+
+        b.setLayout(VecBuffer.Layout.PLANAR);
+        var xs = new double[5];
+        b.getComponents(0, 0, 5, xs, 0);
+        assertThat(xs).isEqualTo(new double[]{0, 1, 2, 3, 4});
+        var actual = new double[5 * 5];
+        b.getItems(0, 5, actual);
+        assertThat(actual).isEqualTo(expected);
+
+        b.put(5, 5.1, 5.2, -5, -5.5);
+        b.setLayout(VecBuffer.Layout.INTERLEAVED);
+        assertThat(b.get(2)).isEqualTo(new double[]{2, 2.1, 2.2, -2, -2.5});
+        assertThat(b.get(5)).isEqualTo(new double[]{5, 5.1, 5.2, -5, -5.5});
+        assertOnPositionLimitCapacity(b, 6, 6, 8);
+    }
+
+    @Test
+    void attributeView() {
+        var attributes = new VecBuffer.Attribute[]{new VecBuffer.Attribute("position", 3), new VecBuffer.Attribute("uv", 2)};
+        for (var layout : VecBuffer.Layout.values()) {
+            var b = new VecBuffer(attributes, layout, 2, VecStorage.HEAP);
+            b.put(1, 2, 3, 0.5, 0.25);
+            b.put(4, 5, 6, 0.75, 1);
+            assertThat(b.getAttributeOffset("uv")).isEqualTo(3);
+            var uvs = b.attributeView("uv");
+            assertOnPositionLimitCapacity(uvs, 2, 2, 2);
+            assertThat(uvs.get(1)).isEqualTo(new double[]{0.75, 1});
+            uvs.cursor().moveTo(1).set(0, 0);
+            b.put(7, 8, 9, 0, 0);
+            assertThat(b.get(1)).isEqualTo(new double[]{4, 5, 6, 0, 1});
+            assertThat(uvs.get(0)).isEqualTo(new double[]{0.5, 0.25});
+        }
+        assertThrows(IllegalArgumentException.class, () -> new VecBuffer(new int[]{3}).attributeView("normal"));
+    }
+
+    @Test
+    void growthPolicy() {
+        var b = new VecBuffer(new int[]{2}, 4);
+        assertThat(b.getGrowthPolicy()).isSameAs(GrowthPolicy.DOUBLING);
+        assertThat(GrowthPolicy.DOUBLING.newCapacity(1 << 30, (1 << 30) + 1)).isEqualTo(Integer.MAX_VALUE - 8);
+        b.setGrowthPolicy(GrowthPolicy.increment(3));
+        b.put(new double[2 * 5]);
+        assertOnPositionLimitCapacity(b, 5, 5, 7);
+        b.put(new double[2 * 20]);
+        assertOnPositionLimitCapacity(b, 25, 25, 25);
+        b.setGrowthPolicy(GrowthPolicy.factor(1.5));
+        b.put(1, 2);
+        assertOnPositionLimitCapacity(b, 26, 26, 37);
+        b.setGrowthPolicy((capacity, minCapacity) -> capacity);
+        b.put(new double[2 * 11]);
+        assertThrows(IllegalStateException.class, () -> b.put(new double[2 * 20]));
+    }
+
+    @Test
+    void chunked_growsAndCompacts() {
+        var b = new VecBuffer(new int[]{3}, 1, VecStorage.chunked(8));
+        for (int i = 0; i < 100; i++) {
+            b.put(i, i + 1, i + 2);
+        }
+        assertOnPositionLimitCapacity(b, 100, 100, 128);
+        var items = new double[3 * 100];
+        b.getItems(0, 100, items);
+        assertThat(b.get(33)).isEqualTo(new double[]{33, 34, 35});
+        var c = b.cursor().moveTo(50);
+
+        b.compact();
+        assertOnPositionLimitCapacity(b, 100, 100, 100);
+        var compacted = new double[3 * 100];
+        b.getItems(0, 100, compacted);
+        assertThat(compacted).isEqualTo(items);
+        assertThat(c.getDouble(2)).isEqualTo(52);
+        b.put(-1, -2, -3);
+        assertThat(b.get(100)).isEqualTo(new double[]{-1, -2, -3});
+    }
+
+    @Test
+    void chunked_planarCompacts() {
+        var b = new VecBuffer(new VecBuffer.Attribute[]{new VecBuffer.Attribute("p", 2)}, VecBuffer.Layout.PLANAR, 1,
+                VecStorage.chunked(4));
+        for (int i = 0; i < 11; i++) {
+            b.put(i, -i);
+        }
+        b.compact();
+        assertOnPositionLimitCapacity(b, 11, 11, 11);
+        var ys = new double[11];
+        b.getComponents(1, 0, 11, ys, 0);
+        assertThat(ys).isEqualTo(new double[]{0, -1, -2, -3, -4, -5, -6, -7, -8, -9, -10});
+        assertThat(b.get(7)).isEqualTo(new double[]{7, -7});
+    }
+
     private void assertOnPositionLimitCapacity(VecBuffer b, int expectedPosition, int expectedLimit, int expectedCapacity) {
         assertThat(b.getPosition()).isEqualTo(expectedPosition);
         assertThat(b.getLimit()).isEqualTo(expectedLimit);
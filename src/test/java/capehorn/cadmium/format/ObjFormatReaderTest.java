@@ -0,0 +1,135 @@
+package capehorn.cadmium.format;
+
+import capehorn.cadmium.CadmiumRuntimeException;
+import capehorn.cadmium.core.VecStorage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ObjFormatReaderTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void read() throws IOException {
+        var content = read("""
+                # comment
+                o quad
+                v 0 0 0
+                v 1.5 0 0
+                v 1.5 -2e1 0.25
+                v 0 1 0 1.0
+                vt 0 0
+                vn 0 0 1
+                f 1 2 3 4
+                f 1/1/1 2//1 3/1 # tail comment
+                l 1 2 4
+                """);
+        assertThat(content.positions().getLimit()).isEqualTo(4);
+        assertThat(content.positions().getPosition()).isEqualTo(4);
+        assertThat(content.positions().get(2)).containsExactly(1.5, -20, 0.25);
+        assertThat(content.normals().getPosition()).isEqualTo(1);
+        assertThat(content.normals().get(0)).containsExactly(0, 0, 1);
+        assertThat(content.triangles()).containsExactly(0, 1, 2, 0, 2, 3, 0, 1, 2);
+        assertThat(content.triangleNormals()).containsExactly(-1, -1, -1, -1, -1, -1, 0, 0, -1);
+        assertThat(content.segments()).containsExactly(0, 1, 1, 3);
+    }
+
+    @Test
+    void read_relativeIndices() throws IOException {
+        var content = read("""
+                v 0 0 0
+                v 1 0 0
+                v 1 1 0
+                vn 0 0 1
+                f -3//-1 -2//-1 -1//-1
+                l -1 -3
+                """);
+        assertThat(content.triangles()).containsExactly(0, 1, 2);
+        assertThat(content.triangleNormals()).containsExactly(0, 0, 0);
+        assertThat(content.segments()).containsExactly(2, 0);
+    }
+
+    @Test
+    void read_numbers() throws IOException {
+        var values = new double[]{0.1, -0.0, 123456.789012345, 1e-30, 6.02214076e23, 0.12345678901234567, -1.7976931348623157E308};
+        var sb = new StringBuilder();
+        for (double v : values) {
+            sb.append("v ").append(v).append(" +1 1.\n");
+        }
+        var content = read(sb.toString());
+        for (int i = 0; i < values.length; i++) {
+            assertThat(content.positions().get(i)).containsExactly(values[i], 1, 1);
+        }
+    }
+
+    @Test
+    void read_acrossChunks() throws IOException {
+        var random = new Random(11);
+        int n = 20_000;
+        double[] coords = new double[3 * n];
+        var sb = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            sb.append('v');
+            for (int c = 0; c < 3; c++) {
+                coords[3 * i + c] = Math.round(random.nextGaussian() * 1e6) / 1e4;
+                sb.append(' ').append(coords[3 * i + c]);
+            }
+            sb.append('\n');
+            if (i >= 2) {
+                // relative indices reaching into previous chunks
+                sb.append(i % 2 == 0 ? "f -3 -2 -1\n" : "f " + (i - 1) + " " + i + " " + (i + 1) + "\n");
+            }
+        }
+        Path file = write(sb.toString());
+        var content = new ObjFormatReader(VecStorage.HEAP, 1 << 12).read(file);
+        var positions = content.positions();
+        assertThat(positions.getLimit()).isEqualTo(n);
+        double[] actual = new double[3 * n];
+        positions.getItems(0, n, actual);
+        assertThat(actual).containsExactly(coords);
+        assertThat(content.getNumOfTriangles()).isEqualTo(n - 2);
+        int[] expected = new int[3 * (n - 2)];
+        for (int t = 0; t < n - 2; t++) {
+            expected[3 * t] = t;
+            expected[3 * t + 1] = t + 1;
+            expected[3 * t + 2] = t + 2;
+        }
+        assertThat(content.triangles()).containsExactly(expected);
+    }
+
+    @Test
+    void read_invalid() {
+        assertThatThrownBy(() -> read("v 0 0 0\nf 1 2 3\n"))
+                .isInstanceOf(CadmiumRuntimeException.class)
+                .hasMessageContaining("Invalid vertex index 2");
+        assertThatThrownBy(() -> read("v 0 0 0\nf -2 1 1\n"))
+                .isInstanceOf(CadmiumRuntimeException.class);
+        assertThatThrownBy(() -> read("v 0 x 0\n"))
+                .isInstanceOf(CadmiumRuntimeException.class)
+                .hasMessageContaining("Invalid number 'x'");
+    }
+
+    @Test
+    void read_empty() throws IOException {
+        var content = read("");
+        assertThat(content.positions().getLimit()).isZero();
+        assertThat(content.triangles()).isEmpty();
+    }
+
+    private ObjFormatReader.Content read(String obj) throws IOException {
+        return new Obj().reader().read(write(obj));
+    }
+
+    private Path write(String obj) throws IOException {
+        return Files.writeString(Files.createTempFile(dir, "mesh", ".obj"), obj);
+    }
+}
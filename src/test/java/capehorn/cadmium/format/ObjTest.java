@@ -0,0 +1,82 @@
+package capehorn.cadmium.format;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ObjTest {
+
+    @Test
+    void precision_fixedMatchesFormat() {
+        var random = new Random(7);
+        var sb = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            double v = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(12) - 4);
+            sb.setLength(0);
+            Obj.Precision.fixed(6).append(sb, v);
+            assertThat(sb.toString()).isEqualTo(String.format(Locale.ROOT, "%f", v));
+        }
+    }
+
+    @Test
+    void precision_fixed() {
+        assertThat(format(Obj.Precision.fixed(3), 1.0005)).isEqualTo("1.001");
+        assertThat(format(Obj.Precision.fixed(3), -0.0001)).isEqualTo("-0.000");
+        assertThat(format(Obj.Precision.fixed(0), 2.5)).isEqualTo("3");
+        assertThat(format(Obj.Precision.fixed(2), 1e300)).isEqualTo(String.format(Locale.ROOT, "%.2f", 1e300));
+        assertThat(format(Obj.Precision.fixed(2), Double.NaN)).isEqualTo("NaN");
+    }
+
+    @Test
+    void precision_shortest() {
+        assertThat(format(Obj.Precision.SHORTEST, 0.1)).isEqualTo("0.1");
+        assertThat(Double.parseDouble(format(Obj.Precision.SHORTEST, 1 / 3.0))).isEqualTo(1 / 3.0);
+    }
+
+    @Test
+    void writer() {
+        var sw = new StringWriter();
+        var writer = new Obj().writer(sw);
+        writer.writeVertex(1, 2.5, -3);
+        writer.writeVertexNormal(0, 0, 1);
+        writer.writeFace(1, 2, 3);
+        writer.writeFace(new int[]{1, 2, 3}, new int[]{4, 5, 6}, new int[]{7, 8, 9});
+        writer.writeLine(new int[]{1, 2});
+        assertThat(sw.toString()).isEqualTo("""
+                v 1.000000 2.500000 -3.000000
+                vn 0.000000 0.000000 1.000000
+                f 1 2 3
+                f 1/4/7 2/5/8 3/6/9
+                l 1 2
+                """);
+    }
+
+    @Test
+    void writer_channel() throws IOException {
+        var out = new ByteArrayOutputStream();
+        try (var writer = new Obj().writer(Channels.newChannel(out), Obj.Precision.SHORTEST)) {
+            for (int i = 0; i < 10_000; i++) {
+                writer.writeVertex(i, 0.5, -0.25);
+            }
+            writer.writeFace(1, 2, 3);
+        }
+        var lines = out.toString(StandardCharsets.US_ASCII).split("\n");
+        assertThat(lines).hasSize(10_001);
+        assertThat(lines[9999]).isEqualTo("v 9999.0 0.5 -0.25");
+        assertThat(lines[10_000]).isEqualTo("f 1 2 3");
+    }
+
+    private static String format(Obj.Precision precision, double v) {
+        var sb = new StringBuilder();
+        precision.append(sb, v);
+        return sb.toString();
+    }
+}
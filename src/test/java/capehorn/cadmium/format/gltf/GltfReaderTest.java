@@ -0,0 +1,127 @@
+package capehorn.cadmium.format.gltf;
+
+import capehorn.cadmium.format.gltf.dto.Accessor;
+import capehorn.cadmium.format.gltf.dto.Gltf;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GltfReaderTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * 2 interleaved VEC3 float position + normalized unsigned byte color (stride 16), then 3 uint16 indices
+     */
+    private static byte[] binary() {
+        var bytes = ByteBuffer.allocate(40).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.putFloat(1).putFloat(2).putFloat(3).put((byte) 255).put((byte) 0).put((byte) 51).put((byte) 0);
+        bytes.putFloat(4).putFloat(5).putFloat(6).put((byte) 0).put((byte) 255).put((byte) 0).put((byte) 0);
+        bytes.putShort((short) 1).putShort((short) 0).putShort((short) 1);
+        return bytes.array();
+    }
+
+    private static String json(String uri) {
+        return """
+                {
+                  "asset": {"version": "2.0"},
+                  "buffers": [{%s"byteLength": 40}],
+                  "bufferViews": [
+                    {"buffer": 0, "byteOffset": 0, "byteLength": 32, "byteStride": 16},
+                    {"buffer": 0, "byteOffset": 32, "byteLength": 6}
+                  ],
+                  "accessors": [
+                    {"bufferView": 0, "componentType": 5126, "count": 2, "type": "VEC3"},
+                    {"bufferView": 0, "byteOffset": 12, "componentType": 5121, "normalized": true, "count": 2, "type": "VEC3"},
+                    {"bufferView": 1, "componentType": 5123, "count": 3, "type": "SCALAR"}
+                  ],
+                  "materials": [{"name": "ignored"}]
+                }
+                """.formatted(uri == null ? "" : "\"uri\": \"" + uri + "\", ");
+    }
+
+    @Test
+    void read_externalBuffer() throws IOException {
+        Files.write(dir.resolve("my data.bin"), binary());
+        Files.writeString(dir.resolve("asset.gltf"), json("my%20data.bin"));
+        try (var document = new GltfReader().read(dir.resolve("asset.gltf"))) {
+            assertAccessors(document);
+        }
+    }
+
+    @Test
+    void read_dataUri() throws IOException {
+        Files.writeString(dir.resolve("asset.gltf"),
+                json("data:application/octet-stream;base64," + Base64.getEncoder().encodeToString(binary())));
+        try (var document = new GltfReader().read(dir.resolve("asset.gltf"))) {
+            assertAccessors(document);
+        }
+    }
+
+    @Test
+    void read_glb() throws IOException {
+        var gltf = new ObjectMapper()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+                .readValue(json(null), Gltf.class);
+        Path file = dir.resolve("asset.glb");
+        try (var channel = Files.newByteChannel(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            new GlbWriter().write(gltf, 40, out -> out.put(binary()), channel);
+        }
+        try (var document = new GltfReader().read(file)) {
+            assertAccessors(document);
+        }
+    }
+
+    @Test
+    void read_bufferTooShort() throws IOException {
+        Files.write(dir.resolve("data.bin"), new byte[8]);
+        Files.writeString(dir.resolve("asset.gltf"), json("data.bin"));
+        assertThatThrownBy(() -> new GltfReader().read(dir.resolve("asset.gltf")))
+                .hasMessageContaining("has 8 bytes instead of 40");
+    }
+
+    @Test
+    void unsignedIntIndicesBeyondIntRange() {
+        var accessor = new Accessor();
+        accessor.setComponentType(Accessor.COMPONENT_TYPE_UNSIGNED_INT);
+        accessor.setType(Accessor.TYPE_SCALAR);
+        accessor.setCount(2);
+        var data = MemorySegment.ofBuffer(ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putInt(7).putInt(0x80000000).flip());
+        var indices = new AccessorView(accessor, data, null);
+        assertThat(indices.getInt(0, 0)).isEqualTo(7);
+        assertThatThrownBy(indices::toIntArray).hasMessageContaining("2147483648");
+    }
+
+    private static void assertAccessors(GltfDocument document) {
+        var positions = document.getAccessor(0);
+        assertThat(positions.getCount()).isEqualTo(2);
+        assertThat(positions.isSinglePrecision()).isTrue();
+        var buffer = positions.toVecBuffer();
+        assertThat(buffer.getLimit()).isEqualTo(2);
+        assertThat(buffer.get(1)).containsExactly(4, 5, 6);
+        assertThatThrownBy(() -> buffer.cursor().set(0, 1)).isInstanceOf(UnsupportedOperationException.class);
+
+        var colors = document.getAccessor(1);
+        assertThat(colors.get(0, 0)).isEqualTo(1);
+        assertThat(colors.get(0, 2)).isEqualTo(0.2);
+        assertThat(colors.get(1, 1)).isEqualTo(1);
+
+        var indices = document.getAccessor(2);
+        assertThat(indices.getComponentType()).isEqualTo(Accessor.COMPONENT_TYPE_UNSIGNED_SHORT);
+        assertThat(indices.toIntArray()).containsExactly(1, 0, 1);
+    }
+}
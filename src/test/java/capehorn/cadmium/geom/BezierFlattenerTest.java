@@ -0,0 +1,92 @@
+package capehorn.cadmium.geom;
+
+import capehorn.cadmium.core.Vec3;
+import capehorn.cadmium.core.VecBuffer;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BezierFlattenerTest {
+
+    private final CubicBezierCurve curve = new CubicBezierCurve(
+            Vec3.of(0, 0, 0),
+            Vec3.of(100, 0, 0),
+            Vec3.of(100, 100, 0),
+            Vec3.of(0, 0, 100));
+
+    @Test
+    void flatten_chordError() {
+        var points = new VecBuffer(new int[]{3});
+        int n = curve.flatten(0.01, points);
+        assertThat(points.getLimit()).isEqualTo(n);
+        assertThat(point(points, 0)).isEqualTo(curve.p0);
+        assertThat(point(points, n - 1)).isEqualTo(curve.p3);
+        // every sample of the curve is within the tolerance from the polyline
+        for (int i = 0; i <= 1000; i++) {
+            var p = curve.point(i / 1000.0);
+            double d = Double.POSITIVE_INFINITY;
+            for (int k = 1; k < n; k++) {
+                d = Math.min(d, p.perpendicularDistanceFrom(point(points, k - 1), point(points, k)));
+            }
+            assertThat(d).isLessThanOrEqualTo(0.01 + 1e-9);
+        }
+        // no repeated points
+        for (int k = 1; k < n; k++) {
+            assertThat(point(points, k)).isNotEqualTo(point(points, k - 1));
+        }
+    }
+
+    @Test
+    void flatten_angle() {
+        double maxAngle = Math.toRadians(5);
+        var points = new VecBuffer(new int[]{3});
+        int n = BezierFlattener.ofAngle(maxAngle).flatten(curve, true, points);
+        for (int k = 2; k < n; k++) {
+            var a = point(points, k - 1).sub(point(points, k - 2));
+            var b = point(points, k).sub(point(points, k - 1));
+            double angle = Math.acos(Math.min(1, a.dot(b) / (a.length() * b.length())));
+            assertThat(angle).isLessThanOrEqualTo(2 * maxAngle);
+        }
+        assertThat(n).isGreaterThan(10);
+    }
+
+    @Test
+    void flatten_path() {
+        var flattener = BezierFlattener.ofTolerance(0.1);
+        var second = new CubicBezierCurve(curve.p3, Vec3.of(0, 0, 200), Vec3.of(50, 0, 200), Vec3.of(50, 0, 100));
+        double[] controlPoints = {
+                second.p0.x(), second.p0.y(), second.p0.z(), second.p1.x(), second.p1.y(), second.p1.z(),
+                second.p2.x(), second.p2.y(), second.p2.z(), second.p3.x(), second.p3.y(), second.p3.z()};
+        var points = new VecBuffer(new int[]{3});
+        int n1 = flattener.flatten(curve, true, points);
+        int n2 = flattener.flatten(controlPoints, 0, false, points);
+        assertThat(points.getLimit()).isEqualTo(n1 + n2);
+        assertThat(point(points, n1 - 1)).isEqualTo(curve.p3);
+        assertThat(point(points, n1)).isNotEqualTo(curve.p3);
+        assertThat(point(points, n1 + n2 - 1)).isEqualTo(second.p3);
+
+        var straight = new CubicBezierCurve(Vec3.of(0, 0, 0), Vec3.of(1, 0, 0), Vec3.of(2, 0, 0), Vec3.of(3, 0, 0));
+        points = new VecBuffer(new int[]{3});
+        assertThat(flattener.flatten(straight, true, points)).isEqualTo(2);
+    }
+
+    @Test
+    void approximate_terminates() {
+        var points = curve.approximate(1);
+        assertThat(points).hasSizeGreaterThan(4);
+        assertThat(points.get(0)).isEqualTo(curve.p0);
+        assertThat(points.get(points.size() - 1)).isEqualTo(curve.p3);
+    }
+
+    @Test
+    void invalidBounds() {
+        assertThatThrownBy(() -> BezierFlattener.ofTolerance(0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> BezierFlattener.ofAngle(Double.NaN)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static Vec3 point(VecBuffer points, int idx) {
+        double[] p = points.get(idx);
+        return Vec3.of(p[0], p[1], p[2]);
+    }
+}
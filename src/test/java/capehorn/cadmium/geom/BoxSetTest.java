@@ -0,0 +1,92 @@
+package capehorn.cadmium.geom;
+
+import capehorn.cadmium.core.Mat4x4;
+import capehorn.cadmium.core.Vec3;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BoxSetTest {
+
+    private final Random random = new Random(3);
+
+    @Test
+    void intersectsAndContains() {
+        var boxes = randomBoxes(101);
+        var set = new BoxSet(4);
+        boxes.forEach(set::add);
+        assertThat(set.size()).isEqualTo(101);
+        var result = new BitSet();
+        for (int q = 0; q < 50; q++) {
+            var query = randomBox();
+            int found = set.intersects(query, result);
+            assertThat(found).isEqualTo(result.cardinality());
+            for (int i = 0; i < boxes.size(); i++) {
+                assertThat(result.get(i)).isEqualTo(boxes.get(i).intersects(query));
+            }
+            var point = query.center();
+            found = set.contains(point, result);
+            assertThat(found).isEqualTo(result.cardinality());
+            for (int i = 0; i < boxes.size(); i++) {
+                assertThat(result.get(i)).isEqualTo(boxes.get(i).contains(point));
+            }
+        }
+    }
+
+    @Test
+    void transform() {
+        var boxes = randomBoxes(37);
+        var set = new BoxSet();
+        boxes.forEach(set::add);
+        var trf = Mat4x4.translation(1, -2, 3)
+                .mul(Mat4x4.rotation(Vec3.of(1, 1, 0).normalize(), 0.7))
+                .mul(Mat4x4.scaling(2, -1, 0.5));
+        set.transform(trf);
+        for (int i = 0; i < boxes.size(); i++) {
+            assertThat(set.get(i)).isEqualTo(boxes.get(i).mulBox(trf));
+        }
+    }
+
+    @Test
+    void mulBox() {
+        var box = new Box(Vec3.of(0, 0, 0), Vec3.of(1, 2, 3));
+        assertThat(box.mulBox(Mat4x4.scaling(-1, 1, 2).translate(1, 1, 1)))
+                .isEqualTo(new Box(Vec3.of(0, 1, 1), Vec3.of(1, 3, 7)));
+    }
+
+    @Test
+    void union() {
+        var boxes = randomBoxes(29);
+        var set = new BoxSet();
+        assertThat(set.union()).isEqualTo(Box.EMPTY);
+        boxes.forEach(set::add);
+        var expected = boxes.stream().reduce(Box.EMPTY, Box::extend);
+        assertThat(set.union()).isEqualTo(expected);
+
+        var selection = new BitSet();
+        assertThat(set.union(selection)).isEqualTo(Box.EMPTY);
+        selection.set(3);
+        selection.set(17);
+        assertThat(set.union(selection)).isEqualTo(boxes.get(3).extend(boxes.get(17)));
+        set.clear();
+        assertThat(set.size()).isZero();
+    }
+
+    private List<Box> randomBoxes(int n) {
+        List<Box> boxes = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            boxes.add(randomBox());
+        }
+        return boxes;
+    }
+
+    private Box randomBox() {
+        var min = Vec3.of(random.nextDouble(), random.nextDouble(), random.nextDouble()).mulScalar(10);
+        return new Box(min, min.add(Vec3.of(random.nextDouble(), random.nextDouble(), random.nextDouble()).mulScalar(4)));
+    }
+}
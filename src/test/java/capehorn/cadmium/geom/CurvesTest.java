@@ -0,0 +1,74 @@
+package capehorn.cadmium.geom;
+
+import capehorn.cadmium.core.Vec3;
+import capehorn.cadmium.core.VecBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CurvesTest {
+
+    private final List<ParametricCurve> curves = List.of(
+            new CubicBezierCurve(Vec3.of(0, 0, 0), Vec3.of(100, 0, 0), Vec3.of(100, 100, 0), Vec3.of(0, 0, 100)),
+            new Segment(Vec3.of(1, 2, 3), Vec3.of(-4, 5, 6)),
+            Curves.circle(Vec3.of(1, 1, 0), 2),
+            Curves.ellipse(Vec3.of(-1, 0, 0), 3, 1),
+            Curves.custom(t -> t, t -> t * t, Math::sin));
+
+    @Test
+    void evaluate_matchesPoint() {
+        double[] ts = {0, 0.1, 0.25, 0.5, 0.999, 1};
+        for (var curve : curves) {
+            var points = new VecBuffer(new int[]{3}, 1);
+            curve.evaluate(ts, points);
+            assertThat(points.getLimit()).isEqualTo(ts.length);
+            for (int i = 0; i < ts.length; i++) {
+                assertThat(point(points, i).distance(curve.point(ts[i]))).isLessThan(1e-9);
+            }
+        }
+    }
+
+    @Test
+    void evaluateUniform_matchesPoint() {
+        int n = 1001;
+        for (var curve : curves) {
+            var points = new VecBuffer(new int[]{3});
+            curve.evaluateUniform(n, points);
+            assertThat(points.getLimit()).isEqualTo(n);
+            for (int i = 0; i < n; i++) {
+                assertThat(point(points, i).distance(curve.point(i / (n - 1.0)))).isLessThan(1e-9);
+            }
+        }
+    }
+
+    @Test
+    void evaluateUniform_bezierEndsExactly() {
+        var curve = new CubicBezierCurve(Vec3.of(0, 0, 0), Vec3.of(1000, 0, 0), Vec3.of(1000, 1000, 0), Vec3.of(0, 0, 1000));
+        int n = 1_000_000;
+        var points = new VecBuffer(new int[]{3}, n);
+        curve.evaluateUniform(n, points);
+        assertThat(point(points, 0)).isEqualTo(curve.p0);
+        assertThat(point(points, n - 1)).isEqualTo(curve.p3);
+    }
+
+    @Test
+    void evaluateUniform_edgeCases() {
+        var curve = curves.get(0);
+        var points = new VecBuffer(new int[]{3});
+        curve.evaluateUniform(0, points);
+        assertThat(points.getLimit()).isZero();
+        curve.evaluateUniform(1, points);
+        assertThat(point(points, 0)).isEqualTo(curve.point(0));
+        assertThatThrownBy(() -> curve.evaluateUniform(-1, points)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> curve.evaluateUniform(2, new VecBuffer(new int[]{4})))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static Vec3 point(VecBuffer points, int idx) {
+        double[] p = points.get(idx);
+        return Vec3.of(p[0], p[1], p[2]);
+    }
+}
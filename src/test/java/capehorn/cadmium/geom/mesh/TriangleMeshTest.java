@@ -0,0 +1,266 @@
+package capehorn.cadmium.geom.mesh;
+
+import capehorn.cadmium.core.Mat4x4;
+import capehorn.cadmium.core.Vec3;
+import capehorn.cadmium.core.VecBuffer;
+import capehorn.cadmium.core.VecStorage;
+import capehorn.cadmium.geom.Box;
+import capehorn.cadmium.geom.Triangle;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TriangleMeshTest {
+
+    private final Vec3 p1 = Vec3.of(0, 0, 0);
+    private final Vec3 p2 = Vec3.of(1, 0, 0);
+    private final Vec3 p3 = Vec3.of(1, 1, 0);
+    private final Vec3 p4 = Vec3.of(0, 1, 0);
+
+    @Test
+    void triangleSoup() {
+        var mesh = new TriangleMesh();
+        mesh.addTriangles(new Triangle(p1, p2, p3), new Triangle(p3, p4, p1));
+        assertThat(mesh.isIndexed()).isFalse();
+        assertThat(mesh.getNumOfTriangles()).isEqualTo(2);
+        assertThat(mesh.getNumOfVertices()).isEqualTo(6);
+        assertThat(triangles(mesh)).containsExactly(new Triangle(p1, p2, p3), new Triangle(p3, p4, p1));
+    }
+
+    @Test
+    void indexed_weldsSharedVertices() {
+        var mesh = TriangleMesh.indexed();
+        mesh.addTriangles(new Triangle(p1, p2, p3), new Triangle(p3, p4, p1));
+        assertThat(mesh.isIndexed()).isTrue();
+        assertThat(mesh.getNumOfTriangles()).isEqualTo(2);
+        assertThat(mesh.getNumOfVertices()).isEqualTo(4);
+        assertThat(triangles(mesh)).containsExactly(new Triangle(p1, p2, p3), new Triangle(p3, p4, p1));
+    }
+
+    @Test
+    void indexed_weldsWithinTolerance() {
+        var mesh = TriangleMesh.indexed(0.01);
+        mesh.addTriangles(
+                new Triangle(p1, p2, p3),
+                new Triangle(Vec3.of(1.001, 1.001, 0), p4, Vec3.of(0.001, 0.002, 0.003)));
+        assertThat(mesh.getNumOfVertices()).isEqualTo(4);
+        assertThat(triangles(mesh).get(1)).isEqualTo(new Triangle(p3, p4, p1));
+    }
+
+    @Test
+    void indexed_manyVertices() {
+        int n = 1000;
+        var mesh = strip(TriangleMesh.indexed(), n);
+        assertThat(mesh.getNumOfTriangles()).isEqualTo(2 * n);
+        assertThat(mesh.getNumOfVertices()).isEqualTo(2 * (n + 1));
+        assertThat(triangles(mesh).get(2 * n - 1))
+                .isEqualTo(new Triangle(Vec3.of(n, 1, 0), Vec3.of(n - 1, 1, 0), Vec3.of(n - 1, 0, 0)));
+    }
+
+    @Test
+    void indexed_wrapsExistingVertices() {
+        var positions = VecBuffer.of(p1, p2, p3, p1);
+        var mesh = TriangleMesh.indexed(positions, new int[]{0, 1, 2});
+        assertThat(mesh.getNumOfTriangles()).isEqualTo(1);
+        mesh.addTriangles(new Triangle(p3, p4, p1));
+        assertThat(mesh.getNumOfVertices()).isEqualTo(5);
+        assertThat(triangles(mesh)).containsExactly(new Triangle(p1, p2, p3), new Triangle(p3, p4, p1));
+        mesh.forEachIndexedTriangle((idx, x, y, z) -> {}, (idx, v1, v2, v3) -> {
+            if (idx == 1) {
+                assertThat(new int[]{v1, v2, v3}).containsExactly(2, 4, 0);
+            }
+        });
+    }
+
+    @Test
+    void singlePrecision() {
+        var p = Vec3.of(0.1, 0.2, 0.3);
+        var soup = new TriangleMesh(VecStorage.HEAP_FLOAT);
+        var indexed = TriangleMesh.indexed(0, VecStorage.HEAP_FLOAT);
+        for (var mesh : new TriangleMesh[]{soup, indexed}) {
+            mesh.addTriangles(new Triangle(p1, p2, p), new Triangle(p, p4, p1));
+            assertThat(mesh.isSinglePrecision()).isTrue();
+            assertThat(triangles(mesh).get(1).p1()).isEqualTo(Vec3.of((float) 0.1, (float) 0.2, (float) 0.3));
+        }
+        assertThat(indexed.getNumOfVertices()).isEqualTo(4);
+    }
+
+    @Test
+    void forEachTriangle_visitor() {
+        for (var mesh : new TriangleMesh[]{new TriangleMesh(), TriangleMesh.indexed()}) {
+            mesh.addTriangles(new Triangle(p1, p2, p3), new Triangle(p3, p4, p1));
+            double[] sum = new double[13];
+            mesh.forEachTriangle((idx, p1x, p1y, p1z, p2x, p2y, p2z, p3x, p3y, p3z, nx, ny, nz) -> {
+                double[] vs = {idx, p1x, p1y, p1z, p2x, p2y, p2z, p3x, p3y, p3z, nx, ny, nz};
+                for (int i = 0; i < vs.length; i++) {
+                    sum[i] += vs[i];
+                }
+            });
+            assertThat(sum).containsExactly(1, 1, 1, 0, 1, 1, 0, 1, 1, 0, 0, 0, 2);
+        }
+    }
+
+    @Test
+    void forEachTriangle_range() {
+        var mesh = TriangleMesh.indexed();
+        mesh.addTriangles(new Triangle(p1, p2, p3), new Triangle(p3, p4, p1));
+        List<Integer> visited = new ArrayList<>();
+        mesh.forEachTriangle(1, 2, (idx, p1x, p1y, p1z, p2x, p2y, p2z, p3x, p3y, p3z, nx, ny, nz) -> visited.add(idx));
+        assertThat(visited).containsExactly(1);
+    }
+
+    @Test
+    void parallelForEachTriangle() {
+        var mesh = strip(TriangleMesh.indexed(), 10_000);
+        var sum = new DoubleAdder();
+        mesh.parallelForEachTriangle((idx, p1x, p1y, p1z, p2x, p2y, p2z, p3x, p3y, p3z, nx, ny, nz) -> sum.add(nz));
+        assertThat(sum.sum()).isEqualTo(20_000);
+    }
+
+    @Test
+    void triangles_parallelStream() {
+        var mesh = strip(new TriangleMesh(), 10_000);
+        assertThat(mesh.triangles().parallel().collect(Collectors.toList())).isEqualTo(triangles(mesh));
+        assertThat(mesh.triangleIndices().parallel().mapToObj(mesh::getTriangle).toList()).isEqualTo(triangles(mesh));
+    }
+
+    @Test
+    void transform() {
+        var trf = Mat4x4.translation(1, 2, 3).mul(Mat4x4.rotation(Vec3.of(1, 0, 0), Math.PI / 2));
+        for (var mesh : new TriangleMesh[]{strip(new TriangleMesh(), 5000), strip(TriangleMesh.indexed(), 5000)}) {
+            var expected = triangles(mesh).stream().map(t -> t.transform(trf)).toList();
+            mesh.transform(trf);
+            var actual = triangles(mesh);
+            for (int i = 0; i < expected.size(); i++) {
+                assertThat(actual.get(i).p3().distance(expected.get(i).p3())).isLessThan(1e-9);
+                assertThat(actual.get(i).normal().distance(expected.get(i).normal())).isLessThan(1e-9);
+            }
+        }
+    }
+
+    @Test
+    void planarLayout() {
+        var trf = Mat4x4.translation(1, 2, 3).mul(Mat4x4.rotation(Vec3.of(1, 0, 0), Math.PI / 2));
+        var interleaved = strip(new TriangleMesh(), 3000);
+        var planar = strip(new TriangleMesh(VecBuffer.Layout.PLANAR, VecStorage.HEAP), 3000);
+        assertThat(planar.getLayout()).isEqualTo(VecBuffer.Layout.PLANAR);
+        assertThat(triangles(planar)).isEqualTo(triangles(interleaved));
+        interleaved.transform(trf);
+        planar.transform(trf);
+        assertThat(triangles(planar)).isEqualTo(triangles(interleaved));
+        assertThat(planar.boundingBox()).isEqualTo(interleaved.boundingBox());
+
+        planar.setLayout(VecBuffer.Layout.INTERLEAVED);
+        assertThat(triangles(planar)).isEqualTo(triangles(interleaved));
+    }
+
+    @Test
+    void compact() {
+        var soup = strip(new TriangleMesh(VecStorage.CHUNKED), 3000);
+        var indexed = strip(TriangleMesh.indexed(0, VecStorage.CHUNKED), 3000);
+        var expected = triangles(strip(new TriangleMesh(), 3000));
+        for (var mesh : new TriangleMesh[]{soup, indexed}) {
+            mesh.compact();
+            assertThat(triangles(mesh)).isEqualTo(expected);
+            mesh.addTriangles(new Triangle(p1, p2, p3));
+            assertThat(mesh.getTriangle(6000)).isEqualTo(new Triangle(p1, p2, p3));
+        }
+    }
+
+    @Test
+    void concurrentBuilder() {
+        var builder = TriangleMesh.concurrentBuilder();
+        IntStream.range(0, 1000).parallel().forEach(i -> {
+            if (i % 2 == 0) {
+                builder.addTriangles(
+                        new Triangle(Vec3.of(i, 0, 0), Vec3.of(i + 1, 0, 0), Vec3.of(i + 1, 1, 0)),
+                        new Triangle(Vec3.of(i + 1, 1, 0), Vec3.of(i, 1, 0), Vec3.of(i, 0, 0)));
+            } else {
+                builder.addTriangles(new double[]{
+                        i, 0, 0, i + 1, 0, 0, i + 1, 1, 0,
+                        i + 1, 1, 0, i, 1, 0, i, 0, 0}, 0, 2);
+            }
+        });
+        assertThat(builder.getNumOfTriangles()).isEqualTo(2000);
+        var mesh = builder.build(VecBuffer.Layout.PLANAR, VecStorage.HEAP);
+        assertThat(mesh.getLayout()).isEqualTo(VecBuffer.Layout.PLANAR);
+        var expected = triangles(strip(new TriangleMesh(), 1000));
+        assertThat(triangles(mesh)).containsExactlyInAnyOrderElementsOf(expected);
+        assertThat(mesh.boundingBox()).isEqualTo(new Box(Vec3.of(0, 0, 0), Vec3.of(1000, 1, 0)));
+    }
+
+    @Test
+    void transform_indexedWeldsAddedTriangles() {
+        var mesh = strip(TriangleMesh.indexed(), 10);
+        assertThat(mesh.getNumOfVertices()).isEqualTo(22);
+        var trf = Mat4x4.translation(100, 0, 0);
+        mesh.transform(trf);
+        var moved = triangles(mesh);
+        mesh.addTriangles(moved.toArray(Triangle[]::new));
+        assertThat(mesh.getNumOfVertices()).isEqualTo(22);
+        assertThat(mesh.getNumOfTriangles()).isEqualTo(40);
+    }
+
+    @Test
+    void transform_nonUniformScaling() {
+        var trf = Mat4x4.rotation(Vec3.of(1, 0, 1), 0.5).mul(Mat4x4.scaling(2, -0.5, 3));
+        var mesh = new TriangleMesh();
+        mesh.addTriangles(new Triangle(Vec3.of(0, 0, 0), Vec3.of(1, 0, 1), Vec3.of(0, 1, 2)));
+        mesh.transform(trf);
+        var t = mesh.getTriangle(0);
+        assertThat(t.normal().distance(Triangle.computeNormal(t.p1(), t.p2(), t.p3()))).isLessThan(1e-12);
+    }
+
+    @Test
+    void boundingBox() {
+        for (var mesh : new TriangleMesh[]{new TriangleMesh(), TriangleMesh.indexed()}) {
+            assertThat(mesh.boundingBox()).isEqualTo(Box.EMPTY);
+            strip(mesh, 5000);
+            assertThat(mesh.boundingBox()).isEqualTo(new Box(Vec3.of(0, 0, 0), Vec3.of(5000, 1, 0)));
+            assertThat(mesh.getNumOfBoundsChunks()).isEqualTo(3);
+            assertThat(mesh.chunkBounds(1)).isEqualTo(new Box(Vec3.of(2048, 0, 0), Vec3.of(4096, 1, 0)));
+            // extended on insert, across the last chunk and a new one
+            mesh.addTriangles(new Triangle(Vec3.of(-1, 0, 2), Vec3.of(0, 0, 0), Vec3.of(0, -3, 0)));
+            strip(mesh, 2000);
+            assertThat(mesh.boundingBox()).isEqualTo(new Box(Vec3.of(-1, -3, 0), Vec3.of(5000, 1, 2)));
+            assertThat(mesh.chunkBounds(2)).isEqualTo(new Box(Vec3.of(-1, -3, 0), Vec3.of(5000, 1, 2)));
+            assertThat(mesh.chunkBounds(3)).isEqualTo(new Box(Vec3.of(1143, 0, 0), Vec3.of(2000, 1, 0)));
+            mesh.transform(Mat4x4.translation(1, 0, 0));
+            assertThat(mesh.boundingBox()).isEqualTo(new Box(Vec3.of(0, -3, 0), Vec3.of(5001, 1, 2)));
+        }
+    }
+
+    @Test
+    void forEachTriangleNear() {
+        var mesh = strip(new TriangleMesh(), 10_000);
+        List<Integer> visited = new ArrayList<>();
+        mesh.forEachTriangleNear(new Box(Vec3.of(2100, 0, 0), Vec3.of(2101, 1, 0)),
+                (idx, p1x, p1y, p1z, p2x, p2y, p2z, p3x, p3y, p3z, nx, ny, nz) -> visited.add(idx));
+        assertThat(visited).hasSize(TriangleMesh.BOUNDS_CHUNK_SIZE);
+        assertThat(visited.get(0)).isEqualTo(TriangleMesh.BOUNDS_CHUNK_SIZE);
+    }
+
+    /**
+     * Strip of triangles, every consecutive pair shares an edge
+     */
+    private static TriangleMesh strip(TriangleMesh mesh, int n) {
+        for (int i = 0; i < n; i++) {
+            mesh.addTriangles(
+                    new Triangle(Vec3.of(i, 0, 0), Vec3.of(i + 1, 0, 0), Vec3.of(i + 1, 1, 0)),
+                    new Triangle(Vec3.of(i + 1, 1, 0), Vec3.of(i, 1, 0), Vec3.of(i, 0, 0)));
+        }
+        return mesh;
+    }
+
+    private static List<Triangle> triangles(TriangleMesh mesh) {
+        List<Triangle> ts = new ArrayList<>();
+        mesh.forEachTriangle(ts::add);
+        return ts;
+    }
+}
@@ -0,0 +1,113 @@
+package capehorn.cadmium.geom.spatial;
+
+import capehorn.cadmium.core.Vec3;
+import capehorn.cadmium.geom.Triangle;
+import capehorn.cadmium.geom.mesh.TriangleMesh;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class RayTriangleIntersectorTest {
+
+    private final Random random = new Random(11);
+
+    @Test
+    void intersect_matchesSingleRays() {
+        var mesh = randomMesh(2000);
+        var bvh = TriangleBvh.build(mesh);
+        var intersector = RayTriangleIntersector.of(mesh);
+        assertThat(intersector.getNumOfTriangles()).isEqualTo(2000);
+        // odd packet size leaves a scalar tail after the vector lanes
+        var rays = randomRays(37);
+        var packet = copy(rays);
+        intersector.intersect(rays);
+        bvh.intersect(packet);
+        for (int i = 0; i < rays.size(); i++) {
+            var hit = bvh.intersectRay(rays.ox[i], rays.oy[i], rays.oz[i], rays.dx[i], rays.dy[i], rays.dz[i],
+                    Double.POSITIVE_INFINITY);
+            if (hit == null) {
+                assertThat(rays.isHit(i)).isFalse();
+                assertThat(packet.isHit(i)).isFalse();
+                continue;
+            }
+            assertThat(rays.hitTriangles()[i]).isEqualTo(hit.triangleIdx());
+            assertThat(rays.hitDistances()[i]).isCloseTo(hit.t(), within(1e-9));
+            assertThat(rays.hitU()[i]).isCloseTo(hit.u(), within(1e-9));
+            assertThat(rays.hitV()[i]).isCloseTo(hit.v(), within(1e-9));
+            assertThat(packet.hitTriangles()[i]).isEqualTo(hit.triangleIdx());
+            assertThat(packet.hitDistances()[i]).isCloseTo(hit.t(), within(1e-9));
+        }
+    }
+
+    @Test
+    void scalarKernel_matchesVectorKernel() {
+        var rays = randomRays(29);
+        var scalar = copy(rays);
+        for (int k = 0; k < 200; k++) {
+            var p = randomPoint(10);
+            var e1 = randomPoint(2);
+            var e2 = randomPoint(2);
+            RayKernels.intersect(p.x(), p.y(), p.z(), e1.x(), e1.y(), e1.z(), e2.x(), e2.y(), e2.z(), k, rays);
+            RayKernels.intersectScalar(p.x(), p.y(), p.z(), e1.x(), e1.y(), e1.z(), e2.x(), e2.y(), e2.z(), k, scalar, 0);
+        }
+        assertThat(rays.hitTriangles()).containsExactly(scalar.hitTriangles());
+        assertThat(rays.hitDistances()).containsExactly(scalar.hitDistances());
+        assertThat(rays.hitU()).containsExactly(scalar.hitU());
+    }
+
+    @Test
+    void maxDistance() {
+        var mesh = new TriangleMesh();
+        var triangle = new Triangle(Vec3.of(0, 0, 0), Vec3.of(2, 0, 0), Vec3.of(0, 2, 0));
+        mesh.addTriangles(triangle);
+        var rays = new RayPacket(2);
+        rays.add(0.5, 0.25, 5, 0, 0, -1);
+        rays.add(0.5, 0.25, 5, 0, 0, -1, 3);
+        RayTriangleIntersector.of(mesh).intersect(rays);
+        assertThat(rays.isHit(0)).isTrue();
+        assertThat(rays.hitDistances()[0]).isEqualTo(5);
+        assertThat(rays.hitU()[0]).isEqualTo(0.25);
+        assertThat(rays.hitV()[0]).isEqualTo(0.125);
+        assertThat(rays.isHit(1)).isFalse();
+        assertThat(triangle.intersectRay(Vec3.of(0.5, 0.25, 5), Vec3.of(0, 0, -1))).isEqualTo(5);
+        assertThat(triangle.intersectRay(Vec3.of(3, 3, 5), Vec3.of(0, 0, -1))).isNaN();
+        assertThatThrownBy(() -> rays.add(0, 0, 0, 1, 0, 0)).isInstanceOf(IllegalStateException.class);
+        rays.clear();
+        assertThat(rays.size()).isZero();
+    }
+
+    private RayPacket randomRays(int n) {
+        var rays = new RayPacket(n);
+        for (int i = 0; i < n; i++) {
+            var o = randomPoint(12);
+            var d = randomPoint(10).sub(o);
+            rays.add(o.x(), o.y(), o.z(), d.x(), d.y(), d.z());
+        }
+        return rays;
+    }
+
+    private static RayPacket copy(RayPacket rays) {
+        var copy = new RayPacket(rays.capacity());
+        for (int i = 0; i < rays.size(); i++) {
+            copy.add(rays.ox[i], rays.oy[i], rays.oz[i], rays.dx[i], rays.dy[i], rays.dz[i], rays.t[i]);
+        }
+        return copy;
+    }
+
+    private TriangleMesh randomMesh(int n) {
+        var mesh = TriangleMesh.indexed();
+        for (int i = 0; i < n; i++) {
+            var p = randomPoint(10);
+            mesh.addTriangles(new Triangle(p, p.add(randomPoint(0.5)), p.add(randomPoint(0.5))));
+        }
+        return mesh;
+    }
+
+    private Vec3 randomPoint(double scale) {
+        return Vec3.of(random.nextDouble() - 0.5, random.nextDouble() - 0.5, random.nextDouble() - 0.5).mulScalar(2 * scale);
+    }
+}
@@ -0,0 +1,122 @@
+package capehorn.cadmium.geom.spatial;
+
+import capehorn.cadmium.core.Vec3;
+import capehorn.cadmium.core.VecBuffer;
+import capehorn.cadmium.geom.Box;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class SpatialHashGridTest {
+
+    private final Random random = new Random(7);
+
+    @Test
+    void radiusAndBoxQueries() {
+        var points = randomPoints(3000, 10);
+        var grid = SpatialHashGrid.of(buffer(points), 0.7);
+        assertThat(grid.size()).isEqualTo(3000);
+        for (int q = 0; q < 30; q++) {
+            var center = randomPoint(11);
+            double radius = 2 * random.nextDouble();
+            List<Integer> actual = new ArrayList<>();
+            grid.forEachInRadius(center, radius, actual::add);
+            assertThat(actual).containsExactlyInAnyOrderElementsOf(
+                    IntStream.range(0, points.size()).filter(i -> points.get(i).distance(center) <= radius).boxed().toList());
+
+            var box = new Box(center, center.add(Vec3.of(random.nextDouble(), random.nextDouble(), random.nextDouble()).mulScalar(3)));
+            actual.clear();
+            grid.forEachInBox(box, actual::add);
+            assertThat(actual).containsExactlyInAnyOrderElementsOf(
+                    IntStream.range(0, points.size()).filter(i -> box.contains(points.get(i))).boxed().toList());
+        }
+    }
+
+    @Test
+    void nearest() {
+        var points = randomPoints(2000, 10);
+        var grid = new SpatialHashGrid(0.5);
+        points.forEach(grid::insert);
+        int[] items = new int[8];
+        double[] distances = new double[8];
+        for (int q = 0; q < 30; q++) {
+            // also from outside of the occupied cells
+            var p = randomPoint(14);
+            int found = grid.nearest(p.x(), p.y(), p.z(), 8, Double.POSITIVE_INFINITY, items, distances);
+            assertThat(found).isEqualTo(8);
+            var expected = IntStream.range(0, points.size()).boxed()
+                    .sorted(Comparator.comparingDouble(i -> points.get(i).distance(p)))
+                    .limit(8).toList();
+            for (int i = 0; i < 8; i++) {
+                assertThat(distances[i]).isCloseTo(points.get(expected.get(i)).distance(p), within(1e-12));
+            }
+            assertThat(grid.nearest(p)).isEqualTo(expected.get(0));
+        }
+        assertThat(grid.nearest(0, 0, 0, 8, 1e-3, items, distances)).isLessThan(8);
+    }
+
+    @Test
+    void nearest_smallCells() {
+        var grid = new SpatialHashGrid(0.1);
+        grid.insert(Vec3.of(0.19, 0.19, 0.19));
+        int nearer = grid.insert(Vec3.of(0.21, 0.05, 0.05));
+        int[] items = new int[1];
+        double[] distances = new double[1];
+        // the candidate of the first shell is farther than the item of the second shell
+        assertThat(grid.nearest(0.05, 0.05, 0.05, 1, Double.POSITIVE_INFINITY, items, distances)).isEqualTo(1);
+        assertThat(items[0]).isEqualTo(nearer);
+        assertThat(distances[0]).isCloseTo(0.16, within(1e-12));
+    }
+
+    @Test
+    void boxesAndRemoval() {
+        var grid = new SpatialHashGrid(1);
+        int big = grid.insert(new Box(Vec3.of(0, 0, 0), Vec3.of(5, 5, 5)));
+        int small = grid.insert(new Box(Vec3.of(7, 0, 0), Vec3.of(7.5, 0.5, 0.5)));
+        int point = grid.insert(Vec3.of(3, 3, 3));
+        List<Integer> actual = new ArrayList<>();
+        grid.forEachInBox(new Box(Vec3.of(2, 2, 2), Vec3.of(8, 4, 4)), actual::add);
+        // the big box spans many cells of the query but is reported once
+        assertThat(actual).containsExactlyInAnyOrder(big, point);
+
+        actual.clear();
+        grid.forEachInRadius(Vec3.of(6, 0.2, 0.2), 1.1, actual::add);
+        assertThat(actual).containsExactlyInAnyOrder(big, small);
+        assertThat(grid.nearest(Vec3.of(6.8, 0.2, 0.2))).isEqualTo(small);
+
+        assertThat(grid.remove(big)).isTrue();
+        assertThat(grid.remove(big)).isFalse();
+        assertThat(grid.contains(big)).isFalse();
+        assertThat(grid.size()).isEqualTo(2);
+        actual.clear();
+        grid.forEachInRadius(Vec3.of(6, 0.2, 0.2), 1.1, actual::add);
+        assertThat(actual).containsExactly(small);
+        assertThat(grid.nearest(Vec3.of(1, 1, 1))).isEqualTo(point);
+        assertThat(grid.insert(Vec3.of(1, 1, 1))).isEqualTo(3);
+    }
+
+    private List<Vec3> randomPoints(int n, double scale) {
+        List<Vec3> points = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            points.add(randomPoint(scale));
+        }
+        return points;
+    }
+
+    private Vec3 randomPoint(double scale) {
+        return Vec3.of(random.nextDouble() - 0.5, random.nextDouble() - 0.5, random.nextDouble() - 0.5).mulScalar(2 * scale);
+    }
+
+    private static VecBuffer buffer(List<Vec3> points) {
+        var buffer = new VecBuffer(new int[]{3}, points.size());
+        points.forEach(p -> buffer.put(p.x(), p.y(), p.z()));
+        return buffer;
+    }
+}
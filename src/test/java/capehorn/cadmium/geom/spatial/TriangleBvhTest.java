@@ -0,0 +1,169 @@
+package capehorn.cadmium.geom.spatial;
+
+import capehorn.cadmium.core.Vec3;
+import capehorn.cadmium.geom.Box;
+import capehorn.cadmium.geom.Triangle;
+import capehorn.cadmium.geom.mesh.TriangleMesh;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class TriangleBvhTest {
+
+    private final Random random = new Random(5);
+
+    @Test
+    void intersectRay() {
+        var mesh = randomMesh(20_000);
+        var bvh = TriangleBvh.build(mesh);
+        assertThat(bvh.getNumOfTriangles()).isEqualTo(20_000);
+        var triangles = triangles(mesh);
+        for (int r = 0; r < 300; r++) {
+            var origin = randomPoint(12);
+            var direction = randomPoint(1);
+            var hit = bvh.intersectRay(origin, direction);
+            var expected = bruteForceRay(triangles, origin, direction);
+            if (expected == null) {
+                assertThat(hit).isNull();
+            } else {
+                assertThat(hit).isNotNull();
+                assertThat(hit.t()).isCloseTo(expected.t(), within(1e-9));
+            }
+        }
+    }
+
+    @Test
+    void intersectRay_hitPoint() {
+        var mesh = new TriangleMesh();
+        mesh.addTriangles(new Triangle(Vec3.of(0, 0, 0), Vec3.of(2, 0, 0), Vec3.of(0, 2, 0)),
+                new Triangle(Vec3.of(0, 0, 1), Vec3.of(2, 0, 1), Vec3.of(0, 2, 1)));
+        var bvh = TriangleBvh.build(mesh);
+        var hit = bvh.intersectRay(Vec3.of(0.5, 0.25, 5), Vec3.of(0, 0, -1));
+        assertThat(hit).isEqualTo(new TriangleBvh.RayHit(1, 4, 0.25, 0.125));
+        assertThat(bvh.intersectRay(0.5, 0.25, 5, 0, 0, -1, 3)).isNull();
+        assertThat(bvh.intersectRay(Vec3.of(3, 3, 5), Vec3.of(0, 0, -1))).isNull();
+    }
+
+    @Test
+    void forEachOverlapping() {
+        var mesh = randomMesh(5000);
+        var bvh = TriangleBvh.build(mesh);
+        var triangles = triangles(mesh);
+        for (int q = 0; q < 50; q++) {
+            var min = randomPoint(10);
+            var box = new Box(min, min.add(Vec3.of(random.nextDouble(), random.nextDouble(), random.nextDouble()).mulScalar(3)));
+            var actual = new TreeSet<Integer>();
+            bvh.forEachOverlapping(box, actual::add);
+            var expected = new TreeSet<Integer>();
+            double[] coords = new double[9];
+            for (int t = 0; t < triangles.size(); t++) {
+                System.arraycopy(triangles.get(t).toArray(), 0, coords, 0, 9);
+                var c = box.center();
+                var h = box.size().mulScalar(0.5);
+                if (TriangleBvh.overlaps(coords, 0, c.x(), c.y(), c.z(), h.x(), h.y(), h.z())) {
+                    expected.add(t);
+                }
+            }
+            assertThat(actual).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void overlaps_separatingAxes() {
+        double[] triangle = {0, 0, 0, 2, 0, 0, 0, 2, 0};
+        // box above the plane of the triangle
+        assertThat(TriangleBvh.overlaps(triangle, 0, 0.5, 0.5, 1, 0.5, 0.5, 0.5)).isFalse();
+        assertThat(TriangleBvh.overlaps(triangle, 0, 0.5, 0.5, 0.4, 0.5, 0.5, 0.5)).isTrue();
+        // box beyond the hypotenuse but inside the bounds of the triangle
+        assertThat(TriangleBvh.overlaps(triangle, 0, 1.8, 1.8, 0, 0.2, 0.2, 0.2)).isFalse();
+    }
+
+    @Test
+    void closestPoint() {
+        var mesh = randomMesh(5000);
+        var bvh = TriangleBvh.build(mesh);
+        var triangles = triangles(mesh);
+        double[] coords = new double[9];
+        double[] closest = new double[3];
+        for (int q = 0; q < 100; q++) {
+            var p = randomPoint(15);
+            var actual = bvh.closestPoint(p);
+            double expected = Double.POSITIVE_INFINITY;
+            for (var t : triangles) {
+                System.arraycopy(t.toArray(), 0, coords, 0, 9);
+                TriangleBvh.closestPointOnTriangle(coords, 0, p.x(), p.y(), p.z(), closest);
+                expected = Math.min(expected, p.distance(Vec3.of(closest[0], closest[1], closest[2])));
+            }
+            assertThat(actual.distance()).isEqualTo(expected);
+            assertThat(actual.point().distance(p)).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void closestPointOnTriangle() {
+        double[] triangle = {0, 0, 0, 2, 0, 0, 0, 2, 0};
+        double[] dst = new double[3];
+        TriangleBvh.closestPointOnTriangle(triangle, 0, 0.5, 0.5, 3, dst);
+        assertThat(dst).containsExactly(0.5, 0.5, 0);
+        TriangleBvh.closestPointOnTriangle(triangle, 0, -1, -1, 0, dst);
+        assertThat(dst).containsExactly(0, 0, 0);
+        TriangleBvh.closestPointOnTriangle(triangle, 0, 2, 2, 0, dst);
+        assertThat(dst).containsExactly(1, 1, 0);
+    }
+
+    @Test
+    void empty() {
+        var bvh = TriangleBvh.build(new TriangleMesh());
+        assertThat(bvh.intersectRay(Vec3.of(0, 0, 0), Vec3.of(1, 0, 0))).isNull();
+        assertThat(bvh.closestPoint(Vec3.of(0, 0, 0))).isNull();
+        assertThat(bvh.bounds()).isEqualTo(Box.EMPTY);
+    }
+
+    private TriangleMesh randomMesh(int n) {
+        var mesh = TriangleMesh.indexed();
+        for (int i = 0; i < n; i++) {
+            var p = randomPoint(10);
+            mesh.addTriangles(new Triangle(p, p.add(randomPoint(0.5)), p.add(randomPoint(0.5))));
+        }
+        return mesh;
+    }
+
+    private Vec3 randomPoint(double scale) {
+        return Vec3.of(random.nextDouble() - 0.5, random.nextDouble() - 0.5, random.nextDouble() - 0.5).mulScalar(2 * scale);
+    }
+
+    private static List<Triangle> triangles(TriangleMesh mesh) {
+        List<Triangle> ts = new ArrayList<>();
+        mesh.forEachTriangle(ts::add);
+        return ts;
+    }
+
+    private static TriangleBvh.RayHit bruteForceRay(List<Triangle> triangles, Vec3 origin, Vec3 direction) {
+        TriangleBvh.RayHit best = null;
+        for (int i = 0; i < triangles.size(); i++) {
+            var t = triangles.get(i);
+            var e1 = t.p2().sub(t.p1());
+            var e2 = t.p3().sub(t.p1());
+            var p = direction.cross(e2);
+            double det = e1.dot(p);
+            if (det == 0) {
+                continue;
+            }
+            var s = origin.sub(t.p1());
+            double u = s.dot(p) / det;
+            var q = s.cross(e1);
+            double v = direction.dot(q) / det;
+            double tt = e2.dot(q) / det;
+            if (u >= 0 && v >= 0 && u + v <= 1 && tt >= 0 && (best == null || tt < best.t())) {
+                best = new TriangleBvh.RayHit(i, tt, u, v);
+            }
+        }
+        return best;
+    }
+}
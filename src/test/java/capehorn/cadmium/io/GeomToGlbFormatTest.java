@@ -0,0 +1,149 @@
+package capehorn.cadmium.io;
+
+import capehorn.cadmium.core.Vec3;
+import capehorn.cadmium.core.VecBuffer;
+import capehorn.cadmium.format.gltf.GlbWriter;
+import capehorn.cadmium.format.gltf.dto.Accessor;
+import capehorn.cadmium.format.gltf.dto.BufferView;
+import capehorn.cadmium.format.gltf.dto.Gltf;
+import capehorn.cadmium.geom.Triangle;
+import capehorn.cadmium.geom.mesh.LineMesh;
+import capehorn.cadmium.geom.mesh.TriangleMesh;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GeomToGlbFormatTest {
+
+    private final Vec3 p1 = Vec3.of(0, 0, 0);
+    private final Vec3 p2 = Vec3.of(1, 0, 0);
+    private final Vec3 p3 = Vec3.of(1, 1, 0);
+    private final Vec3 p4 = Vec3.of(0, 1, 0.5);
+
+    @Test
+    void writeIndexedTriangleMesh() throws IOException {
+        var mesh = TriangleMesh.indexed();
+        mesh.addTriangles(new Triangle(p1, p2, p3), new Triangle(p3, p4, p1));
+        var glb = write(toGlb -> toGlb.addTriangleMesh(mesh));
+        var gltf = gltf(glb);
+
+        var view = gltf.getBufferViews().get(0);
+        assertThat(view.getByteStride()).isEqualTo(24);
+        assertThat(view.getTarget()).isEqualTo(BufferView.TARGET_ARRAY_BUFFER);
+        assertThat(view.getByteLength()).isEqualTo(4 * 24);
+        assertThat(gltf.getBufferViews().get(1).getTarget()).isEqualTo(BufferView.TARGET_ELEMENT_ARRAY_BUFFER);
+
+        var position = gltf.getAccessors().get(0);
+        assertThat(position.getCount()).isEqualTo(4);
+        assertThat(position.getMin()).containsExactly(0, 0, 0);
+        assertThat(position.getMax()).containsExactly(1, 1, 0.5);
+        var indices = gltf.getAccessors().get(2);
+        assertThat(indices.getComponentType()).isEqualTo(Accessor.COMPONENT_TYPE_UNSIGNED_SHORT);
+        assertThat(indices.getCount()).isEqualTo(6);
+
+        var bin = binaryChunk(glb);
+        assertThat(bin.getFloat(24)).isEqualTo(1f);
+        // vertex normal of p2 belongs to the first triangle only
+        assertThat(bin.getFloat(24 + 20)).isEqualTo(1f);
+        bin.position(4 * 24);
+        short[] is = new short[6];
+        bin.asShortBuffer().get(is);
+        assertThat(is).containsExactly(0, 1, 2, 2, 3, 0);
+    }
+
+    @Test
+    void writeTriangleSoupAndLines() throws IOException {
+        var soup = new TriangleMesh();
+        soup.addTriangles(new Triangle(p1, p2, p3));
+        var lines = new LineMesh();
+        lines.addPolyline(p1, p2, p3);
+        var glb = write(toGlb -> {
+            toGlb.addTriangleMesh(soup);
+            toGlb.addLineMesh(lines);
+        });
+        var gltf = gltf(glb);
+        assertThat(gltf.getMeshes()).hasSize(2);
+        assertThat(gltf.getScenes().get(0).getNodes()).containsExactly(0, 1);
+        assertThat(gltf.getMeshes().get(0).getPrimitives().get(0).getIndices()).isNull();
+        var linePrimitive = gltf.getMeshes().get(1).getPrimitives().get(0);
+        assertThat(linePrimitive.getMode()).isEqualTo(1);
+        var lineView = gltf.getBufferViews().get(1);
+        assertThat(lineView.getByteOffset()).isEqualTo(3 * 24);
+        assertThat(lineView.getByteStride()).isEqualTo(12);
+        // 4 uint16 indices take 8 bytes, the buffer ends 4 byte aligned
+        assertThat(gltf.getBuffers().get(0).getByteLength()).isEqualTo(3 * 24 + 3 * 12 + 8);
+        assertThat(gltf.getAccessors().get(linePrimitive.getIndices()).getCount()).isEqualTo(4);
+    }
+
+    @Test
+    void fallbackNormals() throws IOException {
+        var soup = new TriangleMesh();
+        soup.addTriangles(new Triangle(p1, p2, p2));
+        var soupBin = binaryChunk(write(toGlb -> toGlb.addTriangleMesh(soup)));
+        for (int v = 0; v < 3; v++) {
+            assertThat(new float[]{soupBin.getFloat(24 * v + 12), soupBin.getFloat(24 * v + 16), soupBin.getFloat(24 * v + 20)})
+                    .containsExactly(0, 0, 1);
+        }
+
+        // the last vertex is not used by any triangle
+        var indexed = TriangleMesh.indexed(VecBuffer.of(p1, p2, p4, p3), new int[]{0, 1, 2});
+        var indexedBin = binaryChunk(write(toGlb -> toGlb.addTriangleMesh(indexed)));
+        assertThat(new float[]{indexedBin.getFloat(3 * 24 + 12), indexedBin.getFloat(3 * 24 + 16), indexedBin.getFloat(3 * 24 + 20)})
+                .containsExactly(0, 0, 1);
+        indexedBin.position(4 * 24);
+        short[] is = new short[3];
+        indexedBin.asShortBuffer().get(is);
+        assertThat(is).containsExactly(0, 1, 2);
+    }
+
+    @Test
+    void uint32Indices() throws IOException {
+        var lines = new LineMesh();
+        Vec3[] points = new Vec3[70_000];
+        Arrays.setAll(points, i -> Vec3.of(i, 0, 0));
+        lines.addPolyline(points);
+        var gltf = gltf(write(toGlb -> toGlb.addLineMesh(lines)));
+        assertThat(gltf.getAccessors().get(1).getComponentType()).isEqualTo(Accessor.COMPONENT_TYPE_UNSIGNED_INT);
+        assertThat(gltf.getAccessors().get(0).getMax()).containsExactly(69_999, 0, 0);
+    }
+
+    private interface Content {
+        void add(GeomToGlbFormat toGlb);
+    }
+
+    private static ByteBuffer write(Content content) throws IOException {
+        var toGlb = new GeomToGlbFormat();
+        content.add(toGlb);
+        var out = new ByteArrayOutputStream();
+        toGlb.write(Channels.newChannel(out));
+        var glb = ByteBuffer.wrap(out.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+        assertThat(glb.getInt(0)).isEqualTo(GlbWriter.MAGIC);
+        assertThat(glb.getInt(4)).isEqualTo(2);
+        assertThat(glb.getInt(8)).isEqualTo(glb.capacity());
+        assertThat(glb.getInt(12) % 4).isZero();
+        return glb;
+    }
+
+    private static Gltf gltf(ByteBuffer glb) throws IOException {
+        byte[] json = new byte[glb.getInt(12)];
+        glb.get(20, json);
+        return new ObjectMapper()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+                .readValue(json, Gltf.class);
+    }
+
+    private static ByteBuffer binaryChunk(ByteBuffer glb) {
+        int binHeader = 20 + glb.getInt(12);
+        assertThat(glb.getInt(binHeader + 4)).isEqualTo(GlbWriter.CHUNK_TYPE_BIN);
+        return glb.slice(binHeader + 8, glb.getInt(binHeader)).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -15,6 +15,7 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 
 class GeomToObjFormatTest {
@@ -35,6 +36,39 @@ class GeomToObjFormatTest {
         writeToTempFile("obj-tringlemesh-", ".obj", objFormat);
     }
 
+    @Test
+    void writeTriangleMesh_facesAfterVertices() throws IOException {
+        StringWriter sw = new StringWriter();
+        GeomToObjFormat toObjFormat = new GeomToObjFormat(sw);
+        toObjFormat.writeFrame(Frame.Standard);
+        TriangleMesh mesh = new TriangleMesh();
+        mesh.addTriangles(
+                new Triangle(Vec3.of(0, 0, 0), Vec3.of(1, 0, 0), Vec3.of(1, 1, 0)),
+                new Triangle(Vec3.of(1, 1, 0), Vec3.of(0, 1, 0), Vec3.of(0, 0, 0)));
+        toObjFormat.writeTriangleMesh(mesh);
+        var lines = sw.toString().lines().toList();
+        assertThat(lines).hasSize(4 + 3 + 6 + 2);
+        assertThat(lines.subList(13, 15)).containsExactly("f 5 6 7", "f 8 9 10");
+    }
+
+    @Test
+    void writeTriangleMeshIndexed() throws IOException {
+        var p1 = Vec3.of(0, 0, 0);
+        var p2 = Vec3.of(1, 0, 0);
+        var p3 = Vec3.of(1, 1, 0);
+        var p4 = Vec3.of(0, 1, 0);
+        for (var mesh : new TriangleMesh[]{new TriangleMesh(), TriangleMesh.indexed()}) {
+            mesh.addTriangles(new Triangle(p1, p2, p3), new Triangle(p3, p4, p1));
+            StringWriter sw = new StringWriter();
+            GeomToObjFormat toObjFormat = new GeomToObjFormat(sw);
+            toObjFormat.writeParametricCurve(new Segment(p1, p2), 2);
+            toObjFormat.writeTriangleMeshIndexed(mesh);
+            var lines = sw.toString().lines().filter(l -> !l.startsWith("l")).toList();
+            assertThat(lines.stream().filter(l -> l.startsWith("v "))).hasSize(2 + 4);
+            assertThat(lines.stream().filter(l -> l.startsWith("f "))).containsExactly("f 3 4 5", "f 5 6 3");
+        }
+    }
+
     @Test
     void writeParametricCurve() throws IOException {
         StringWriter sw = new StringWriter();
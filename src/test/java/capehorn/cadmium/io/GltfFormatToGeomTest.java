@@ -0,0 +1,87 @@
+package capehorn.cadmium.io;
+
+import capehorn.cadmium.core.Mat4x4;
+import capehorn.cadmium.core.Vec3;
+import capehorn.cadmium.core.VecStorage;
+import capehorn.cadmium.geom.Triangle;
+import capehorn.cadmium.geom.mesh.LineMesh;
+import capehorn.cadmium.geom.mesh.TriangleMesh;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GltfFormatToGeomTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTrip() throws IOException {
+        var p1 = Vec3.of(0, 0, 0);
+        var p2 = Vec3.of(1, 0, 0);
+        var p3 = Vec3.of(1, 1, 0);
+        var p4 = Vec3.of(0, 1, 0);
+        var indexed = TriangleMesh.indexed();
+        indexed.addTriangles(new Triangle(p1, p2, p3), new Triangle(p3, p4, p1));
+        var soup = new TriangleMesh();
+        soup.addTriangles(new Triangle(p1, p2, p3));
+        var lines = new LineMesh();
+        lines.addPolyline(p1, p2, p3);
+        var toGlb = new GeomToGlbFormat();
+        toGlb.addTriangleMesh(indexed);
+        toGlb.addTriangleMesh(soup);
+        toGlb.addLineMesh(lines);
+        Path file = dir.resolve("mesh.glb");
+        toGlb.write(file);
+
+        try (var toGeom = new GltfFormatToGeom(file)) {
+            var meshes = toGeom.toTriangleMeshes();
+            assertThat(meshes).hasSize(2);
+            assertThat(meshes.get(0).getNumOfVertices()).isEqualTo(4);
+            assertThat(triangles(meshes.get(0))).containsExactly(new Triangle(p1, p2, p3), new Triangle(p3, p4, p1));
+            assertThat(triangles(meshes.get(1))).containsExactly(new Triangle(p1, p2, p3));
+            assertThat(toGeom.toLineMeshes().get(0).getNumOfSegments()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void copiedMeshesAreModifiable() throws IOException {
+        var p1 = Vec3.of(0, 0, 0);
+        var p2 = Vec3.of(1, 0, 0);
+        var p3 = Vec3.of(1, 1, 0);
+        var indexed = TriangleMesh.indexed();
+        indexed.addTriangles(new Triangle(p1, p2, p3));
+        var lines = new LineMesh();
+        lines.addPolyline(p1, p2, p3);
+        var toGlb = new GeomToGlbFormat();
+        toGlb.addTriangleMesh(indexed);
+        toGlb.addLineMesh(lines);
+        Path file = dir.resolve("mesh.glb");
+        toGlb.write(file);
+
+        TriangleMesh mesh;
+        List<LineMesh> lineMeshes;
+        try (var toGeom = new GltfFormatToGeom(file)) {
+            mesh = toGeom.toTriangleMeshes(VecStorage.HEAP).get(0);
+            lineMeshes = toGeom.toLineMeshes(VecStorage.HEAP_FLOAT);
+        }
+        mesh.transform(Mat4x4.translation(0, 0, 1));
+        mesh.addTriangles(new Triangle(p1, p2, p3));
+        assertThat(mesh.getNumOfVertices()).isEqualTo(6);
+        assertThat(mesh.getTriangle(0).p3()).isEqualTo(Vec3.of(1, 1, 1));
+        lineMeshes.get(0).addPolyline(p3, p1);
+        assertThat(lineMeshes.get(0).getNumOfSegments()).isEqualTo(3);
+    }
+
+    private static List<Triangle> triangles(TriangleMesh mesh) {
+        List<Triangle> ts = new ArrayList<>();
+        mesh.forEachTriangle(ts::add);
+        return ts;
+    }
+}
@@ -0,0 +1,48 @@
+package capehorn.cadmium.io;
+
+import capehorn.cadmium.core.Vec3;
+import capehorn.cadmium.geom.Triangle;
+import capehorn.cadmium.geom.mesh.TriangleMesh;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ObjFormatToGeomTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTrip() throws IOException {
+        var p1 = Vec3.of(0, 0, 0);
+        var p2 = Vec3.of(1, 0, 0);
+        var p3 = Vec3.of(1, 1, 0);
+        var p4 = Vec3.of(0, 1, 0);
+        var mesh = TriangleMesh.indexed();
+        mesh.addTriangles(new Triangle(p1, p2, p3), new Triangle(p3, p4, p1));
+        Path file = dir.resolve("mesh.obj");
+        try (var writer = Files.newBufferedWriter(file); var toObjFormat = new GeomToObjFormat(writer)) {
+            toObjFormat.writeTriangleMeshIndexed(mesh);
+        }
+        Files.writeString(file, "l 1 2 3\n", StandardOpenOption.APPEND);
+
+        var toGeom = new ObjFormatToGeom(file);
+        var read = toGeom.toTriangleMesh();
+        assertThat(read.getNumOfVertices()).isEqualTo(4);
+        List<Triangle> triangles = new ArrayList<>();
+        read.forEachTriangle(triangles::add);
+        assertThat(triangles).containsExactly(new Triangle(p1, p2, p3), new Triangle(p3, p4, p1));
+
+        var lines = toGeom.toLineMesh();
+        assertThat(lines.getNumOfSegments()).isEqualTo(2);
+        assertThat(lines.getNumOfVertices()).isEqualTo(4);
+    }
+}